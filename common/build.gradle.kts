@@ -2,6 +2,15 @@ plugins {
   id("java-library")
   id("elastic-otel.library-packaging-conventions")
   id("elastic-otel.sign-and-publish-conventions")
+  alias(libs.plugins.jmh)
+}
+
+jmh {
+  fork = 1
+  iterations = 5
+  warmupIterations = 3
+  // report allocation rates in addition to the timings
+  profilers.add("gc")
 }
 
 description = "Elastic common utilities for OpenTelemetry Java"
@@ -11,6 +20,7 @@ dependencies {
     compileOnly("io.opentelemetry:opentelemetry-sdk")
     compileOnly("io.opentelemetry:opentelemetry-sdk-extension-autoconfigure-spi")
     implementation(libs.bundles.semconv)
+    implementation(libs.hdrhistogram)
 
     testImplementation("io.opentelemetry:opentelemetry-sdk")
     testImplementation("io.opentelemetry:opentelemetry-sdk-testing")
@@ -19,4 +29,6 @@ dependencies {
     testImplementation("io.opentelemetry:opentelemetry-exporter-otlp")
     testImplementation("io.opentelemetry:opentelemetry-exporter-logging")
     testImplementation("io.opentelemetry:opentelemetry-api-incubator")
+
+    jmhImplementation("io.opentelemetry:opentelemetry-sdk")
 }
@@ -0,0 +1,78 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.common;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Threads(4)
+public class LocalRootAttributesBenchmark {
+
+  /** Starts a local root followed by {@link TracerState#children} child spans and ends them. */
+  @Benchmark
+  public Span trace(TracerState state) {
+    Span root = state.tracer.spanBuilder("root").setSpanKind(SpanKind.SERVER).startSpan();
+    Context rootContext = Context.root().with(root);
+    for (int i = 0; i < state.children; i++) {
+      state.tracer.spanBuilder("child").setParent(rootContext).startSpan().end();
+    }
+    root.end();
+    return root;
+  }
+
+  @State(Scope.Benchmark)
+  public static class TracerState {
+
+    @Param({"100", "500"})
+    int children;
+
+    SdkTracerProvider tracerProvider;
+    Tracer tracer;
+
+    @Setup(Level.Iteration)
+    public void init() {
+      SpanProcessor processor = new LocalRootAttributesSpanProcessor(SpanProcessor.composite());
+      tracerProvider = SdkTracerProvider.builder().addSpanProcessor(processor).build();
+      tracer = tracerProvider.get("benchmark");
+    }
+
+    @TearDown(Level.Iteration)
+    public void destroy() {
+      tracerProvider.close();
+    }
+  }
+}
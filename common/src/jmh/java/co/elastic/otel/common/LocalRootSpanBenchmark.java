@@ -0,0 +1,112 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.common;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Threads(4)
+public class LocalRootSpanBenchmark {
+
+  /**
+   * Starts and ends a span with a local parent, which includes the {@link
+   * LocalRootSpan#onSpanStart(ReadableSpan, Context)} invocation of the registered span processor.
+   */
+  @Benchmark
+  public ReadableSpan startChildSpan(TracerState state) {
+    Span child = state.tracer.spanBuilder("child").setParent(state.parentContext).startSpan();
+    child.end();
+    return LocalRootSpan.getFor(child);
+  }
+
+  @Benchmark
+  public ReadableSpan getFor(TracerState state) {
+    return LocalRootSpan.getFor(state.leaf);
+  }
+
+  @State(Scope.Benchmark)
+  public static class TracerState {
+
+    /** The number of ancestors of the parent span used for starting child spans. */
+    @Param({"0", "4"})
+    int depth;
+
+    SdkTracerProvider tracerProvider;
+    Tracer tracer;
+    Context parentContext;
+    Span leaf;
+
+    @Setup(Level.Iteration)
+    public void init() {
+      tracerProvider = SdkTracerProvider.builder().addSpanProcessor(new LocalRootTracker()).build();
+      tracer = tracerProvider.get("benchmark");
+      parentContext = Context.root().with(tracer.spanBuilder("root").startSpan());
+      for (int i = 0; i < depth; i++) {
+        Span span = tracer.spanBuilder("parent").setParent(parentContext).startSpan();
+        parentContext = parentContext.with(span);
+      }
+      leaf = tracer.spanBuilder("leaf").setParent(parentContext).startSpan();
+    }
+
+    @TearDown(Level.Iteration)
+    public void destroy() {
+      tracerProvider.close();
+    }
+  }
+
+  private static class LocalRootTracker implements SpanProcessor {
+
+    @Override
+    public void onStart(Context parentContext, ReadWriteSpan span) {
+      LocalRootSpan.onSpanStart(span, parentContext);
+    }
+
+    @Override
+    public boolean isStartRequired() {
+      return true;
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {}
+
+    @Override
+    public boolean isEndRequired() {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.common;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Threads(4)
+public class MutableSpanBenchmark {
+
+  private static final AttributeKey<String> ADDED_ATTRIBUTE = AttributeKey.stringKey("added");
+
+  @Benchmark
+  public SpanData toSpanDataWithoutChanges(SpanState state) {
+    return MutableSpan.makeMutable(state.span).toSpanData();
+  }
+
+  @Benchmark
+  public SpanData addAttributeAndToSpanData(SpanState state) {
+    MutableSpan mutable = MutableSpan.makeMutable(state.span);
+    mutable.setAttribute(ADDED_ATTRIBUTE, "value");
+    return mutable.toSpanData();
+  }
+
+  @State(Scope.Benchmark)
+  public static class SpanState {
+
+    /** The number of attributes on the original span. */
+    @Param({"4", "32"})
+    int attributeCount;
+
+    SdkTracerProvider tracerProvider;
+    ReadableSpan span;
+
+    @Setup(Level.Iteration)
+    public void init() {
+      tracerProvider = SdkTracerProvider.builder().build();
+      Tracer tracer = tracerProvider.get("benchmark");
+      Span sdkSpan = tracer.spanBuilder("span").startSpan();
+      for (int i = 0; i < attributeCount; i++) {
+        sdkSpan.setAttribute("attribute." + i, "value " + i);
+      }
+      sdkSpan.end();
+      span = (ReadableSpan) sdkSpan;
+    }
+
+    @TearDown(Level.Iteration)
+    public void destroy() {
+      tracerProvider.close();
+    }
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.common;
+
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Threads(4)
+public class SpanValueBenchmark {
+
+  private static final SpanValue<Object> denseValue = SpanValue.createDense();
+  private static final SpanValue<Object> sparseValue = SpanValue.createSparse();
+
+  private static final Object VALUE = new Object();
+
+  /** Must be a power of two. */
+  private static final int SPAN_COUNT = 1024;
+
+  @Benchmark
+  public Object get(SpanState state, ThreadState thread) {
+    return state.spanValue.get(thread.nextSpan(state));
+  }
+
+  @Benchmark
+  public void set(SpanState state, ThreadState thread) {
+    state.spanValue.set(thread.nextSpan(state), VALUE);
+  }
+
+  @Benchmark
+  public Object clearAndComputeIfNull(SpanState state, ThreadState thread) {
+    ReadableSpan span = thread.nextSpan(state);
+    state.spanValue.clear(span);
+    return state.spanValue.computeIfNull(span, () -> VALUE);
+  }
+
+  @State(Scope.Benchmark)
+  public static class SpanState {
+
+    @Param({"dense", "sparse"})
+    String type;
+
+    SpanValue<Object> spanValue;
+    SdkTracerProvider tracerProvider;
+    ReadableSpan[] spans;
+
+    @Setup(Level.Iteration)
+    public void init() {
+      spanValue = type.equals("dense") ? denseValue : sparseValue;
+      tracerProvider = SdkTracerProvider.builder().build();
+      Tracer tracer = tracerProvider.get("benchmark");
+      spans = new ReadableSpan[SPAN_COUNT];
+      for (int i = 0; i < SPAN_COUNT; i++) {
+        spans[i] = (ReadableSpan) tracer.spanBuilder("span").startSpan();
+        spanValue.set(spans[i], VALUE);
+      }
+    }
+
+    @TearDown(Level.Iteration)
+    public void destroy() {
+      tracerProvider.close();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+
+    int next;
+
+    ReadableSpan nextSpan(SpanState state) {
+      return state.spans[next++ & (SPAN_COUNT - 1)];
+    }
+  }
+}
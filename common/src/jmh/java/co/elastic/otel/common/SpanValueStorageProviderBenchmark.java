@@ -0,0 +1,117 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.common;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Compares the storage providers for {@link SpanValue}s. Note that the field-backed provider is
+ * only available if the storage field has been injected into the SDK span class, like it is done
+ * for the agent distro. Otherwise, the {@code default} variant falls back to the striped provider
+ * as well.
+ */
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Threads(4)
+public class SpanValueStorageProviderBenchmark {
+
+  /** Must be a power of two. */
+  private static final int SPAN_COUNT = 1024;
+
+  @Benchmark
+  public SpanValueStorage getExisting(ProviderState state, ThreadState thread) {
+    return state.provider.get(thread.nextSpan(state), false);
+  }
+
+  @Benchmark
+  public SpanValueStorage getOrInitialize(ProviderState state, ThreadState thread) {
+    return state.provider.get(thread.nextSpan(state), true);
+  }
+
+  /**
+   * Initializes the storage for a new span on every invocation, which stresses the insertion and
+   * cleanup of the weak map entries for the map-based providers.
+   */
+  @Benchmark
+  public SpanValueStorage newSpan(ProviderState state) {
+    return state.provider.get(state.tracer.spanBuilder("new").startSpan(), true);
+  }
+
+  @State(Scope.Benchmark)
+  public static class ProviderState {
+
+    @Param({"default", "mapBacked", "striped"})
+    String providerType;
+
+    SpanValueStorageProvider provider;
+    SdkTracerProvider tracerProvider;
+    Tracer tracer;
+    Span[] spans;
+
+    @Setup(Level.Iteration)
+    public void init() {
+      switch (providerType) {
+        case "mapBacked":
+          provider = SpanValueStorageProvider.MapBacked.getInstance();
+          break;
+        case "striped":
+          provider = StripedSpanValueStorageProvider.getInstance();
+          break;
+        default:
+          provider = SpanValueStorageProvider.get();
+      }
+      tracerProvider = SdkTracerProvider.builder().build();
+      tracer = tracerProvider.get("benchmark");
+      spans = new Span[SPAN_COUNT];
+      for (int i = 0; i < SPAN_COUNT; i++) {
+        spans[i] = tracer.spanBuilder("span").startSpan();
+        provider.get(spans[i], true);
+      }
+    }
+
+    @TearDown(Level.Iteration)
+    public void destroy() {
+      tracerProvider.close();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+
+    int next;
+
+    Span nextSpan(ProviderState state) {
+      return state.spans[next++ & (SPAN_COUNT - 1)];
+    }
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.common.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Threads(4)
+public class WildcardMatcherBenchmark {
+
+  private static final String MATCHING = "co.elastic.otel.SomeServiceImplementation";
+  private static final String NOT_MATCHING = "org.example.AnotherServiceImplementation";
+
+  @Benchmark
+  public boolean matching(MatcherState state) {
+    return state.matcher.matches(MATCHING);
+  }
+
+  @Benchmark
+  public boolean notMatching(MatcherState state) {
+    return state.matcher.matches(NOT_MATCHING);
+  }
+
+  /** Typical usage for configuration options: Checking a value against a list of matchers. */
+  @Benchmark
+  public boolean isAnyMatchOfList(MatcherState state) {
+    return WildcardMatcher.isAnyMatch(state.matcherList, NOT_MATCHING);
+  }
+
+  @Benchmark
+  public boolean isAnyMatchOfSet(MatcherState state) {
+    return state.matcherSet.isAnyMatch(NOT_MATCHING);
+  }
+
+  /** Checks a class name against a long list of matchers, as used for example for exclusions. */
+  @Benchmark
+  public boolean isAnyMatchOfLargeList(LargeMatcherState state) {
+    return WildcardMatcher.isAnyMatch(state.matcherList, state.input);
+  }
+
+  @Benchmark
+  public boolean isAnyMatchOfLargeSet(LargeMatcherState state) {
+    return state.matcherSet.isAnyMatch(state.input);
+  }
+
+  @Benchmark
+  public boolean isAnyMatchOfLargeCache(LargeMatcherState state) {
+    return state.matcherCache.isAnyMatch(state.input);
+  }
+
+  @State(Scope.Benchmark)
+  public static class MatcherState {
+
+    @Param({"co.elastic.otel.*", "*ServiceImpl*", "(?-i)co.elastic.*Service*", "*"})
+    String pattern;
+
+    WildcardMatcher matcher;
+    List<WildcardMatcher> matcherList;
+    WildcardMatcherSet matcherSet;
+
+    @Setup
+    public void init() {
+      matcher = WildcardMatcher.valueOf(pattern);
+      matcherList = new ArrayList<>();
+      for (int i = 0; i < 9; i++) {
+        matcherList.add(WildcardMatcher.valueOf("com.example" + i + ".*"));
+      }
+      matcherList.add(matcher);
+      matcherSet = WildcardMatcherSet.of(matcherList);
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class LargeMatcherState {
+
+    @Param({"10", "50"})
+    int matcherCount;
+
+    @Param({MATCHING, NOT_MATCHING})
+    String input;
+
+    List<WildcardMatcher> matcherList;
+    WildcardMatcherSet matcherSet;
+    CachingWildcardMatcher matcherCache;
+
+    @Setup
+    public void init() {
+      matcherList = new ArrayList<>();
+      for (int i = 0; i < matcherCount - 1; i++) {
+        switch (i % 3) {
+          case 0:
+            matcherList.add(WildcardMatcher.valueOf("com.example" + i + ".*"));
+            break;
+          case 1:
+            matcherList.add(WildcardMatcher.valueOf("*Generated" + i + "*"));
+            break;
+          default:
+            matcherList.add(WildcardMatcher.valueOf("org.example.*.Internal" + i));
+        }
+      }
+      matcherList.add(WildcardMatcher.valueOf("co.elastic.*Service*"));
+      matcherSet = WildcardMatcherSet.of(matcherList);
+      matcherCache = new CachingWildcardMatcher(matcherList, 1024);
+    }
+  }
+}
@@ -24,6 +24,10 @@ import io.opentelemetry.sdk.trace.SpanProcessor;
 /**
  * Mutations can be performed in {@link #doOnEnd(ReadableSpan)} by wrapping the span in a {@link
  * MutableSpan}
+ *
+ * <p>The span is passed on unchanged unless a processor actually makes it mutable. Once a {@link
+ * MutableSpan} has been passed on, processors further down the chain share it, so that {@link
+ * ReadableSpan#toSpanData()} is invoked at most once on the original span.
  */
 public abstract class AbstractSimpleChainingSpanProcessor extends AbstractChainingSpanProcessor {
   private final boolean nextRequiresEnd;
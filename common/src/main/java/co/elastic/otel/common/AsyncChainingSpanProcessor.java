@@ -0,0 +1,249 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.common;
+
+import co.elastic.otel.common.util.BoundedMpscQueue;
+import co.elastic.otel.common.util.ExecutorUtils;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A chaining processor which hands ended spans off to a dedicated thread, which then invokes the
+ * {@link SpanProcessor#onEnd(ReadableSpan)} of the next processor. This moves the end-processing of
+ * all subsequent processors in the chain away from the application threads.
+ *
+ * <p>Spans are buffered in a bounded lock-free queue and drained in batches. If the queue is full,
+ * spans are dropped and counted in {@link #getDroppedSpanCount()}. {@link
+ * SpanProcessor#onStart(Context, ReadWriteSpan)} is still invoked synchronously for the next
+ * processor.
+ */
+public class AsyncChainingSpanProcessor extends AbstractChainingSpanProcessor {
+
+  private static final Logger logger = Logger.getLogger(AsyncChainingSpanProcessor.class.getName());
+
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private final boolean nextRequiresEnd;
+  private final BoundedMpscQueue<ReadableSpan> queue;
+  private final int maxBatchSize;
+  private final Thread worker;
+
+  private final AtomicLong droppedSpans = new AtomicLong();
+  private final ConcurrentLinkedQueue<FlushRequest> pendingFlushes = new ConcurrentLinkedQueue<>();
+
+  private volatile boolean workerParked;
+  private volatile boolean shutdown;
+
+  /**
+   * Set once the worker has stopped consuming the queue. Spans and flush requests which are added
+   * concurrently afterwards are handled by the thread adding them, see {@link
+   * #completeAfterTermination()}.
+   */
+  private volatile boolean terminated;
+
+  /**
+   * @param next the next processor to be invoked after the one being constructed.
+   * @param queueSize the maximum number of spans waiting to be processed
+   * @param maxBatchSize the maximum number of spans processed before checking for flushes and
+   *     shutdown
+   */
+  public AsyncChainingSpanProcessor(SpanProcessor next, int queueSize, int maxBatchSize) {
+    super(next);
+    if (maxBatchSize <= 0) {
+      throw new IllegalArgumentException("maxBatchSize must be positive but was " + maxBatchSize);
+    }
+    this.nextRequiresEnd = next.isEndRequired();
+    this.queue = new BoundedMpscQueue<>(queueSize);
+    this.maxBatchSize = maxBatchSize;
+    worker = ExecutorUtils.threadFactory("async-span-processor", true).newThread(this::run);
+    worker.start();
+  }
+
+  @Override
+  protected boolean requiresStart() {
+    return false;
+  }
+
+  @Override
+  public void onEnd(ReadableSpan readableSpan) {
+    if (!nextRequiresEnd) {
+      return;
+    }
+    if (shutdown || !queue.offer(readableSpan)) {
+      droppedSpans.incrementAndGet();
+      return;
+    }
+    if (terminated) {
+      completeAfterTermination();
+    } else if (workerParked) {
+      LockSupport.unpark(worker);
+    }
+  }
+
+  @Override
+  public boolean isEndRequired() {
+    return nextRequiresEnd;
+  }
+
+  private void run() {
+    try {
+      while (true) {
+        int processed = drainBatch();
+        completeFlushes();
+        if (processed == 0) {
+          if (shutdown && queue.size() == 0) {
+            return;
+          }
+          workerParked = true;
+          // re-check to not miss spans which were added before the flag was visible to producers
+          if (queue.size() == 0 && pendingFlushes.isEmpty() && !shutdown) {
+            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+          }
+          workerParked = false;
+        }
+      }
+    } finally {
+      if (!shutdown) {
+        logger.severe("Span processing thread terminated unexpectedly, dropping ended spans");
+      }
+      terminated = true;
+      completeAfterTermination();
+    }
+  }
+
+  /**
+   * Drops the spans which have been added after the worker has stopped and completes the pending
+   * flush requests. Invoked by the worker when it stops, and by every thread which adds a span or
+   * a flush request while the worker may already have stopped, so that nothing is left behind.
+   */
+  private synchronized void completeAfterTermination() {
+    // the lock ensures that there is only a single consumer at a time
+    while (queue.poll() != null) {
+      droppedSpans.incrementAndGet();
+    }
+    completeFlushes();
+  }
+
+  private int drainBatch() {
+    int processed = 0;
+    ReadableSpan span;
+    while (processed < maxBatchSize && (span = queue.poll()) != null) {
+      processed++;
+      try {
+        next.onEnd(span);
+      } catch (RuntimeException e) {
+        logger.log(Level.WARNING, "Next span processor failed to process ended span", e);
+      }
+    }
+    return processed;
+  }
+
+  private void completeFlushes() {
+    long processedSpans = queue.getConsumerIndex();
+    Iterator<FlushRequest> iterator = pendingFlushes.iterator();
+    while (iterator.hasNext()) {
+      FlushRequest request = iterator.next();
+      if (request.targetIndex <= processedSpans) {
+        iterator.remove();
+        CompletableResultCode nextResult = next.forceFlush();
+        nextResult.whenComplete(
+            () -> {
+              if (nextResult.isSuccess()) {
+                request.result.succeed();
+              } else {
+                request.result.fail();
+              }
+            });
+      }
+    }
+  }
+
+  /**
+   * Completes after all spans enqueued before this call have been passed to the next processor and
+   * the next processor has been flushed.
+   */
+  @Override
+  protected CompletableResultCode doForceFlush() {
+    if (shutdown) {
+      return CompletableResultCode.ofSuccess();
+    }
+    FlushRequest request = new FlushRequest(queue.getProducerIndex());
+    pendingFlushes.add(request);
+    if (terminated) {
+      completeAfterTermination();
+    } else {
+      LockSupport.unpark(worker);
+    }
+    return request.result;
+  }
+
+  /** Stops accepting spans and waits for the already enqueued spans to be processed. */
+  @Override
+  protected CompletableResultCode doShutdown() {
+    shutdown = true;
+    LockSupport.unpark(worker);
+    try {
+      worker.join(TimeUnit.SECONDS.toMillis(5));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (worker.isAlive()) {
+      logger.warning("Timed out waiting for the queued spans to be processed on shutdown");
+      return CompletableResultCode.ofFailure();
+    }
+    return CompletableResultCode.ofSuccess();
+  }
+
+  /**
+   * Returns the number of spans which were dropped because the queue was full or the processor has
+   * been shut down.
+   */
+  public long getDroppedSpanCount() {
+    return droppedSpans.get();
+  }
+
+  /** Returns the number of spans which have been handed off to the processing thread so far. */
+  public long getEnqueuedSpanCount() {
+    return queue.getProducerIndex();
+  }
+
+  /** Returns the number of spans waiting to be processed. */
+  public int getQueuedSpanCount() {
+    return queue.size();
+  }
+
+  private static class FlushRequest {
+    final long targetIndex;
+    final CompletableResultCode result = new CompletableResultCode();
+
+    FlushRequest(long targetIndex) {
+      this.targetIndex = targetIndex;
+    }
+  }
+}
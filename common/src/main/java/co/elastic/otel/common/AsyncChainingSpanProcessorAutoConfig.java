@@ -0,0 +1,55 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.common;
+
+import com.google.auto.service.AutoService;
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
+
+/**
+ * Inserts an {@link AsyncChainingSpanProcessor} into the chain of processors if enabled. All
+ * processors with a higher order than the configured one process ended spans asynchronously. By
+ * default, only processors registered with {@link ChainingSpanProcessorRegisterer#ORDER_FIRST} run
+ * before the asynchronous hand-off.
+ */
+@AutoService(ChainingSpanProcessorAutoConfiguration.class)
+public class AsyncChainingSpanProcessorAutoConfig
+    implements ChainingSpanProcessorAutoConfiguration {
+
+  static final String ENABLED_OPTION = "elastic.otel.span.processing.async.enabled";
+  static final String ORDER_OPTION = "elastic.otel.span.processing.async.order";
+  static final String QUEUE_SIZE_OPTION = "elastic.otel.span.processing.async.queue.size";
+  static final String BATCH_SIZE_OPTION = "elastic.otel.span.processing.async.batch.size";
+
+  static final int DEFAULT_QUEUE_SIZE = 2048;
+  static final int DEFAULT_BATCH_SIZE = 512;
+  static final int DEFAULT_ORDER = ChainingSpanProcessorRegisterer.ORDER_FIRST + 1;
+
+  @Override
+  public void registerSpanProcessors(
+      ConfigProperties properties, ChainingSpanProcessorRegisterer registerer) {
+    if (!properties.getBoolean(ENABLED_OPTION, false)) {
+      return;
+    }
+    int queueSize = properties.getInt(QUEUE_SIZE_OPTION, DEFAULT_QUEUE_SIZE);
+    int batchSize = properties.getInt(BATCH_SIZE_OPTION, DEFAULT_BATCH_SIZE);
+    int order = properties.getInt(ORDER_OPTION, DEFAULT_ORDER);
+
+    registerer.register(next -> new AsyncChainingSpanProcessor(next, queueSize, batchSize), order);
+  }
+}
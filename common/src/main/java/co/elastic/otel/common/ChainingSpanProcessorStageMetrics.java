@@ -0,0 +1,246 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.common;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.BatchCallback;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.MeterProvider;
+import io.opentelemetry.api.metrics.ObservableDoubleMeasurement;
+import io.opentelemetry.api.metrics.ObservableLongMeasurement;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Opt-in self-telemetry for the chain of processors built by {@link
+ * ChainingSpanProcessorsInstaller}: Every stage of the chain is wrapped so that the time spent in
+ * its {@link SpanProcessor#onStart(Context, ReadWriteSpan)} and {@link
+ * SpanProcessor#onEnd(ReadableSpan)} is recorded.
+ *
+ * <p>Because every stage invokes the next stage from within its own callbacks, the recorded time
+ * excludes the time spent in subsequent stages. The timings are recorded into HdrHistogram {@link
+ * Recorder}s on the hot path. Whenever metrics are collected, the interval histograms are read and
+ * reported as call counts and latency quantiles per stage, with the class name of the stage as
+ * attribute.
+ */
+class ChainingSpanProcessorStageMetrics {
+
+  static final String ENABLED_OPTION = "elastic.otel.span.processing.stage.metrics.enabled";
+
+  static final String INSTRUMENTATION_SCOPE = "co.elastic.otel.span-processing";
+
+  private static final String PREFIX = "elastic.span_processor.stage.";
+
+  static final AttributeKey<String> STAGE = AttributeKey.stringKey("stage");
+  static final AttributeKey<String> CALLBACK = AttributeKey.stringKey("callback");
+  static final AttributeKey<Double> QUANTILE = AttributeKey.doubleKey("quantile");
+
+  private static final double[] QUANTILES = {0.5, 0.99, 1.0};
+
+  private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  /**
+   * Time spent in nested stages by the current thread, which needs to be subtracted from the
+   * duration of the enclosing stage.
+   */
+  private static final ThreadLocal<long[]> nestedStageNanos =
+      ThreadLocal.withInitial(() -> new long[1]);
+
+  private final List<StageTimings> stages = new CopyOnWriteArrayList<>();
+
+  @Nullable private BatchCallback registration;
+  private boolean shutdown;
+
+  /** Wraps the given stage of the chain so that its callbacks are timed. */
+  SpanProcessor instrument(SpanProcessor stage) {
+    StageTimings timings = new StageTimings(stage.getClass().getName());
+    stages.add(timings);
+    return new TimedSpanProcessor(stage, timings);
+  }
+
+  /**
+   * Starts reporting the recorded timings via the given {@link MeterProvider}. This is decoupled
+   * from building the chain, because the {@link MeterProvider} of the SDK is not available yet
+   * while the processor chain is being built. Timings recorded before are reported nonetheless.
+   */
+  synchronized void register(MeterProvider meterProvider) {
+    if (registration == null && !shutdown) {
+      registration = register(meterProvider.get(INSTRUMENTATION_SCOPE));
+    }
+  }
+
+  private synchronized void unregister() {
+    shutdown = true;
+    if (registration != null) {
+      registration.close();
+      registration = null;
+    }
+  }
+
+  private BatchCallback register(Meter meter) {
+    ObservableLongMeasurement calls =
+        meter
+            .counterBuilder(PREFIX + "calls")
+            .setDescription("Number of span processor callbacks invoked per stage")
+            .setUnit("{call}")
+            .buildObserver();
+    ObservableDoubleMeasurement duration =
+        meter
+            .gaugeBuilder(PREFIX + "duration")
+            .setDescription(
+                "Quantiles of the time spent per stage and callback since the last collection,"
+                    + " excluding subsequent stages")
+            .setUnit("s")
+            .buildObserver();
+    return meter.batchCallback(
+        () -> {
+          for (StageTimings stage : stages) {
+            stage.onStart.report(calls, duration);
+            stage.onEnd.report(calls, duration);
+          }
+        },
+        calls,
+        duration);
+  }
+
+  private static class StageTimings {
+    final CallbackTimings onStart;
+    final CallbackTimings onEnd;
+
+    StageTimings(String stageName) {
+      onStart = new CallbackTimings(stageName, "on_start");
+      onEnd = new CallbackTimings(stageName, "on_end");
+    }
+  }
+
+  private static class CallbackTimings {
+    private final Recorder recorder = new Recorder(2);
+    private final Attributes attributes;
+    private final Attributes[] quantileAttributes;
+
+    private long totalCount;
+    @Nullable private Histogram intervalHistogram;
+
+    CallbackTimings(String stageName, String callback) {
+      attributes = Attributes.of(STAGE, stageName, CALLBACK, callback);
+      quantileAttributes = new Attributes[QUANTILES.length];
+      for (int i = 0; i < QUANTILES.length; i++) {
+        quantileAttributes[i] = attributes.toBuilder().put(QUANTILE, QUANTILES[i]).build();
+      }
+    }
+
+    void record(long nanos) {
+      recorder.recordValue(Math.max(0, nanos));
+    }
+
+    synchronized void report(
+        ObservableLongMeasurement calls, ObservableDoubleMeasurement duration) {
+      intervalHistogram = recorder.getIntervalHistogram(intervalHistogram);
+      long intervalCount = intervalHistogram.getTotalCount();
+      totalCount += intervalCount;
+      if (totalCount > 0) {
+        // callbacks which are not required by the stage are never invoked and not reported
+        calls.record(totalCount, attributes);
+      }
+      if (intervalCount > 0) {
+        for (int i = 0; i < QUANTILES.length; i++) {
+          long nanos = intervalHistogram.getValueAtPercentile(QUANTILES[i] * 100);
+          duration.record(nanos / NANOS_PER_SECOND, quantileAttributes[i]);
+        }
+      }
+    }
+  }
+
+  private class TimedSpanProcessor implements SpanProcessor {
+
+    private final SpanProcessor delegate;
+    private final StageTimings timings;
+
+    TimedSpanProcessor(SpanProcessor delegate, StageTimings timings) {
+      this.delegate = delegate;
+      this.timings = timings;
+    }
+
+    @Override
+    public void onStart(Context parentContext, ReadWriteSpan span) {
+      long[] nested = nestedStageNanos.get();
+      long outerNested = nested[0];
+      nested[0] = 0;
+      long start = System.nanoTime();
+      try {
+        delegate.onStart(parentContext, span);
+      } finally {
+        long duration = System.nanoTime() - start;
+        timings.onStart.record(duration - nested[0]);
+        nested[0] = outerNested + duration;
+      }
+    }
+
+    @Override
+    public boolean isStartRequired() {
+      return delegate.isStartRequired();
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {
+      long[] nested = nestedStageNanos.get();
+      long outerNested = nested[0];
+      nested[0] = 0;
+      long start = System.nanoTime();
+      try {
+        delegate.onEnd(span);
+      } finally {
+        long duration = System.nanoTime() - start;
+        timings.onEnd.record(duration - nested[0]);
+        nested[0] = outerNested + duration;
+      }
+    }
+
+    @Override
+    public boolean isEndRequired() {
+      return delegate.isEndRequired();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+      unregister();
+      return delegate.shutdown();
+    }
+
+    @Override
+    public CompletableResultCode forceFlush() {
+      return delegate.forceFlush();
+    }
+
+    @Override
+    public String toString() {
+      return "Timed{" + delegate + "}";
+    }
+  }
+}
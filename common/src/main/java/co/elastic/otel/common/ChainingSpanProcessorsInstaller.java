@@ -83,9 +83,21 @@ public class ChainingSpanProcessorsInstaller implements AutoConfigurationCustomi
     // sort from highest (= last processor) to first
     factories.sort((a, b) -> Integer.compare(b.order, a.order));
 
+    ChainingSpanProcessorStageMetrics stageMetrics = null;
+    if (properties.getBoolean(ChainingSpanProcessorStageMetrics.ENABLED_OPTION, false)) {
+      stageMetrics = new ChainingSpanProcessorStageMetrics();
+      SelfTelemetry.whenMeterProviderAvailable(stageMetrics::register);
+    }
+
     SpanProcessor result = terminalProcessor;
+    if (stageMetrics != null) {
+      result = stageMetrics.instrument(result);
+    }
     for (ProcessorFactoryWithOrder fac : factories) {
       result = fac.factory.apply(result);
+      if (stageMetrics != null) {
+        result = stageMetrics.instrument(result);
+      }
     }
     return result;
   }
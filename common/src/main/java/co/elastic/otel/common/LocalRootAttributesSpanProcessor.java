@@ -0,0 +1,106 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.common;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import javax.annotation.Nullable;
+
+/**
+ * Attaches the {@link ElasticAttributes#LOCAL_ROOT_ID}, {@link ElasticAttributes#LOCAL_ROOT_NAME}
+ * and {@link ElasticAttributes#LOCAL_ROOT_TYPE} attributes to every started span. The type is only
+ * attached if the local root has the {@link ElasticAttributes#SPAN_TYPE} attribute.
+ *
+ * <p>The attributes are built only once per local root and cached on the local root span, so that
+ * children neither re-derive nor allocate the values. Note that the SDK span has no way of sharing
+ * an {@link Attributes} instance, so every child still copies the (at most three) entries of the
+ * cached fragment into its own attribute map. As a consequence of the caching, the name and type
+ * reflect the state of the local root when its first span (usually the root itself) was started,
+ * later renames of the local root are not reflected.
+ *
+ * <p>This processor is only registered if enabled, see {@link
+ * LocalRootAttributesSpanProcessorAutoConfig}.
+ */
+public class LocalRootAttributesSpanProcessor extends AbstractSimpleChainingSpanProcessor {
+
+  private static final SpanValue<Attributes> localRootAttributes = SpanValue.createDense();
+
+  /**
+   * @param next the next processor to be invoked after the one being constructed.
+   */
+  public LocalRootAttributesSpanProcessor(SpanProcessor next) {
+    super(next);
+  }
+
+  @Override
+  protected void doOnStart(Context context, ReadWriteSpan span) {
+    LocalRootSpan.onSpanStart(span, context);
+    Attributes attributes = getLocalRootAttributes(span);
+    if (attributes != null) {
+      // ReadWriteSpan only offers per-entry setters, setAllAttributes iterates the cached fragment
+      span.setAllAttributes(attributes);
+    }
+  }
+
+  /**
+   * Returns the cached attributes fragment of the local root of the given span, building it on
+   * first access.
+   *
+   * @return the attributes or {@code null} if the local root of the span is unknown
+   */
+  @Nullable
+  static Attributes getLocalRootAttributes(ReadableSpan span) {
+    ReadableSpan localRoot = LocalRootSpan.getFor(span);
+    if (localRoot == null) {
+      return null;
+    }
+    return localRootAttributes.computeIfNull(localRoot, () -> buildLocalRootAttributes(localRoot));
+  }
+
+  private static Attributes buildLocalRootAttributes(ReadableSpan localRoot) {
+    String type = localRoot.getAttribute(ElasticAttributes.SPAN_TYPE);
+    if (type == null) {
+      return Attributes.of(
+          ElasticAttributes.LOCAL_ROOT_ID,
+          localRoot.getSpanContext().getSpanId(),
+          ElasticAttributes.LOCAL_ROOT_NAME,
+          localRoot.getName());
+    }
+    return Attributes.of(
+        ElasticAttributes.LOCAL_ROOT_ID,
+        localRoot.getSpanContext().getSpanId(),
+        ElasticAttributes.LOCAL_ROOT_NAME,
+        localRoot.getName(),
+        ElasticAttributes.LOCAL_ROOT_TYPE,
+        type);
+  }
+
+  @Override
+  protected boolean requiresStart() {
+    return true;
+  }
+
+  @Override
+  protected boolean requiresEnd() {
+    return false;
+  }
+}
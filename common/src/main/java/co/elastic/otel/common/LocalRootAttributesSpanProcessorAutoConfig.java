@@ -0,0 +1,41 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.common;
+
+import com.google.auto.service.AutoService;
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
+
+/**
+ * Registers the {@link LocalRootAttributesSpanProcessor} if enabled. Disabled by default, as the
+ * local root attributes increase the size of every exported span.
+ */
+@AutoService(ChainingSpanProcessorAutoConfiguration.class)
+public class LocalRootAttributesSpanProcessorAutoConfig
+    implements ChainingSpanProcessorAutoConfiguration {
+
+  static final String ENABLED_OPTION = "elastic.otel.span.local_root.attributes.enabled";
+
+  @Override
+  public void registerSpanProcessors(
+      ConfigProperties properties, ChainingSpanProcessorRegisterer registerer) {
+    if (properties.getBoolean(ENABLED_OPTION, false)) {
+      registerer.register(LocalRootAttributesSpanProcessor::new);
+    }
+  }
+}
@@ -24,56 +24,126 @@ import io.opentelemetry.sdk.trace.ReadWriteSpan;
 import io.opentelemetry.sdk.trace.ReadableSpan;
 import io.opentelemetry.sdk.trace.SpanProcessor;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
+/**
+ * A composite {@link SpanProcessor} whose delegates can be added and removed at any time.
+ *
+ * <p>The delegates are stored in an immutable snapshot, which is replaced on every modification
+ * (copy-on-write) and safely published via a volatile field. The snapshot holds precomputed arrays
+ * of the delegates requiring {@link #onStart(Context, ReadWriteSpan)} and {@link
+ * #onEnd(ReadableSpan)}, so that dispatching a span is a simple loop over an array.
+ *
+ * <p>Note that {@link #isStartRequired()} and {@link #isEndRequired()} are usually queried only
+ * once when the processor pipeline is built. Delegates added later therefore only receive the
+ * callbacks which have been required at that point in time.
+ */
+// don't use for-each as it allocates memory by instantiating an iterator
+@SuppressWarnings("ForLoopReplaceableByForEach")
 class MutableCompositeSpanProcessor implements SpanProcessor {
 
-  private final List<SpanProcessor> delegates = new ArrayList<>();
-
-  // visibile for testing
-  SpanProcessor composite = SpanProcessor.composite();
+  private volatile Delegates delegates = Delegates.EMPTY;
 
   public boolean isEmpty() {
-    return delegates.isEmpty();
+    return delegates.all.length == 0;
   }
 
-  public void addDelegate(SpanProcessor processor) {
-    delegates.add(processor);
-    composite = SpanProcessor.composite(delegates);
+  /** Returns an immutable snapshot of the current delegates. */
+  public List<SpanProcessor> getDelegates() {
+    return Collections.unmodifiableList(Arrays.asList(delegates.all));
   }
 
-  @Override
-  public CompletableResultCode shutdown() {
-    return composite.shutdown();
+  public synchronized void addDelegate(SpanProcessor processor) {
+    SpanProcessor[] current = delegates.all;
+    SpanProcessor[] updated = Arrays.copyOf(current, current.length + 1);
+    updated[current.length] = processor;
+    delegates = new Delegates(updated);
+  }
+
+  /**
+   * Removes the given processor from the delegates. The removed processor is not shut down.
+   *
+   * @return true, if the processor was a delegate of this composite
+   */
+  public synchronized boolean removeDelegate(SpanProcessor processor) {
+    List<SpanProcessor> updated = new ArrayList<>(Arrays.asList(delegates.all));
+    if (!updated.remove(processor)) {
+      return false;
+    }
+    delegates = new Delegates(updated.toArray(new SpanProcessor[0]));
+    return true;
   }
 
   @Override
-  public CompletableResultCode forceFlush() {
-    return composite.forceFlush();
+  public CompletableResultCode shutdown() {
+    SpanProcessor[] all = delegates.all;
+    List<CompletableResultCode> results = new ArrayList<>(all.length);
+    for (int i = 0; i < all.length; i++) {
+      results.add(all[i].shutdown());
+    }
+    return CompletableResultCode.ofAll(results);
   }
 
   @Override
-  public void close() {
-    composite.close();
+  public CompletableResultCode forceFlush() {
+    SpanProcessor[] all = delegates.all;
+    List<CompletableResultCode> results = new ArrayList<>(all.length);
+    for (int i = 0; i < all.length; i++) {
+      results.add(all[i].forceFlush());
+    }
+    return CompletableResultCode.ofAll(results);
   }
 
   @Override
   public void onStart(Context context, ReadWriteSpan readWriteSpan) {
-    composite.onStart(context, readWriteSpan);
+    SpanProcessor[] startRequired = delegates.startRequired;
+    for (int i = 0; i < startRequired.length; i++) {
+      startRequired[i].onStart(context, readWriteSpan);
+    }
   }
 
   @Override
   public boolean isStartRequired() {
-    return composite.isStartRequired();
+    return delegates.startRequired.length > 0;
   }
 
   @Override
   public void onEnd(ReadableSpan readableSpan) {
-    composite.onEnd(readableSpan);
+    SpanProcessor[] endRequired = delegates.endRequired;
+    for (int i = 0; i < endRequired.length; i++) {
+      endRequired[i].onEnd(readableSpan);
+    }
   }
 
   @Override
   public boolean isEndRequired() {
-    return composite.isEndRequired();
+    return delegates.endRequired.length > 0;
+  }
+
+  private static class Delegates {
+
+    static final Delegates EMPTY = new Delegates(new SpanProcessor[0]);
+
+    final SpanProcessor[] all;
+    final SpanProcessor[] startRequired;
+    final SpanProcessor[] endRequired;
+
+    Delegates(SpanProcessor[] all) {
+      this.all = all;
+      List<SpanProcessor> start = new ArrayList<>();
+      List<SpanProcessor> end = new ArrayList<>();
+      for (SpanProcessor processor : all) {
+        if (processor.isStartRequired()) {
+          start.add(processor);
+        }
+        if (processor.isEndRequired()) {
+          end.add(processor);
+        }
+      }
+      startRequired = start.toArray(new SpanProcessor[0]);
+      endRequired = end.toArray(new SpanProcessor[0]);
+    }
   }
 }
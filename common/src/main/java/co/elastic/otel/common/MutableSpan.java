@@ -35,7 +35,10 @@ import javax.annotation.Nullable;
  * <p>This class is not thread-safe.
  *
  * <p>Note that after {@link #toSpanData()} has been called, no more mutation are allowed. This
- * guarantees that the returned SpanData is safe to use across threads.
+ * guarantees that the returned SpanData is safe to use across threads. Making such a frozen span
+ * mutable again via {@link #makeMutable(ReadableSpan)} creates a copy-on-write view, which reuses
+ * the already materialized {@link SpanData} instead of calling {@link #toSpanData()} on the
+ * original span again.
  */
 public class MutableSpan implements ReadableSpan {
 
@@ -52,6 +55,12 @@ public class MutableSpan implements ReadableSpan {
     this.delegate = delegate;
   }
 
+  private MutableSpan(MutableSpan frozen) {
+    this.delegate = frozen;
+    // does not cause any materialization, the frozen span has already computed its SpanData
+    this.cachedDelegateSpanData = frozen.toSpanData();
+  }
+
   /**
    * If the provided span is already mutable, it is casted and returned. Otherwise, it is wrapped in
    * a new MutableSpan instance and returned.
@@ -59,8 +68,9 @@ public class MutableSpan implements ReadableSpan {
    * @param span the span to make mutable
    */
   public static MutableSpan makeMutable(ReadableSpan span) {
-    if (span instanceof MutableSpan && !((MutableSpan) span).frozen) {
-      return (MutableSpan) span;
+    if (span instanceof MutableSpan) {
+      MutableSpan mutableSpan = (MutableSpan) span;
+      return mutableSpan.frozen ? new MutableSpan(mutableSpan) : mutableSpan;
     } else {
       return new MutableSpan(span);
     }
@@ -92,7 +102,13 @@ public class MutableSpan implements ReadableSpan {
           "toSpanData() has already been called on this span, it is no longer mutable!");
     }
     if (mutableSpanData == null) {
-      mutableSpanData = new MutableSpanData(getDelegateSpanData());
+      SpanData delegateData = getDelegateSpanData();
+      if (delegateData instanceof MutableSpanData) {
+        // copy instead of wrap, so that chains of mutations do not result in nested wrappers
+        mutableSpanData = new MutableSpanData((MutableSpanData) delegateData);
+      } else {
+        mutableSpanData = new MutableSpanData(delegateData);
+      }
     }
     return mutableSpanData;
   }
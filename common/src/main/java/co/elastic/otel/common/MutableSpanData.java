@@ -20,7 +20,6 @@ package co.elastic.otel.common;
 
 import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.common.Attributes;
-import io.opentelemetry.api.common.AttributesBuilder;
 import io.opentelemetry.sdk.trace.data.DelegatingSpanData;
 import io.opentelemetry.sdk.trace.data.SpanData;
 import java.util.HashMap;
@@ -36,8 +35,23 @@ public class MutableSpanData extends DelegatingSpanData {
 
   private String nameOverride = null;
 
+  private final SpanData original;
+
   protected MutableSpanData(SpanData delegate) {
     super(delegate);
+    original = delegate;
+  }
+
+  /**
+   * Creates a copy of the provided instance which can be mutated independently. The copy delegates
+   * to the same original {@link SpanData} instead of wrapping the provided instance.
+   */
+  protected MutableSpanData(MutableSpanData toCopy) {
+    this(toCopy.original);
+    if (toCopy.attributeOverrides != null) {
+      attributeOverrides = new HashMap<>(toCopy.attributeOverrides);
+    }
+    nameOverride = toCopy.nameOverride;
   }
 
   public <T> void setAttribute(AttributeKey<T> key, @Nullable T value) {
@@ -56,13 +70,19 @@ public class MutableSpanData extends DelegatingSpanData {
     }
     if (attributeOverrides == null) {
       attributeOverrides = new HashMap<>();
+    } else if (value != null) {
+      // a value replaces attributes with the same name but a different type, see OverlayAttributes
+      attributeOverrides.keySet().removeIf(other -> other.getKey().equals(key.getKey()));
     }
     cachedMutatedAttributes = null;
     attributeOverrides.put(key, value);
   }
 
+  /**
+   * Returns the original attributes with the overrides applied. The returned {@link Attributes}
+   * are a view on top of the original attributes, so the original attributes are not copied.
+   */
   @Override
-  @SuppressWarnings({"rawtypes", "unchecked"})
   public Attributes getAttributes() {
 
     Attributes original = super.getAttributes();
@@ -70,26 +90,14 @@ public class MutableSpanData extends DelegatingSpanData {
       return original;
     }
     if (cachedMutatedAttributes == null) {
-      AttributesBuilder attributesBuilder = Attributes.builder().putAll(original);
-      for (AttributeKey overrideKey : attributeOverrides.keySet()) {
-        Object value = attributeOverrides.get(overrideKey);
-        if (value == null) {
-          attributesBuilder.remove(overrideKey);
-        } else {
-          attributesBuilder.put(overrideKey, value);
-        }
-      }
-      cachedMutatedAttributes = attributesBuilder.build();
+      // copy the overrides, as they may still be changed after this view has been handed out
+      cachedMutatedAttributes = new OverlayAttributes(original, new HashMap<>(attributeOverrides));
     }
     return cachedMutatedAttributes;
   }
 
-  @SuppressWarnings("unchecked")
   public <T> T getAttribute(AttributeKey<T> key) {
-    if (attributeOverrides != null && attributeOverrides.containsKey(key)) {
-      return (T) attributeOverrides.get(key);
-    }
-    return super.getAttributes().get(key);
+    return getAttributes().get(key);
   }
 
   public void setName(String name) {
@@ -0,0 +1,165 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.common;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.common.AttributesBuilder;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import javax.annotation.Nullable;
+
+/**
+ * A read-only view of some original {@link Attributes} with a set of overrides applied on top. An
+ * override with a {@code null} value represents the removal of the corresponding attribute.
+ *
+ * <p>Like {@link AttributesBuilder#put(AttributeKey, Object)}, an override replaces all original
+ * attributes with the same name, even if their type differs, so that no name is emitted twice.
+ *
+ * <p>Lookups and {@link #forEach(BiConsumer)} are served directly from the original attributes and
+ * the overrides without copying. Only {@link #asMap()} materializes the merged attributes, which
+ * is then cached.
+ */
+final class OverlayAttributes implements Attributes {
+
+  private final Attributes original;
+
+  private final Map<AttributeKey<?>, Object> overrides;
+
+  /** The names of all overrides which set a value. */
+  private final Set<String> replacedNames = new HashSet<>();
+
+  private int size = -1;
+
+  @Nullable private Map<AttributeKey<?>, Object> materialized;
+
+  /**
+   * @param original the attributes to apply the overrides to
+   * @param overrides the overrides, must not be modified after being passed to this constructor
+   */
+  OverlayAttributes(Attributes original, Map<AttributeKey<?>, Object> overrides) {
+    this.original = original;
+    this.overrides = overrides;
+    for (Map.Entry<AttributeKey<?>, Object> override : overrides.entrySet()) {
+      if (override.getValue() != null) {
+        replacedNames.add(override.getKey().getKey());
+      }
+    }
+  }
+
+  private boolean isOverridden(AttributeKey<?> originalKey) {
+    return overrides.containsKey(originalKey) || replacedNames.contains(originalKey.getKey());
+  }
+
+  @Nullable
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T get(AttributeKey<T> key) {
+    if (overrides.containsKey(key)) {
+      return (T) overrides.get(key);
+    }
+    if (replacedNames.contains(key.getKey())) {
+      return null;
+    }
+    return original.get(key);
+  }
+
+  @Override
+  public void forEach(BiConsumer<? super AttributeKey<?>, ? super Object> consumer) {
+    original.forEach(
+        (key, value) -> {
+          if (!isOverridden(key)) {
+            consumer.accept(key, value);
+          }
+        });
+    for (Map.Entry<AttributeKey<?>, Object> override : overrides.entrySet()) {
+      if (override.getValue() != null) {
+        consumer.accept(override.getKey(), override.getValue());
+      }
+    }
+  }
+
+  @Override
+  public int size() {
+    if (size == -1) {
+      int[] result = {0};
+      forEach((key, value) -> result[0]++);
+      size = result[0];
+    }
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  @Override
+  public Map<AttributeKey<?>, Object> asMap() {
+    if (materialized == null) {
+      Map<AttributeKey<?>, Object> result = new LinkedHashMap<>();
+      forEach(result::put);
+      materialized = Collections.unmodifiableMap(result);
+    }
+    return materialized;
+  }
+
+  @Override
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  public AttributesBuilder toBuilder() {
+    AttributesBuilder builder = original.toBuilder().removeIf(this::isOverridden);
+    for (Map.Entry<AttributeKey<?>, Object> override : overrides.entrySet()) {
+      AttributeKey key = override.getKey();
+      if (override.getValue() != null) {
+        builder.put(key, override.getValue());
+      }
+    }
+    return builder;
+  }
+
+  /**
+   * Like the {@link Attributes} implementation of the SDK, instances are only equal to instances of
+   * the same class, which keeps this method symmetric. Use {@link #asMap()} to compare attributes
+   * of different implementations.
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof OverlayAttributes)) {
+      return false;
+    }
+    return asMap().equals(((OverlayAttributes) o).asMap());
+  }
+
+  @Override
+  public int hashCode() {
+    return asMap().hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return asMap().toString();
+  }
+}
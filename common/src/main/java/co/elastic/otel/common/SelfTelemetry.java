@@ -0,0 +1,78 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.common;
+
+import io.opentelemetry.api.metrics.MeterProvider;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+
+/**
+ * Hands the {@link MeterProvider} of the SDK to components which report self-telemetry metrics but
+ * are created while the SDK is still being built, such as span processors.
+ *
+ * <p>These components must not access the global {@link MeterProvider}: Doing so before the agent
+ * has registered the SDK as global instance installs a noop global instance instead, which causes
+ * the registration of the SDK to fail. Instead, the agent provides the {@link MeterProvider} via
+ * {@link #setMeterProvider(MeterProvider)} once the SDK has been initialized.
+ */
+public class SelfTelemetry {
+
+  private static final List<Consumer<MeterProvider>> pendingCallbacks = new ArrayList<>();
+
+  @Nullable private static MeterProvider meterProvider;
+
+  private SelfTelemetry() {}
+
+  /**
+   * Invokes the given callback with the {@link MeterProvider} of the SDK once it is available. If
+   * it is already available, the callback is invoked immediately on the calling thread.
+   */
+  public static void whenMeterProviderAvailable(Consumer<MeterProvider> callback) {
+    MeterProvider provider;
+    synchronized (SelfTelemetry.class) {
+      provider = meterProvider;
+      if (provider == null) {
+        pendingCallbacks.add(callback);
+        return;
+      }
+    }
+    callback.accept(provider);
+  }
+
+  /** Provides the {@link MeterProvider} of the initialized SDK and notifies pending callbacks. */
+  public static void setMeterProvider(MeterProvider provider) {
+    List<Consumer<MeterProvider>> callbacks;
+    synchronized (SelfTelemetry.class) {
+      meterProvider = provider;
+      callbacks = new ArrayList<>(pendingCallbacks);
+      pendingCallbacks.clear();
+    }
+    for (Consumer<MeterProvider> callback : callbacks) {
+      callback.accept(provider);
+    }
+  }
+
+  // Visible for testing
+  static synchronized void reset() {
+    meterProvider = null;
+    pendingCallbacks.clear();
+  }
+}
@@ -43,9 +43,9 @@ import javax.annotation.Nullable;
  *       space on every span, even if the span doesn't have a value for the corresponding SpanValue.
  *       However, they are faster to access than sparse SpanValues and occupy less memory when most
  *       spans do have a value set due to not requiring a HashMap Node
- *   <li>sparse SpanValues are stored as entries in a backing Map: They don't occupy space on spans
- *       which do not have a value for them, but are slower to access and require a HashMap Node
- *       when stored.
+ *   <li>sparse SpanValues are stored as entries in a small, shared key-value storage: They don't
+ *       occupy space on spans which do not have a value for them, but are slower to access and
+ *       require two references in the shared storage when stored.
  * </ul>
  *
  * <p>NOTE: the stored values must not have strong reference to the spans they are attached to, as
@@ -58,7 +58,7 @@ public class SpanValue<V> {
   IMPLEMENTATION NOTES
   We attach a single AtomicReferenceArray (implemented via SpanValueStorage) to spans which is used
   as storage for ALL SpanValues.
-  The first entry in this array is always a Map<SpanValue, Object>: This map is used as storage for
+  The first entry in this array is always the sparse storage (see SpanValueStorage), used for
    * sparse SpanValues
    * dense SpanValues which have been created AFTER the AtomicReferenceArray of the given span was initialized
 
@@ -66,11 +66,11 @@ public class SpanValue<V> {
   They directly use the array at the corresponding index for storage.
 
   The AtomicReferenceArray is initialized the first time a SpanValue is written on the given span.
-  Its size is the number of dense SpanValues plus one (for the Map at index 0).
+  Its size is the number of dense SpanValues plus one (for the sparse storage at index 0).
 
   So if the array on a span has been initialized before a given dense SpanValue, the
   dense SpanValue has no space in the array.
-  In this case we simply fall back to the Map at index zero for storage.
+  In this case we simply fall back to the sparse storage at index zero.
    */
 
   private static final Class<?> SDK_SPAN_CLASS = getSdkSpanClass();
@@ -82,7 +82,7 @@ public class SpanValue<V> {
    * We use the {@link Integer#MAX_VALUE} for sparse SpanValues. This allows us to avoid special
    * cases for sparse storage: If {@link AtomicReferenceArray#length()} < index => use the entry at
    * index <br>
-   * else => use the Map at index 0
+   * else => use the sparse storage at index 0
    */
   final int index;
 
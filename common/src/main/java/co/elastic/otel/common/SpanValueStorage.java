@@ -18,6 +18,7 @@
  */
 package co.elastic.otel.common;
 
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
@@ -30,11 +31,23 @@ import javax.annotation.Nullable;
 // waste space and time with an additional reference and object
 public class SpanValueStorage extends AtomicReferenceArray<Object> {
 
-  // initialized with one because index zero is reserved for the map of sparse values
+  // initialized with one because index zero is reserved for the sparse values
   private static final AtomicInteger nextDenseSpanValueIndex = new AtomicInteger(1);
 
   private static final int SPARSE_INDEX = Integer.MAX_VALUE;
 
+  /*
+  The sparse values are stored at index 0 in one of two representations:
+   * An Object[] of alternating keys and values. This array is never modified, instead it is
+     replaced via CAS on every update (copy-on-write). This keeps the memory overhead for spans
+     with a few sparse values down to a single small array.
+   * A ConcurrentHashMap, once the number of entries exceeds MAX_INLINE_SPARSE_ENTRIES. The
+     map is never converted back to the inline representation.
+   */
+  private static final int MAX_INLINE_SPARSE_ENTRIES = 8;
+
+  private static final Object[] NO_ENTRIES = new Object[0];
+
   public SpanValueStorage() {
     super(nextDenseSpanValueIndex.get());
   }
@@ -54,13 +67,9 @@ public class SpanValueStorage extends AtomicReferenceArray<Object> {
     } else {
       // The provided SpanValue is either a sparse SpanValue or the storage was allocated before
       // the dense SpanValue was registered
-      // in both cases we use the map-backed mechanism at index 0
-      Map<SpanValue<?>, Object> sparseStorage = getSparseValuesMap(false);
-      if (sparseStorage != null) {
-        return (V) sparseStorage.get(key);
-      }
+      // in both cases we use the sparse storage at index 0
+      return (V) getSparse(key);
     }
-    return null;
   }
 
   <V> void set(SpanValue<V> key, V value) {
@@ -68,8 +77,7 @@ public class SpanValueStorage extends AtomicReferenceArray<Object> {
     if (length() > key.index) {
       set(key.index, value);
     } else {
-      Map<SpanValue<?>, Object> sparseStorage = getSparseValuesMap(true);
-      sparseStorage.put(key, value);
+      putSparse(key, value, false);
     }
   }
 
@@ -78,8 +86,7 @@ public class SpanValueStorage extends AtomicReferenceArray<Object> {
     if (length() > key.index) {
       return compareAndSet(key.index, null, value);
     } else {
-      Map<SpanValue<?>, Object> sparseStorage = getSparseValuesMap(true);
-      return sparseStorage.putIfAbsent(key, value) == null;
+      return putSparse(key, value, true) == null;
     }
   }
 
@@ -94,8 +101,7 @@ public class SpanValueStorage extends AtomicReferenceArray<Object> {
       compareAndSet(index, null, valueInitializer.get());
       return (V) get(index);
     } else {
-      Map<SpanValue<?>, Object> sparseStorage = getSparseValuesMap(true);
-      V currentValue = (V) sparseStorage.get(key);
+      V currentValue = (V) getSparse(key);
       if (currentValue != null) {
         return currentValue;
       }
@@ -103,8 +109,8 @@ public class SpanValueStorage extends AtomicReferenceArray<Object> {
       if (newValue == null) {
         return null;
       }
-      sparseStorage.putIfAbsent(key, newValue);
-      return (V) sparseStorage.get(key);
+      V previous = (V) putSparse(key, newValue, true);
+      return previous != null ? previous : newValue;
     }
   }
 
@@ -112,21 +118,92 @@ public class SpanValueStorage extends AtomicReferenceArray<Object> {
     if (length() > key.index) {
       set(key.index, null);
     } else {
-      Map<SpanValue<?>, Object> sparseStorage = getSparseValuesMap(false);
-      if (sparseStorage != null) {
-        sparseStorage.remove(key);
-      }
+      putSparse(key, null, false);
     }
   }
 
+  @Nullable
   @SuppressWarnings("unchecked")
+  private Object getSparse(SpanValue<?> key) {
+    Object sparse = get(0);
+    if (sparse instanceof Object[]) {
+      Object[] entries = (Object[]) sparse;
+      int keyIndex = indexOfKey(entries, key);
+      return keyIndex >= 0 ? entries[keyIndex + 1] : null;
+    } else if (sparse != null) {
+      return ((Map<SpanValue<?>, Object>) sparse).get(key);
+    }
+    return null;
+  }
+
+  /**
+   * Updates the sparse value for the given key.
+   *
+   * @param value the new value, null removes the entry
+   * @param onlyIfAbsent if true, an existing non-null value is not replaced
+   * @return the value present before the update
+   */
   @Nullable
-  private Map<SpanValue<?>, Object> getSparseValuesMap(boolean initialize) {
-    Map<SpanValue<?>, Object> map = (Map<SpanValue<?>, Object>) get(0);
-    if (map == null && initialize) {
-      compareAndSet(0, null, new ConcurrentHashMap<>());
-      map = (Map<SpanValue<?>, Object>) get(0);
+  @SuppressWarnings("unchecked")
+  private Object putSparse(SpanValue<?> key, @Nullable Object value, boolean onlyIfAbsent) {
+    while (true) {
+      Object sparse = get(0);
+      if (sparse != null && !(sparse instanceof Object[])) {
+        Map<SpanValue<?>, Object> map = (Map<SpanValue<?>, Object>) sparse;
+        if (value == null) {
+          return map.remove(key);
+        }
+        return onlyIfAbsent ? map.putIfAbsent(key, value) : map.put(key, value);
+      }
+
+      Object[] entries = sparse == null ? NO_ENTRIES : (Object[]) sparse;
+      int keyIndex = indexOfKey(entries, key);
+      Object previous = keyIndex >= 0 ? entries[keyIndex + 1] : null;
+      if ((onlyIfAbsent && previous != null) || previous == value) {
+        return previous;
+      }
+
+      Object updated;
+      if (keyIndex >= 0) {
+        if (value == null) {
+          updated = entries.length == 2 ? null : withoutEntry(entries, keyIndex);
+        } else {
+          Object[] copy = entries.clone();
+          copy[keyIndex + 1] = value;
+          updated = copy;
+        }
+      } else if (entries.length / 2 < MAX_INLINE_SPARSE_ENTRIES) {
+        Object[] copy = Arrays.copyOf(entries, entries.length + 2);
+        copy[entries.length] = key;
+        copy[entries.length + 1] = value;
+        updated = copy;
+      } else {
+        Map<SpanValue<?>, Object> map = new ConcurrentHashMap<>();
+        for (int i = 0; i < entries.length; i += 2) {
+          map.put((SpanValue<?>) entries[i], entries[i + 1]);
+        }
+        map.put(key, value);
+        updated = map;
+      }
+      if (compareAndSet(0, sparse, updated)) {
+        return previous;
+      }
     }
-    return map;
+  }
+
+  private static int indexOfKey(Object[] entries, SpanValue<?> key) {
+    for (int i = 0; i < entries.length; i += 2) {
+      if (entries[i] == key) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static Object[] withoutEntry(Object[] entries, int keyIndex) {
+    Object[] result = new Object[entries.length - 2];
+    System.arraycopy(entries, 0, result, 0, keyIndex);
+    System.arraycopy(entries, keyIndex + 2, result, keyIndex, entries.length - keyIndex - 2);
+    return result;
   }
 }
@@ -37,14 +37,14 @@ public interface SpanValueStorageProvider {
         logger.log(
             Level.FINE,
             "Using map-backed storage for SpanValues because SdkSpan lives in a different classloader and therefore is inaccessible");
-        return MapBacked.getInstance();
+        return StripedSpanValueStorageProvider.getInstance();
       }
     } catch (ClassNotFoundException e) {
       throw new IllegalStateException("Expected SdkSpan class to exist", e);
     }
     return FieldBackedSpanValueStorageProvider.INSTANCE != null
         ? FieldBackedSpanValueStorageProvider.INSTANCE
-        : MapBacked.getInstance();
+        : StripedSpanValueStorageProvider.getInstance();
   }
 
   @Nullable
@@ -0,0 +1,178 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.common;
+
+import io.opentelemetry.api.trace.Span;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+
+/**
+ * Alternative to {@link SpanValueStorageProvider.MapBacked} for the case that the storage can't be
+ * stored as field on spans. Spans are distributed across multiple independent maps with weak keys
+ * to reduce contention. In contrast to maps created via {@link WeakConcurrent#createMap()}, every
+ * shard has its own reference queue and stale entries are removed by the threads initializing new
+ * storages instead of a background thread. This way the cleanup effort scales with the span rate.
+ *
+ * <p>Besides the shard receiving the new storage, every initialization also expunges another shard
+ * picked by bits of the identity hash which are not used for selecting the shard. As a result, all
+ * shards are cleaned up at the same rate, even if some of them do not receive any new storages.
+ */
+public class StripedSpanValueStorageProvider implements SpanValueStorageProvider {
+
+  private static final int MAX_SHARDS = 64;
+
+  private static StripedSpanValueStorageProvider INSTANCE;
+
+  public static synchronized StripedSpanValueStorageProvider getInstance() {
+    // Lazy initialization to avoid unnecessary creation of the backing maps
+    if (INSTANCE == null) {
+      int shardCount = Runtime.getRuntime().availableProcessors() * 4;
+      INSTANCE = new StripedSpanValueStorageProvider(shardCount);
+    }
+    return INSTANCE;
+  }
+
+  private final Shard[] shards;
+  private final int shardMask;
+
+  // Visible for testing
+  StripedSpanValueStorageProvider(int minShardCount) {
+    int shardCount = 1;
+    while (shardCount < minShardCount && shardCount < MAX_SHARDS) {
+      shardCount <<= 1;
+    }
+    shards = new Shard[shardCount];
+    for (int i = 0; i < shardCount; i++) {
+      shards[i] = new Shard();
+    }
+    shardMask = shardCount - 1;
+  }
+
+  @Nullable
+  @Override
+  public SpanValueStorage get(Span span, boolean initialize) {
+    int hash = System.identityHashCode(span);
+    Shard shard = shards[shardIndex(hash)];
+    // The lookup key does not escape ConcurrentHashMap.get(), so this relies on escape analysis to
+    // eliminate the allocation once get() has been inlined. The gc profiler of the getExisting
+    // benchmark shows whether this holds. Caching keys in thread locals would not be cheaper than
+    // an allocation, and would keep spans reachable until the next lookup.
+    SpanValueStorage storage = shard.storages.get(new LookupKey(span, hash));
+    if (storage == null && initialize) {
+      shard.expungeStaleEntries();
+      shards[(hash >>> 24) & shardMask].expungeStaleEntries();
+      SpanValueStorage newStorage = new SpanValueStorage();
+      storage = shard.storages.putIfAbsent(new WeakKey(span, hash, shard.queue), newStorage);
+      if (storage == null) {
+        storage = newStorage;
+      }
+    }
+    return storage;
+  }
+
+  // Visible for testing
+  int shardIndex(int identityHash) {
+    return (identityHash ^ (identityHash >>> 16)) & shardMask;
+  }
+
+  // Visible for testing
+  int approximateSize() {
+    int size = 0;
+    for (Shard shard : shards) {
+      size += shard.storages.size();
+    }
+    return size;
+  }
+
+  private static final class Shard {
+
+    final ConcurrentHashMap<Object, SpanValueStorage> storages = new ConcurrentHashMap<>();
+    final ReferenceQueue<Span> queue = new ReferenceQueue<>();
+
+    void expungeStaleEntries() {
+      // polling an empty queue is cheap, so this adds almost no overhead if there is nothing to do
+      Reference<? extends Span> stale;
+      while ((stale = queue.poll()) != null) {
+        storages.remove(stale);
+      }
+    }
+  }
+
+  /**
+   * The key used for storing entries, removed via identity comparison when enqueued as stale.
+   * Compares equal to any {@link WeakKey} or {@link LookupKey} for the same span.
+   */
+  private static final class WeakKey extends WeakReference<Span> {
+
+    private final int hash;
+
+    WeakKey(Span span, int hash, ReferenceQueue<Span> queue) {
+      super(span, queue);
+      this.hash = hash;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (other == this) {
+        return true;
+      }
+      Span span = get();
+      if (span == null) {
+        return false;
+      }
+      if (other instanceof WeakKey) {
+        return ((WeakKey) other).get() == span;
+      }
+      return other instanceof LookupKey && ((LookupKey) other).span == span;
+    }
+  }
+
+  /** Short-lived key for lookups, avoids allocating a {@link WeakReference}. */
+  private static final class LookupKey {
+
+    private final Span span;
+    private final int hash;
+
+    LookupKey(Span span, int hash) {
+      this.span = span;
+      this.hash = hash;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (other instanceof WeakKey) {
+        return ((WeakKey) other).get() == span;
+      }
+      return other instanceof LookupKey && ((LookupKey) other).span == span;
+    }
+  }
+}
@@ -21,12 +21,19 @@ package co.elastic.otel.common;
 import co.elastic.otel.common.util.ExecutorUtils;
 import com.blogspot.mydailyjava.weaklockfree.WeakConcurrentMap;
 import com.blogspot.mydailyjava.weaklockfree.WeakConcurrentSet;
+import io.opentelemetry.api.metrics.BatchCallback;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.ObservableDoubleMeasurement;
+import io.opentelemetry.api.metrics.ObservableLongMeasurement;
+import java.lang.ref.Reference;
 import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -34,49 +41,225 @@ public class WeakConcurrent {
 
   private static final Logger logger = Logger.getLogger(WeakConcurrent.class.getName());
 
-  private static final Duration CLEANUP_FREQUENCY = Duration.ofMillis(100);
+  public static final String INSTRUMENTATION_SCOPE = "co.elastic.otel.weak-concurrent";
 
-  private static final WeakConcurrentSet<WeakConcurrentMap<?, ?>> registeredMaps =
+  private static final String METRICS_PREFIX = "elastic.weak_map.";
+
+  private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  /**
+   * The cleanup interval is adapted to the number of stale entries found: It is doubled after
+   * passes without any stale entries and halved after passes which found many stale entries, within
+   * the bounds of {@link #MIN_CLEANUP_INTERVAL} and {@link #MAX_CLEANUP_INTERVAL}.
+   */
+  private static final Duration INITIAL_CLEANUP_INTERVAL = Duration.ofMillis(100);
+
+  private static final Duration MIN_CLEANUP_INTERVAL = Duration.ofMillis(10);
+  private static final Duration MAX_CLEANUP_INTERVAL = Duration.ofSeconds(1);
+
+  /** If a single pass removes more entries than this, the cleanup interval is reduced. */
+  private static final int HIGH_STALE_ENTRY_COUNT = 1000;
+
+  private static final WeakConcurrentSet<CleanedMap<?, ?>> registeredMaps =
       new WeakConcurrentSet<>(WeakConcurrentSet.Cleaner.MANUAL);
 
-  private static volatile ScheduledFuture<?> cleaningTask = null;
+  private static volatile ScheduledExecutorService cleaner = null;
+
+  private static volatile long cleanupIntervalMillis = INITIAL_CLEANUP_INTERVAL.toMillis();
+
+  private static final LongAdder expungedEntries = new LongAdder();
+  private static final LongAdder cleanupPasses = new LongAdder();
+  private static final LongAdder cleanupDurationNanos = new LongAdder();
 
   /**
    * Creates a new {@link WeakConcurrentMap} which is periodically cleaned up by a shared background
    * thread.
    */
   public static <K, V> WeakConcurrentMap<K, V> createMap() {
-    WeakConcurrentMap<K, V> result = new WeakConcurrentMap<>(false);
+    CleanedMap<K, V> result = new CleanedMap<>(new ConcurrentHashMap<>());
     registeredMaps.add(result);
     ensureCleaningTaskStarted();
     return result;
   }
 
+  /**
+   * @return the total number of stale entries removed from the maps created via {@link
+   *     #createMap()} by the background thread
+   */
+  static long getExpungedEntryCount() {
+    return expungedEntries.sum();
+  }
+
+  /**
+   * @return the total number of cleanup passes performed by the background thread
+   */
+  static long getCleanupPassCount() {
+    return cleanupPasses.sum();
+  }
+
+  /**
+   * @return the total time spent in cleanup passes by the background thread
+   */
+  static long getTotalCleanupDurationNanos() {
+    return cleanupDurationNanos.sum();
+  }
+
+  /**
+   * @return the current delay between two cleanup passes
+   */
+  static long getCleanupIntervalMillis() {
+    return cleanupIntervalMillis;
+  }
+
+  /**
+   * @return the approximate total number of entries of all maps created via {@link #createMap()}
+   */
+  static long getTotalMapSize() {
+    long size = 0;
+    for (CleanedMap<?, ?> map : registeredMaps) {
+      size += map.approximateSize();
+    }
+    return size;
+  }
+
+  /**
+   * Registers metrics reporting the state of the background cleanup of the maps created via {@link
+   * #createMap()} with the given meter.
+   *
+   * @return the registration, which needs to be closed to unregister the instruments again
+   */
+  public static BatchCallback registerMetrics(Meter meter) {
+    ObservableLongMeasurement mapSize =
+        meter
+            .upDownCounterBuilder(METRICS_PREFIX + "size")
+            .setDescription("Approximate number of entries of all weak maps")
+            .setUnit("{entry}")
+            .buildObserver();
+    ObservableLongMeasurement expunged =
+        meter
+            .counterBuilder(METRICS_PREFIX + "cleanup.expunged")
+            .setDescription("Number of stale entries removed from the weak maps")
+            .setUnit("{entry}")
+            .buildObserver();
+    ObservableLongMeasurement passes =
+        meter
+            .counterBuilder(METRICS_PREFIX + "cleanup.passes")
+            .setDescription("Number of cleanup passes over the weak maps")
+            .setUnit("{pass}")
+            .buildObserver();
+    ObservableDoubleMeasurement duration =
+        meter
+            .counterBuilder(METRICS_PREFIX + "cleanup.duration")
+            .ofDoubles()
+            .setDescription("Total time spent in cleanup passes over the weak maps")
+            .setUnit("s")
+            .buildObserver();
+    ObservableDoubleMeasurement interval =
+        meter
+            .gaugeBuilder(METRICS_PREFIX + "cleanup.interval")
+            .setDescription("Current delay between two cleanup passes over the weak maps")
+            .setUnit("s")
+            .buildObserver();
+    return meter.batchCallback(
+        () -> {
+          mapSize.record(getTotalMapSize());
+          expunged.record(getExpungedEntryCount());
+          passes.record(getCleanupPassCount());
+          duration.record(getTotalCleanupDurationNanos() / NANOS_PER_SECOND);
+          interval.record(getCleanupIntervalMillis() / 1000.0);
+        },
+        mapSize,
+        expunged,
+        passes,
+        duration,
+        interval);
+  }
+
   private static void ensureCleaningTaskStarted() {
-    if (cleaningTask == null) {
+    if (cleaner == null) {
       synchronized (WeakConcurrent.class) {
-        if (cleaningTask == null) {
+        if (cleaner == null) {
           ThreadFactory threadFactory = ExecutorUtils.threadFactory("weakmap-cleaner", true);
           ScheduledExecutorService exec = Executors.newSingleThreadScheduledExecutor(threadFactory);
-          cleaningTask =
-              exec.scheduleAtFixedRate(
-                  WeakConcurrent::expungeStaleEntries,
-                  CLEANUP_FREQUENCY.toMillis(),
-                  CLEANUP_FREQUENCY.toMillis(),
-                  TimeUnit.MILLISECONDS);
+          // assigned before scheduling, as the cleanup pass reschedules itself via this field
+          cleaner = exec;
+          exec.schedule(
+              WeakConcurrent::runCleanupPass, cleanupIntervalMillis, TimeUnit.MILLISECONDS);
         }
       }
     }
   }
 
-  private static void expungeStaleEntries() {
+  private static void runCleanupPass() {
     try {
-      registeredMaps.expungeStaleEntries();
-      for (WeakConcurrentMap<?, ?> map : registeredMaps) {
-        map.expungeStaleEntries();
-      }
+      long start = System.nanoTime();
+      long expunged = expungeStaleEntries();
+      cleanupDurationNanos.add(System.nanoTime() - start);
+      cleanupPasses.increment();
+      expungedEntries.add(expunged);
+      cleanupIntervalMillis = nextCleanupInterval(cleanupIntervalMillis, expunged);
     } catch (Throwable t) {
       logger.log(Level.SEVERE, "Failed to cleanup weak maps", t);
+    } finally {
+      cleaner.schedule(
+          WeakConcurrent::runCleanupPass, cleanupIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  // Visible for testing
+  static long nextCleanupInterval(long currentIntervalMillis, long expungedEntries) {
+    long next;
+    if (expungedEntries == 0) {
+      next = currentIntervalMillis * 2;
+    } else if (expungedEntries > HIGH_STALE_ENTRY_COUNT) {
+      next = currentIntervalMillis / 2;
+    } else {
+      next = currentIntervalMillis;
+    }
+    return Math.max(
+        MIN_CLEANUP_INTERVAL.toMillis(), Math.min(MAX_CLEANUP_INTERVAL.toMillis(), next));
+  }
+
+  /**
+   * @return the number of removed entries
+   */
+  private static long expungeStaleEntries() {
+    registeredMaps.expungeStaleEntries();
+    long expunged = 0;
+    for (CleanedMap<?, ?> map : registeredMaps) {
+      expunged += map.expungeStaleEntriesCounted();
+    }
+    return expunged;
+  }
+
+  /**
+   * Keeps a reference to the backing map of a {@link WeakConcurrentMap}, so that the stale entries
+   * can be removed and counted exactly while draining the reference queue of the map.
+   */
+  private static final class CleanedMap<K, V> extends WeakConcurrentMap<K, V> {
+
+    private final ConcurrentMap<WeakKey<K>, V> target;
+
+    CleanedMap(ConcurrentMap<WeakKey<K>, V> target) {
+      // lookup keys are not cached in thread locals, as this would leak the agent class loader
+      super(false, false, target);
+      this.target = target;
+    }
+
+    /**
+     * @return the number of removed entries
+     */
+    int expungeStaleEntriesCounted() {
+      // polling an empty queue is cheap, so this adds almost no overhead if there is nothing to do
+      int removed = 0;
+      Reference<?> stale;
+      while ((stale = poll()) != null) {
+        // the entry might have been removed explicitly before its key was collected
+        if (target.remove(stale) != null) {
+          removed++;
+        }
+      }
+      return removed;
     }
   }
 }
@@ -0,0 +1,199 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.common.config;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
+
+/**
+ * Memoizes the results of matching inputs against a list of {@link WildcardMatcher}s. This is
+ * useful when the inputs repeat frequently, e.g. for class names or instrumentation scope names.
+ *
+ * <p>The cache is bounded and thread-safe: It is organized as a set-associative table where each
+ * bucket holds up to {@value #WAYS} entries. When a bucket is full, an entry is evicted using the
+ * CLOCK (second chance) policy, so that recently hit entries survive.
+ *
+ * <p>Only {@link String} inputs are cached, because those can be used as keys without copying.
+ * Looking up a cached {@link String} is allocation free. Other {@link CharSequence}s and
+ * partitioned inputs are matched directly against the compiled {@link WildcardMatcherSet}.
+ */
+public final class CachingWildcardMatcher {
+
+  private static final int WAYS = 4;
+
+  private final WildcardMatcherSet matchers;
+  private final AtomicReferenceArray<Entry> table;
+  private final int bucketMask;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * @param matchers the matchers whose results should be cached
+   * @param maxSize the maximum number of cached inputs, rounded up to the next power of two
+   */
+  public CachingWildcardMatcher(List<WildcardMatcher> matchers, int maxSize) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("maxSize must be positive but was " + maxSize);
+    }
+    this.matchers = WildcardMatcherSet.of(matchers);
+    int minBuckets = (maxSize + WAYS - 1) / WAYS;
+    int buckets = minBuckets == 1 ? 1 : Integer.highestOneBit(minBuckets - 1) << 1;
+    table = new AtomicReferenceArray<>(buckets * WAYS);
+    bucketMask = buckets - 1;
+  }
+
+  /**
+   * Returns {@code true}, if any of the matchers match the provided string.
+   *
+   * @see WildcardMatcher#isAnyMatch(List, CharSequence)
+   */
+  public boolean isAnyMatch(@Nullable CharSequence s) {
+    return anyMatch(s) != null;
+  }
+
+  /**
+   * Returns {@code true}, if none of the matchers match the provided string.
+   *
+   * @see WildcardMatcher#isNoneMatch(List, CharSequence)
+   */
+  public boolean isNoneMatch(@Nullable CharSequence s) {
+    return !isAnyMatch(s);
+  }
+
+  /**
+   * Returns the first {@link WildcardMatcher} {@linkplain WildcardMatcher#matches(CharSequence)
+   * matching} the provided string.
+   *
+   * @see WildcardMatcher#anyMatch(List, CharSequence)
+   */
+  @Nullable
+  public WildcardMatcher anyMatch(@Nullable CharSequence s) {
+    if (s == null || matchers.isEmpty()) {
+      return null;
+    }
+    if (!(s instanceof String)) {
+      return matchers.anyMatch(s);
+    }
+    String key = (String) s;
+    int bucketStart = bucketIndex(key) * WAYS;
+    for (int i = 0; i < WAYS; i++) {
+      Entry entry = table.get(bucketStart + i);
+      if (entry != null && entry.key.equals(key)) {
+        if (!entry.referenced) {
+          entry.referenced = true;
+        }
+        hits.increment();
+        return entry.result;
+      }
+    }
+    misses.increment();
+    WildcardMatcher result = matchers.anyMatch(key);
+    insert(bucketStart, new Entry(key, result));
+    return result;
+  }
+
+  /**
+   * Returns the first {@link WildcardMatcher} {@linkplain WildcardMatcher#matches(CharSequence,
+   * CharSequence) matching} the provided partitioned string. This lookup is not cached.
+   *
+   * @see WildcardMatcher#anyMatch(List, CharSequence, CharSequence)
+   */
+  @Nullable
+  public WildcardMatcher anyMatch(CharSequence firstPart, @Nullable CharSequence secondPart) {
+    return matchers.anyMatch(firstPart, secondPart);
+  }
+
+  private void insert(int bucketStart, Entry newEntry) {
+    for (int i = 0; i < WAYS; i++) {
+      if (table.get(bucketStart + i) == null
+          && table.compareAndSet(bucketStart + i, null, newEntry)) {
+        return;
+      }
+    }
+    // the bucket is full: give every referenced entry a second chance by clearing its flag and
+    // evict the first one which has not been referenced since the last sweep
+    for (int sweep = 0; sweep < 2; sweep++) {
+      for (int i = 0; i < WAYS; i++) {
+        Entry entry = table.get(bucketStart + i);
+        if (entry == null || !entry.referenced) {
+          if (table.compareAndSet(bucketStart + i, entry, newEntry)) {
+            if (entry != null) {
+              evictions.increment();
+            }
+            return;
+          }
+        } else {
+          entry.referenced = false;
+        }
+      }
+    }
+    // lost all races against concurrent inserts, it is fine to not cache the result
+  }
+
+  private int bucketIndex(String key) {
+    int hash = key.hashCode();
+    return (hash ^ (hash >>> 16)) & bucketMask;
+  }
+
+  public List<WildcardMatcher> getMatchers() {
+    return matchers.getMatchers();
+  }
+
+  /** Returns the number of lookups which were answered from the cache. */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /** Returns the number of cacheable lookups which had to be evaluated against the matchers. */
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /** Returns the number of cached results which have been evicted to make space for others. */
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  /** Returns the maximum number of inputs which can be cached. */
+  public int getCapacity() {
+    return table.length();
+  }
+
+  @Override
+  public String toString() {
+    return matchers.toString();
+  }
+
+  private static class Entry {
+    private final String key;
+    @Nullable private final WildcardMatcher result;
+
+    /** The CLOCK reference bit, races on this flag only affect the eviction order. */
+    private volatile boolean referenced;
+
+    Entry(String key, @Nullable WildcardMatcher result) {
+      this.key = key;
+      this.result = result;
+    }
+  }
+}
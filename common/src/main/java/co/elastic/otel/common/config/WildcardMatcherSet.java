@@ -0,0 +1,332 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.common.config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+/**
+ * A compiled, immutable set of {@link WildcardMatcher}s, which is equivalent to using {@link
+ * WildcardMatcher#anyMatch(List, CharSequence)} with the same list of matchers.
+ *
+ * <p>Instead of evaluating every matcher against the input, this set only evaluates matchers which
+ * can possibly match: For each matcher the longest literal segment between wildcards is determined
+ * and all of these segments are compiled into a single Aho-Corasick automaton with precomputed
+ * case-folding. The input string is scanned only once through this automaton and only matchers
+ * whose segment occurs in the input are evaluated. Matchers without any literal segment (e.g.
+ * {@code *}) are always evaluated.
+ *
+ * <p>Just like {@link WildcardMatcher}, matching is allocation free.
+ */
+// don't use for-each as it allocates memory by instantiating an iterator
+@SuppressWarnings("ForLoopReplaceableByForEach")
+public final class WildcardMatcherSet {
+
+  private static final WildcardMatcherSet EMPTY =
+      new WildcardMatcherSet(Collections.<WildcardMatcher>emptyList());
+
+  private static final int ROOT = 0;
+
+  private final List<WildcardMatcher> matchers;
+
+  /** The indices of all matchers which must always be evaluated, sorted ascending. */
+  private final int[] unconditionalMatchers;
+
+  /** The lowest index of all matchers which are evaluated only if their segment occurs. */
+  private final int firstConditionalMatcher;
+
+  // the automaton, every array is indexed by the state
+  private final char[][] transitionChars;
+  private final int[][] transitionTargets;
+  private final int[] failureLinks;
+
+  /** The matchers whose segment ends at the given state, sorted ascending. */
+  private final int[][] outputs;
+
+  private WildcardMatcherSet(List<WildcardMatcher> matchers) {
+    this.matchers = Collections.unmodifiableList(new ArrayList<>(matchers));
+    TrieBuilder trie = new TrieBuilder();
+    List<Integer> unconditional = new ArrayList<>();
+    int firstConditional = Integer.MAX_VALUE;
+    for (int i = 0; i < matchers.size(); i++) {
+      String segment = longestLiteralSegment(matchers.get(i));
+      if (segment == null) {
+        unconditional.add(i);
+      } else {
+        trie.add(segment, i);
+        firstConditional = Math.min(firstConditional, i);
+      }
+    }
+    unconditionalMatchers = new int[unconditional.size()];
+    for (int i = 0; i < unconditionalMatchers.length; i++) {
+      unconditionalMatchers[i] = unconditional.get(i);
+    }
+    firstConditionalMatcher = firstConditional;
+
+    int stateCount = trie.children.size();
+    transitionChars = new char[stateCount][];
+    transitionTargets = new int[stateCount][];
+    failureLinks = new int[stateCount];
+    outputs = new int[stateCount][];
+    trie.compile(this);
+  }
+
+  /**
+   * Compiles the provided matchers into a {@link WildcardMatcherSet}.
+   *
+   * @param matchers the matchers, their order determines which matcher is returned by {@link
+   *     #anyMatch(CharSequence)} if multiple matchers match
+   * @return the compiled set
+   */
+  public static WildcardMatcherSet of(List<WildcardMatcher> matchers) {
+    if (matchers.isEmpty()) {
+      return EMPTY;
+    }
+    return new WildcardMatcherSet(matchers);
+  }
+
+  /** Returns an empty set, which does not match anything. */
+  public static WildcardMatcherSet empty() {
+    return EMPTY;
+  }
+
+  /** Returns the matchers this set was compiled from, in their original order. */
+  public List<WildcardMatcher> getMatchers() {
+    return matchers;
+  }
+
+  public boolean isEmpty() {
+    return matchers.isEmpty();
+  }
+
+  /**
+   * Returns {@code true}, if any of the matchers match the provided string.
+   *
+   * @see WildcardMatcher#isAnyMatch(List, CharSequence)
+   */
+  public boolean isAnyMatch(@Nullable CharSequence s) {
+    return anyMatch(s) != null;
+  }
+
+  /**
+   * Returns {@code true}, if none of the matchers match the provided string.
+   *
+   * @see WildcardMatcher#isNoneMatch(List, CharSequence)
+   */
+  public boolean isNoneMatch(@Nullable CharSequence s) {
+    return !isAnyMatch(s);
+  }
+
+  /**
+   * Returns the first {@link WildcardMatcher} {@linkplain WildcardMatcher#matches(CharSequence)
+   * matching} the provided string.
+   *
+   * @see WildcardMatcher#anyMatch(List, CharSequence)
+   */
+  @Nullable
+  public WildcardMatcher anyMatch(@Nullable CharSequence s) {
+    if (s == null || matchers.isEmpty()) {
+      return null;
+    }
+    return anyMatch(s, null);
+  }
+
+  /**
+   * Returns the first {@link WildcardMatcher} {@linkplain WildcardMatcher#matches(CharSequence,
+   * CharSequence) matching} the provided partitioned string.
+   *
+   * @see WildcardMatcher#anyMatch(List, CharSequence, CharSequence)
+   */
+  @Nullable
+  public WildcardMatcher anyMatch(CharSequence firstPart, @Nullable CharSequence secondPart) {
+    int best = Integer.MAX_VALUE;
+    for (int i = 0; i < unconditionalMatchers.length; i++) {
+      int index = unconditionalMatchers[i];
+      if (matchers.get(index).matches(firstPart, secondPart)) {
+        best = index;
+        break;
+      }
+    }
+    if (best > firstConditionalMatcher) {
+      best = scan(firstPart, secondPart == null ? "" : secondPart, best);
+    }
+    return best == Integer.MAX_VALUE ? null : matchers.get(best);
+  }
+
+  /**
+   * Scans the input through the automaton and evaluates all matchers whose segment occurs in the
+   * input and which precede the best match found so far.
+   *
+   * @return the index of the first matching matcher, or {@code best} if none of them match
+   */
+  private int scan(CharSequence firstPart, CharSequence secondPart, int best) {
+    int firstPartLength = firstPart.length();
+    int totalLength = firstPartLength + secondPart.length();
+    // matchers which did not match don't need to be evaluated again when their segment reoccurs,
+    // this is tracked for the first 64 matchers to stay allocation free
+    long rejected = 0;
+    int state = ROOT;
+    for (int i = 0; i < totalLength; i++) {
+      char c =
+          Character.toLowerCase(
+              WildcardMatcher.charAt(i, firstPart, secondPart, firstPartLength));
+      state = nextState(state, c);
+      int[] matched = outputs[state];
+      for (int j = 0; j < matched.length && matched[j] < best; j++) {
+        int index = matched[j];
+        long rejectedBit = index < 64 ? 1L << index : 0;
+        if ((rejected & rejectedBit) == 0) {
+          if (matchers.get(index).matches(firstPart, secondPart)) {
+            best = index;
+          } else {
+            rejected |= rejectedBit;
+          }
+        }
+      }
+      if (best <= firstConditionalMatcher) {
+        return best;
+      }
+    }
+    return best;
+  }
+
+  private int nextState(int state, char c) {
+    while (true) {
+      char[] chars = transitionChars[state];
+      int pos = Arrays.binarySearch(chars, c);
+      if (pos >= 0) {
+        return transitionTargets[state][pos];
+      }
+      if (state == ROOT) {
+        return ROOT;
+      }
+      state = failureLinks[state];
+    }
+  }
+
+  /**
+   * Returns the case-folded longest segment of the matcher which does not contain any wildcard.
+   * Every string matched by the matcher must contain this segment (ignoring case).
+   *
+   * @return the segment, or {@code null} if the matcher does not have a non-empty literal segment
+   *     or is an unknown implementation
+   */
+  @Nullable
+  private static String longestLiteralSegment(WildcardMatcher matcher) {
+    if (!(matcher instanceof WildcardMatcher.SimpleWildcardMatcher)
+        && !(matcher instanceof WildcardMatcher.CompoundWildcardMatcher)) {
+      return null;
+    }
+    String longest = "";
+    for (String segment : matcher.getMatcher().split("\\*")) {
+      if (segment.length() > longest.length()) {
+        longest = segment;
+      }
+    }
+    if (longest.isEmpty()) {
+      return null;
+    }
+    char[] folded = new char[longest.length()];
+    for (int i = 0; i < folded.length; i++) {
+      folded[i] = Character.toLowerCase(longest.charAt(i));
+    }
+    return new String(folded);
+  }
+
+  @Override
+  public String toString() {
+    return matchers.toString();
+  }
+
+  /** Mutable trie used to construct the automaton. */
+  private static class TrieBuilder {
+    private final List<TreeMap<Character, Integer>> children = new ArrayList<>();
+    private final List<List<Integer>> outputs = new ArrayList<>();
+
+    TrieBuilder() {
+      newState();
+    }
+
+    private int newState() {
+      children.add(new TreeMap<>());
+      outputs.add(new ArrayList<>());
+      return children.size() - 1;
+    }
+
+    void add(String segment, int matcherIndex) {
+      int state = ROOT;
+      for (int i = 0; i < segment.length(); i++) {
+        Integer next = children.get(state).get(segment.charAt(i));
+        if (next == null) {
+          next = newState();
+          children.get(state).put(segment.charAt(i), next);
+        }
+        state = next;
+      }
+      outputs.get(state).add(matcherIndex);
+    }
+
+    /** Computes the failure links in breadth-first order and writes the automaton. */
+    void compile(WildcardMatcherSet target) {
+      List<Integer> queue = new ArrayList<>();
+      queue.add(ROOT);
+      for (int head = 0; head < queue.size(); head++) {
+        int state = queue.get(head);
+        TreeMap<Character, Integer> transitions = children.get(state);
+        char[] chars = new char[transitions.size()];
+        int[] targets = new int[transitions.size()];
+        int i = 0;
+        for (Map.Entry<Character, Integer> transition : transitions.entrySet()) {
+          chars[i] = transition.getKey();
+          targets[i] = transition.getValue();
+          i++;
+          int child = transition.getValue();
+          if (state != ROOT) {
+            // the failure link of the parent has already been computed due to the BFS order
+            target.failureLinks[child] =
+                target.nextState(target.failureLinks[state], transition.getKey());
+          }
+          queue.add(child);
+        }
+        target.transitionChars[state] = chars;
+        target.transitionTargets[state] = targets;
+
+        // the outputs of the failure link have already been computed due to the BFS order
+        List<Integer> output = outputs.get(state);
+        if (state != ROOT) {
+          int[] inherited = target.outputs[target.failureLinks[state]];
+          for (int j = 0; j < inherited.length; j++) {
+            output.add(inherited[j]);
+          }
+        }
+        Collections.sort(output);
+        int[] outputArray = new int[output.size()];
+        for (int j = 0; j < outputArray.length; j++) {
+          outputArray[j] = output.get(j);
+        }
+        target.outputs[state] = outputArray;
+      }
+    }
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.common.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.annotation.Nullable;
+
+/**
+ * A bounded, lock-free queue for multiple producers and a single consumer.
+ *
+ * <p>Producers claim a slot by incrementing the producer index via CAS and then publish their
+ * element into the claimed slot. The consumer treats an unpublished slot like an empty queue, so
+ * it never blocks on a producer which has claimed a slot but not yet written it.
+ *
+ * <p>{@link #offer(Object)} may be called from any thread, {@link #poll()} must only be called from
+ * a single consumer thread at a time.
+ */
+public class BoundedMpscQueue<E> {
+
+  private final AtomicReferenceArray<E> slots;
+  private final int mask;
+  private final AtomicLong producerIndex = new AtomicLong();
+  private final AtomicLong consumerIndex = new AtomicLong();
+
+  /**
+   * @param capacity the minimum capacity of the queue, is rounded up to the next power of two
+   */
+  public BoundedMpscQueue(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive but was " + capacity);
+    }
+    int actualCapacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+    slots = new AtomicReferenceArray<>(actualCapacity);
+    mask = actualCapacity - 1;
+  }
+
+  /**
+   * Adds the element to the queue, if there is space left.
+   *
+   * @return false, if the queue is full and the element has not been added
+   */
+  public boolean offer(E element) {
+    if (element == null) {
+      throw new NullPointerException("element must not be null");
+    }
+    while (true) {
+      long index = producerIndex.get();
+      if (index - consumerIndex.get() >= slots.length()) {
+        return false;
+      }
+      if (producerIndex.compareAndSet(index, index + 1)) {
+        slots.lazySet((int) index & mask, element);
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Removes the head of the queue. Must only be invoked by the consumer thread.
+   *
+   * @return the head of the queue or null, if the queue is empty
+   */
+  @Nullable
+  public E poll() {
+    long index = consumerIndex.get();
+    int slot = (int) index & mask;
+    E element = slots.get(slot);
+    if (element == null) {
+      return null;
+    }
+    slots.lazySet(slot, null);
+    consumerIndex.lazySet(index + 1);
+    return element;
+  }
+
+  /** Returns the number of elements which have been added to this queue so far. */
+  public long getProducerIndex() {
+    return producerIndex.get();
+  }
+
+  /** Returns the number of elements which have been removed from this queue so far. */
+  public long getConsumerIndex() {
+    return consumerIndex.get();
+  }
+
+  /** Returns the approximate number of elements currently in this queue. */
+  public int size() {
+    return (int) Math.max(0, producerIndex.get() - consumerIndex.get());
+  }
+
+  public int capacity() {
+    return slots.length();
+  }
+}
@@ -91,6 +91,18 @@ public class HexUtils {
         | hexCharToBinary(hex.charAt(offset + 15));
   }
 
+  /** Reads 8 bytes starting at the given offset as a big-endian long. */
+  public static long bytesToLong(byte[] bytes, int offset) {
+    if (bytes.length - offset < 8) {
+      throw new IllegalStateException("Provided byte array is too short");
+    }
+    long result = 0;
+    for (int i = 0; i < 8; i++) {
+      result = (result << 8) | (bytes[offset + i] & 0xFFL);
+    }
+    return result;
+  }
+
   private static long hexCharToBinary(char ch) {
     if ('0' <= ch && ch <= '9') {
       return ch - '0';
@@ -22,6 +22,7 @@ import static io.opentelemetry.sdk.testing.assertj.OpenTelemetryAssertions.asser
 
 import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.Tracer;
 import io.opentelemetry.sdk.OpenTelemetrySdk;
 import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
@@ -29,6 +30,12 @@ import io.opentelemetry.sdk.trace.ReadableSpan;
 import io.opentelemetry.sdk.trace.SdkTracerProvider;
 import io.opentelemetry.sdk.trace.SpanProcessor;
 import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -152,6 +159,131 @@ public class AbstractSimpleChainingSpanProcessorTest {
     }
   }
 
+  @Test
+  public void testSpanDataMaterializedOnlyOnce() {
+    AttributeKey<String> addMeKey = AttributeKey.stringKey("addMe");
+
+    SpanProcessor renaming =
+        chainedProcessor(
+            exportProcessor,
+            span -> {
+              // the span has been frozen by the previous processor, so this is a copy-on-write
+              MutableSpan mutable = MutableSpan.makeMutable(span);
+              mutable.setName("renamed");
+              return mutable;
+            });
+    SpanProcessor inspecting =
+        chainedProcessor(
+            renaming,
+            span -> {
+              // freezes the mutated span
+              assertThat(span.toSpanData()).hasName("original").hasAttribute(addMeKey, "added");
+              return span;
+            });
+    SpanProcessor adding =
+        chainedProcessor(
+            inspecting,
+            span -> {
+              MutableSpan mutable = MutableSpan.makeMutable(span);
+              mutable.setAttribute(addMeKey, "added");
+              return mutable;
+            });
+
+    AtomicInteger toSpanDataInvocations = new AtomicInteger();
+    SpanProcessor counting =
+        new AbstractChainingSpanProcessor(adding) {
+          @Override
+          protected boolean requiresStart() {
+            return false;
+          }
+
+          @Override
+          public void onEnd(ReadableSpan span) {
+            next.onEnd(countingToSpanData(span, toSpanDataInvocations));
+          }
+
+          @Override
+          public boolean isEndRequired() {
+            return true;
+          }
+        };
+
+    try (OpenTelemetrySdk sdk = sdkWith(counting)) {
+      Tracer tracer = sdk.getTracer("dummy-tracer");
+      tracer.spanBuilder("original").startSpan().end();
+
+      assertThat(spans.getFinishedSpanItems())
+          .hasSize(1)
+          .anySatisfy(
+              span -> assertThat(span).hasName("renamed").hasAttribute(addMeKey, "added"));
+      assertThat(toSpanDataInvocations.get()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  public void testUnmodifiedSpanPassedOnAsIs() {
+    List<ReadableSpan> seen = new ArrayList<>();
+    SpanProcessor second =
+        chainedProcessor(
+            exportProcessor,
+            span -> {
+              seen.add(span);
+              return span;
+            });
+    SpanProcessor first =
+        chainedProcessor(
+            second,
+            span -> {
+              seen.add(span);
+              return span;
+            });
+
+    try (OpenTelemetrySdk sdk = sdkWith(first)) {
+      Span span = sdk.getTracer("dummy-tracer").spanBuilder("span").startSpan();
+      span.end();
+
+      // identity is preserved, e.g. for lookups keyed on the span
+      assertThat(seen).hasSize(2).allSatisfy(received -> assertThat(received).isSameAs(span));
+    }
+  }
+
+  private static SpanProcessor chainedProcessor(
+      SpanProcessor next, Function<ReadableSpan, ReadableSpan> onEnd) {
+    return new AbstractSimpleChainingSpanProcessor(next) {
+      @Override
+      protected ReadableSpan doOnEnd(ReadableSpan readableSpan) {
+        return onEnd.apply(readableSpan);
+      }
+
+      @Override
+      protected boolean requiresStart() {
+        return false;
+      }
+
+      @Override
+      protected boolean requiresEnd() {
+        return true;
+      }
+    };
+  }
+
+  private static ReadableSpan countingToSpanData(ReadableSpan span, AtomicInteger counter) {
+    return (ReadableSpan)
+        Proxy.newProxyInstance(
+            ReadableSpan.class.getClassLoader(),
+            new Class<?>[] {ReadableSpan.class},
+            (proxy, method, args) -> {
+              if (method.getName().equals("toSpanData")) {
+                counter.incrementAndGet();
+              }
+              try {
+                return method.invoke(span, args);
+              } catch (InvocationTargetException e) {
+                throw e.getCause();
+              }
+            });
+  }
+
   private OpenTelemetrySdk sdkWith(SpanProcessor processor) {
     return OpenTelemetrySdk.builder()
         .setTracerProvider(SdkTracerProvider.builder().addSpanProcessor(processor).build())
@@ -0,0 +1,209 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.common;
+
+import static io.opentelemetry.sdk.testing.assertj.OpenTelemetryAssertions.assertThat;
+
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+public class AsyncChainingSpanProcessorTest {
+
+  @Test
+  public void testSpansProcessedOnWorkerThread() {
+    InMemorySpanExporter spans = InMemorySpanExporter.create();
+    CopyOnWriteArrayList<Thread> processingThreads = new CopyOnWriteArrayList<>();
+    SpanProcessor recordingThread =
+        new AbstractSimpleChainingSpanProcessor(SimpleSpanProcessor.create(spans)) {
+          @Override
+          protected ReadableSpan doOnEnd(ReadableSpan readableSpan) {
+            processingThreads.add(Thread.currentThread());
+            return readableSpan;
+          }
+
+          @Override
+          protected boolean requiresStart() {
+            return false;
+          }
+
+          @Override
+          protected boolean requiresEnd() {
+            return true;
+          }
+        };
+    AsyncChainingSpanProcessor async = new AsyncChainingSpanProcessor(recordingThread, 16, 4);
+
+    try (OpenTelemetrySdk sdk = sdkWith(async)) {
+      Tracer tracer = sdk.getTracer("test-tracer");
+      for (int i = 0; i < 10; i++) {
+        tracer.spanBuilder("span" + i).startSpan().end();
+      }
+      assertThat(async.forceFlush().join(10, TimeUnit.SECONDS).isSuccess()).isTrue();
+
+      assertThat(spans.getFinishedSpanItems()).hasSize(10);
+      assertThat(processingThreads)
+          .hasSize(10)
+          .allSatisfy(thread -> assertThat(thread).isNotSameAs(Thread.currentThread()));
+      assertThat(async.getEnqueuedSpanCount()).isEqualTo(10);
+      assertThat(async.getDroppedSpanCount()).isEqualTo(0);
+    }
+  }
+
+  @Test
+  public void testSpansDroppedWhenQueueFull() throws Exception {
+    CountDownLatch blockProcessing = new CountDownLatch(1);
+    CountDownLatch processingStarted = new CountDownLatch(1);
+    AtomicInteger processedSpans = new AtomicInteger();
+    SpanProcessor blocking =
+        new SpanProcessor() {
+          @Override
+          public void onStart(Context parentContext, ReadWriteSpan span) {}
+
+          @Override
+          public boolean isStartRequired() {
+            return false;
+          }
+
+          @Override
+          public void onEnd(ReadableSpan span) {
+            processingStarted.countDown();
+            try {
+              blockProcessing.await();
+            } catch (InterruptedException e) {
+              throw new IllegalStateException(e);
+            }
+            processedSpans.incrementAndGet();
+          }
+
+          @Override
+          public boolean isEndRequired() {
+            return true;
+          }
+        };
+    AsyncChainingSpanProcessor async = new AsyncChainingSpanProcessor(blocking, 4, 4);
+
+    try (OpenTelemetrySdk sdk = sdkWith(async)) {
+      Tracer tracer = sdk.getTracer("test-tracer");
+      tracer.spanBuilder("blocking").startSpan().end();
+      assertThat(processingStarted.await(10, TimeUnit.SECONDS)).isTrue();
+
+      // the worker is blocked, so only the capacity of the queue is accepted
+      for (int i = 0; i < 10; i++) {
+        tracer.spanBuilder("span" + i).startSpan().end();
+      }
+      assertThat(async.getQueuedSpanCount()).isEqualTo(4);
+      assertThat(async.getDroppedSpanCount()).isEqualTo(6);
+
+      blockProcessing.countDown();
+      assertThat(async.forceFlush().join(10, TimeUnit.SECONDS).isSuccess()).isTrue();
+      assertThat(processedSpans.get()).isEqualTo(5);
+    }
+  }
+
+  @Test
+  public void testShutdownProcessesQueuedSpans() {
+    AtomicInteger processedSpans = new AtomicInteger();
+    SpanProcessor counting =
+        new SpanProcessor() {
+          @Override
+          public void onStart(Context parentContext, ReadWriteSpan span) {}
+
+          @Override
+          public boolean isStartRequired() {
+            return false;
+          }
+
+          @Override
+          public void onEnd(ReadableSpan span) {
+            processedSpans.incrementAndGet();
+          }
+
+          @Override
+          public boolean isEndRequired() {
+            return true;
+          }
+        };
+    AsyncChainingSpanProcessor async = new AsyncChainingSpanProcessor(counting, 1024, 16);
+
+    OpenTelemetrySdk sdk = sdkWith(async);
+    Tracer tracer = sdk.getTracer("test-tracer");
+    for (int i = 0; i < 100; i++) {
+      tracer.spanBuilder("span" + i).startSpan().end();
+    }
+    sdk.close();
+
+    assertThat(processedSpans.get()).isEqualTo(100);
+    assertThat(async.getDroppedSpanCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testFlushCompletesAndSpansDroppedAfterWorkerDied() {
+    SpanProcessor failing =
+        new SpanProcessor() {
+          @Override
+          public void onStart(Context parentContext, ReadWriteSpan span) {}
+
+          @Override
+          public boolean isStartRequired() {
+            return false;
+          }
+
+          @Override
+          public void onEnd(ReadableSpan span) {
+            throw new AssertionError("expected");
+          }
+
+          @Override
+          public boolean isEndRequired() {
+            return true;
+          }
+        };
+    AsyncChainingSpanProcessor async = new AsyncChainingSpanProcessor(failing, 16, 4);
+
+    try (OpenTelemetrySdk sdk = sdkWith(async)) {
+      Tracer tracer = sdk.getTracer("test-tracer");
+      tracer.spanBuilder("fatal").startSpan().end();
+      // the worker dies before it can complete the flush, which must not hang nevertheless
+      assertThat(async.forceFlush().join(10, TimeUnit.SECONDS).isDone()).isTrue();
+
+      tracer.spanBuilder("span").startSpan().end();
+      assertThat(async.getDroppedSpanCount()).isEqualTo(1);
+      assertThat(async.getQueuedSpanCount()).isEqualTo(0);
+      assertThat(async.forceFlush().join(10, TimeUnit.SECONDS).isDone()).isTrue();
+    }
+  }
+
+  private static OpenTelemetrySdk sdkWith(SpanProcessor processor) {
+    return OpenTelemetrySdk.builder()
+        .setTracerProvider(SdkTracerProvider.builder().addSpanProcessor(processor).build())
+        .build();
+  }
+}
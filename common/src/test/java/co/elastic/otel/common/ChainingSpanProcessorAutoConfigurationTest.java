@@ -115,8 +115,7 @@ public class ChainingSpanProcessorAutoConfigurationTest {
       assertThat(terminal).isInstanceOf(MutableCompositeSpanProcessor.class);
 
       List<SpanProcessor> exportingProcessors =
-          OtelReflectionUtils.flattenCompositeProcessors(
-              ((MutableCompositeSpanProcessor) terminal).composite);
+          ((MutableCompositeSpanProcessor) terminal).getDelegates();
 
       assertThat(exportingProcessors)
           .hasSize(2)
@@ -0,0 +1,150 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.common;
+
+import static io.opentelemetry.sdk.testing.assertj.OpenTelemetryAssertions.assertThat;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.data.DoublePointData;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.testing.exporter.InMemoryMetricReader;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import java.util.Collection;
+import org.junit.jupiter.api.Test;
+
+public class ChainingSpanProcessorStageMetricsTest {
+
+  @Test
+  public void checkStageTimingsExcludeSubsequentStages() {
+    InMemoryMetricReader metricReader = InMemoryMetricReader.create();
+    SdkMeterProvider meterProvider =
+        SdkMeterProvider.builder().registerMetricReader(metricReader).build();
+    ChainingSpanProcessorStageMetrics metrics = new ChainingSpanProcessorStageMetrics();
+    metrics.register(meterProvider);
+
+    SlowProcessor slow = new SlowProcessor();
+    SpanProcessor chain = metrics.instrument(slow);
+    PassThroughProcessor passThrough = new PassThroughProcessor(chain);
+    chain = metrics.instrument(passThrough);
+
+    try (OpenTelemetrySdk sdk =
+        OpenTelemetrySdk.builder()
+            .setTracerProvider(SdkTracerProvider.builder().addSpanProcessor(chain).build())
+            .build()) {
+      Tracer tracer = sdk.getTracer("test-tracer");
+      for (int i = 0; i < 3; i++) {
+        tracer.spanBuilder("span").startSpan().end();
+      }
+
+      Collection<MetricData> metricData = metricReader.collectAllMetrics();
+      String slowName = SlowProcessor.class.getName();
+      String passThroughName = PassThroughProcessor.class.getName();
+      assertThat(metricData)
+          .anySatisfy(
+              metric ->
+                  assertThat(metric)
+                      .hasName("elastic.span_processor.stage.calls")
+                      .hasLongSumSatisfying(
+                          sum ->
+                              sum.hasPointsSatisfying(
+                                  point -> point.hasValue(3).hasAttributes(attribs(slowName)),
+                                  point ->
+                                      point.hasValue(3).hasAttributes(attribs(passThroughName)))));
+
+      MetricData duration =
+          metricData.stream()
+              .filter(metric -> metric.getName().equals("elastic.span_processor.stage.duration"))
+              .findFirst()
+              .get();
+      double slowMax = maxDuration(duration, slowName);
+      double passThroughMax = maxDuration(duration, passThroughName);
+      assertThat(slowMax).isGreaterThanOrEqualTo(SlowProcessor.SLEEP_MILLIS / 1000.0 * 0.9);
+      assertThat(passThroughMax).isLessThan(SlowProcessor.SLEEP_MILLIS / 1000.0 / 2);
+    }
+  }
+
+  private static Attributes attribs(String stage) {
+    return Attributes.of(
+        ChainingSpanProcessorStageMetrics.STAGE,
+        stage,
+        ChainingSpanProcessorStageMetrics.CALLBACK,
+        "on_end");
+  }
+
+  private static double maxDuration(MetricData duration, String stage) {
+    Attributes maxAttributes =
+        attribs(stage).toBuilder().put(ChainingSpanProcessorStageMetrics.QUANTILE, 1.0).build();
+    return duration.getDoubleGaugeData().getPoints().stream()
+        .filter(point -> point.getAttributes().equals(maxAttributes))
+        .mapToDouble(DoublePointData::getValue)
+        .findFirst()
+        .getAsDouble();
+  }
+
+  private static class PassThroughProcessor extends AbstractSimpleChainingSpanProcessor {
+
+    PassThroughProcessor(SpanProcessor next) {
+      super(next);
+    }
+
+    @Override
+    protected boolean requiresStart() {
+      return false;
+    }
+
+    @Override
+    protected boolean requiresEnd() {
+      return true;
+    }
+  }
+
+  private static class SlowProcessor implements SpanProcessor {
+
+    static final long SLEEP_MILLIS = 50;
+
+    @Override
+    public void onStart(Context parentContext, ReadWriteSpan span) {}
+
+    @Override
+    public boolean isStartRequired() {
+      return false;
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {
+      try {
+        Thread.sleep(SLEEP_MILLIS);
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public boolean isEndRequired() {
+      return true;
+    }
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.common;
+
+import static io.opentelemetry.sdk.testing.assertj.OpenTelemetryAssertions.assertThat;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class LocalRootAttributesSpanProcessorTest {
+
+  private InMemorySpanExporter spans;
+  private OpenTelemetrySdk sdk;
+  private Tracer tracer;
+
+  @BeforeEach
+  public void setup() {
+    spans = InMemorySpanExporter.create();
+    sdk =
+        OpenTelemetrySdk.builder()
+            .setTracerProvider(
+                SdkTracerProvider.builder()
+                    .addSpanProcessor(
+                        new LocalRootAttributesSpanProcessor(SimpleSpanProcessor.create(spans)))
+                    .build())
+            .build();
+    tracer = sdk.getTracer("test-tracer");
+  }
+
+  @AfterEach
+  public void destroy() {
+    sdk.close();
+  }
+
+  @Test
+  public void checkAttributesOnRootAndChildren() {
+    Span root =
+        tracer
+            .spanBuilder("root")
+            .setSpanKind(SpanKind.SERVER)
+            .setAttribute(ElasticAttributes.SPAN_TYPE, "request")
+            .startSpan();
+    Span child = tracer.spanBuilder("child").setParent(Context.root().with(root)).startSpan();
+    Span grandChild =
+        tracer.spanBuilder("grandchild").setParent(Context.root().with(child)).startSpan();
+    grandChild.end();
+    child.end();
+    root.end();
+
+    String rootId = root.getSpanContext().getSpanId();
+    assertThat(spans.getFinishedSpanItems())
+        .hasSize(3)
+        .allSatisfy(
+            span ->
+                assertThat(span)
+                    .hasAttribute(ElasticAttributes.LOCAL_ROOT_ID, rootId)
+                    .hasAttribute(ElasticAttributes.LOCAL_ROOT_NAME, "root")
+                    .hasAttribute(ElasticAttributes.LOCAL_ROOT_TYPE, "request"));
+  }
+
+  @Test
+  public void checkTypeOmittedWithoutSpanType() {
+    Span root = tracer.spanBuilder("root").setSpanKind(SpanKind.SERVER).startSpan();
+    tracer.spanBuilder("child").setParent(Context.root().with(root)).startSpan().end();
+    root.end();
+
+    assertThat(spans.getFinishedSpanItems())
+        .hasSize(2)
+        .allSatisfy(
+            span -> {
+              assertThat(span).hasAttribute(ElasticAttributes.LOCAL_ROOT_NAME, "root");
+              assertThat(span.getAttributes().get(ElasticAttributes.LOCAL_ROOT_TYPE)).isNull();
+            });
+  }
+
+  @Test
+  public void checkFragmentSharedBetweenChildren() {
+    Span root =
+        tracer
+            .spanBuilder("root")
+            .setAttribute(ElasticAttributes.SPAN_TYPE, "custom")
+            .startSpan();
+    Context rootCtx = Context.root().with(root);
+    Span child1 = tracer.spanBuilder("child1").setParent(rootCtx).startSpan();
+    Span child2 = tracer.spanBuilder("child2").setParent(rootCtx).startSpan();
+
+    Attributes fragment1 =
+        LocalRootAttributesSpanProcessor.getLocalRootAttributes((ReadableSpan) child1);
+    Attributes fragment2 =
+        LocalRootAttributesSpanProcessor.getLocalRootAttributes((ReadableSpan) child2);
+    assertThat(fragment1).isSameAs(fragment2);
+    assertThat(fragment1).containsEntry(ElasticAttributes.LOCAL_ROOT_TYPE, "custom");
+
+    child1.end();
+    child2.end();
+    root.end();
+  }
+
+  @Test
+  public void checkSeparateLocalRoots() {
+    Span root1 =
+        tracer
+            .spanBuilder("root1")
+            .setSpanKind(SpanKind.CONSUMER)
+            .setAttribute(ElasticAttributes.SPAN_TYPE, "messaging")
+            .startSpan();
+    Span root2 =
+        tracer.spanBuilder("root2").setAttribute(ElasticAttributes.SPAN_TYPE, "app").startSpan();
+    tracer.spanBuilder("child1").setParent(Context.root().with(root1)).startSpan().end();
+    tracer.spanBuilder("child2").setParent(Context.root().with(root2)).startSpan().end();
+    root1.end();
+    root2.end();
+
+    assertThat(spans.getFinishedSpanItems())
+        .anySatisfy(
+            span ->
+                assertThat(span)
+                    .hasName("child1")
+                    .hasAttribute(
+                        ElasticAttributes.LOCAL_ROOT_ID, root1.getSpanContext().getSpanId())
+                    .hasAttribute(ElasticAttributes.LOCAL_ROOT_NAME, "root1")
+                    .hasAttribute(ElasticAttributes.LOCAL_ROOT_TYPE, "messaging"))
+        .anySatisfy(
+            span ->
+                assertThat(span)
+                    .hasName("child2")
+                    .hasAttribute(
+                        ElasticAttributes.LOCAL_ROOT_ID, root2.getSpanContext().getSpanId())
+                    .hasAttribute(ElasticAttributes.LOCAL_ROOT_NAME, "root2")
+                    .hasAttribute(ElasticAttributes.LOCAL_ROOT_TYPE, "app"));
+  }
+}
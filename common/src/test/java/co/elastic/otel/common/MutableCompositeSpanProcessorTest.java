@@ -0,0 +1,122 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+public class MutableCompositeSpanProcessorTest {
+
+  @Test
+  public void testEmpty() {
+    MutableCompositeSpanProcessor composite = new MutableCompositeSpanProcessor();
+
+    assertThat(composite.isEmpty()).isTrue();
+    assertThat(composite.isStartRequired()).isFalse();
+    assertThat(composite.isEndRequired()).isFalse();
+    assertThat(composite.forceFlush().isSuccess()).isTrue();
+    assertThat(composite.shutdown().isSuccess()).isTrue();
+  }
+
+  @Test
+  public void testDispatchOnlyToRequiringDelegates() {
+    CountingProcessor startOnly = new CountingProcessor(true, false);
+    CountingProcessor endOnly = new CountingProcessor(false, true);
+    CountingProcessor both = new CountingProcessor(true, true);
+
+    MutableCompositeSpanProcessor composite = new MutableCompositeSpanProcessor();
+    composite.addDelegate(startOnly);
+    composite.addDelegate(endOnly);
+    composite.addDelegate(both);
+
+    assertThat(composite.getDelegates()).containsExactly(startOnly, endOnly, both);
+    assertThat(composite.isStartRequired()).isTrue();
+    assertThat(composite.isEndRequired()).isTrue();
+
+    composite.onStart(Context.root(), null);
+    composite.onEnd(null);
+
+    assertThat(startOnly.starts.get()).isEqualTo(1);
+    assertThat(startOnly.ends.get()).isEqualTo(0);
+    assertThat(endOnly.starts.get()).isEqualTo(0);
+    assertThat(endOnly.ends.get()).isEqualTo(1);
+    assertThat(both.starts.get()).isEqualTo(1);
+    assertThat(both.ends.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void testRemoveDelegate() {
+    CountingProcessor first = new CountingProcessor(true, true);
+    CountingProcessor second = new CountingProcessor(false, true);
+
+    MutableCompositeSpanProcessor composite = new MutableCompositeSpanProcessor();
+    composite.addDelegate(first);
+    composite.addDelegate(second);
+
+    assertThat(composite.removeDelegate(first)).isTrue();
+    assertThat(composite.removeDelegate(first)).isFalse();
+    assertThat(composite.getDelegates()).containsExactly(second);
+    assertThat(composite.isStartRequired()).isFalse();
+
+    composite.onStart(Context.root(), null);
+    composite.onEnd(null);
+    assertThat(first.starts.get()).isEqualTo(0);
+    assertThat(first.ends.get()).isEqualTo(0);
+    assertThat(second.ends.get()).isEqualTo(1);
+  }
+
+  private static class CountingProcessor implements SpanProcessor {
+
+    private final boolean startRequired;
+    private final boolean endRequired;
+    final AtomicInteger starts = new AtomicInteger();
+    final AtomicInteger ends = new AtomicInteger();
+
+    CountingProcessor(boolean startRequired, boolean endRequired) {
+      this.startRequired = startRequired;
+      this.endRequired = endRequired;
+    }
+
+    @Override
+    public void onStart(Context parentContext, ReadWriteSpan span) {
+      starts.incrementAndGet();
+    }
+
+    @Override
+    public boolean isStartRequired() {
+      return startRequired;
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {
+      ends.incrementAndGet();
+    }
+
+    @Override
+    public boolean isEndRequired() {
+      return endRequired;
+    }
+  }
+}
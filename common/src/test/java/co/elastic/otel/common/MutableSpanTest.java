@@ -22,6 +22,7 @@ import static io.opentelemetry.sdk.testing.assertj.OpenTelemetryAssertions.asser
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.api.trace.SpanBuilder;
 import io.opentelemetry.context.Context;
 import io.opentelemetry.sdk.OpenTelemetrySdk;
@@ -30,6 +31,8 @@ import io.opentelemetry.sdk.trace.ReadableSpan;
 import io.opentelemetry.sdk.trace.SdkTracerProvider;
 import io.opentelemetry.sdk.trace.SpanProcessor;
 import io.opentelemetry.sdk.trace.data.SpanData;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import org.junit.jupiter.api.Test;
@@ -141,6 +144,93 @@ public class MutableSpanTest {
     assertThat(mutatedSpanData.getAttributes()).isSameAs(original.toSpanData().getAttributes());
   }
 
+  @Test
+  public void testMutatedAttributesView() {
+    AttributeKey<String> keep = AttributeKey.stringKey("keep-me");
+    AttributeKey<Long> update = AttributeKey.longKey("update-me");
+    AttributeKey<String> remove = AttributeKey.stringKey("remove-me");
+    AttributeKey<Boolean> add = AttributeKey.booleanKey("add-me");
+    AttributeKey<String> removeAbsent = AttributeKey.stringKey("not-present");
+
+    ReadableSpan original =
+        createSpan(
+            "foo",
+            builder -> {
+              builder.setAttribute(keep, "keep-original");
+              builder.setAttribute(update, 1L);
+              builder.setAttribute(remove, "remove-original");
+            });
+
+    MutableSpan mutable = MutableSpan.makeMutable(original);
+    mutable.setAttribute(update, 2L);
+    mutable.setAttribute(add, true);
+    mutable.removeAttribute(remove);
+    mutable.removeAttribute(removeAbsent);
+
+    Attributes attributes = mutable.toSpanData().getAttributes();
+    Attributes expected =
+        Attributes.builder().put(keep, "keep-original").put(update, 2L).put(add, true).build();
+
+    assertThat(attributes.size()).isEqualTo(3);
+    assertThat(attributes.isEmpty()).isFalse();
+    assertThat(attributes.get(keep)).isEqualTo("keep-original");
+    assertThat(attributes.get(update)).isEqualTo(2L);
+    assertThat(attributes.get(remove)).isNull();
+    assertThat(attributes.get(add)).isTrue();
+    assertThat(attributes.get(removeAbsent)).isNull();
+
+    Map<AttributeKey<?>, Object> iterated = new HashMap<>();
+    attributes.forEach(iterated::put);
+    assertThat(iterated).isEqualTo(expected.asMap());
+    assertThat(attributes.asMap()).isEqualTo(expected.asMap());
+    assertThat(attributes.toBuilder().build()).isEqualTo(expected);
+    assertThat(attributes.hashCode()).isEqualTo(expected.asMap().hashCode());
+
+    // equality must be symmetric
+    assertThat(attributes.equals(expected)).isEqualTo(expected.equals(attributes));
+    MutableSpan sameMutations = MutableSpan.makeMutable(original);
+    sameMutations.setAttribute(update, 2L);
+    sameMutations.setAttribute(add, true);
+    sameMutations.removeAttribute(remove);
+    assertThat(sameMutations.toSpanData().getAttributes()).isEqualTo(attributes);
+  }
+
+  @Test
+  public void testAttributeTypeChange() {
+    AttributeKey<Long> longKey = AttributeKey.longKey("changed");
+    AttributeKey<String> stringKey = AttributeKey.stringKey("changed");
+    AttributeKey<Boolean> booleanKey = AttributeKey.booleanKey("changed");
+    AttributeKey<String> other = AttributeKey.stringKey("other");
+
+    ReadableSpan original =
+        createSpan(
+            "foo",
+            builder -> {
+              builder.setAttribute(longKey, 1L);
+              builder.setAttribute(other, "bar");
+            });
+
+    MutableSpan mutable = MutableSpan.makeMutable(original);
+    mutable.setAttribute(booleanKey, true);
+    mutable.setAttribute(stringKey, "one");
+    assertThat(mutable.getAttribute(stringKey)).isEqualTo("one");
+    assertThat(mutable.getAttribute(longKey)).isNull();
+
+    Attributes attributes = mutable.toSpanData().getAttributes();
+    Attributes expected = Attributes.builder().put(stringKey, "one").put(other, "bar").build();
+
+    assertThat(attributes.size()).isEqualTo(2);
+    assertThat(attributes.get(stringKey)).isEqualTo("one");
+    assertThat(attributes.get(longKey)).isNull();
+    assertThat(attributes.get(booleanKey)).isNull();
+
+    Map<AttributeKey<?>, Object> iterated = new HashMap<>();
+    attributes.forEach(iterated::put);
+    assertThat(iterated).isEqualTo(expected.asMap());
+    assertThat(attributes.asMap()).isEqualTo(expected.asMap());
+    assertThat(attributes.toBuilder().build()).isEqualTo(expected);
+  }
+
   @Test
   public void noDoubleWrapping() {
     ReadableSpan original = createSpan("foo", builder -> {});
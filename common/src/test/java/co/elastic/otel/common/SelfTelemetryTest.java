@@ -0,0 +1,49 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.opentelemetry.api.metrics.MeterProvider;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class SelfTelemetryTest {
+
+  @AfterEach
+  void reset() {
+    SelfTelemetry.reset();
+  }
+
+  @Test
+  void callbacksInvokedOnceMeterProviderAvailable() {
+    List<MeterProvider> received = new ArrayList<>();
+    SelfTelemetry.whenMeterProviderAvailable(received::add);
+    assertThat(received).isEmpty();
+
+    MeterProvider provider = MeterProvider.noop();
+    SelfTelemetry.setMeterProvider(provider);
+    assertThat(received).containsExactly(provider);
+
+    SelfTelemetry.whenMeterProviderAvailable(received::add);
+    assertThat(received).containsExactly(provider, provider);
+  }
+}
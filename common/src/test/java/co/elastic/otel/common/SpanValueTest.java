@@ -31,6 +31,8 @@ import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
 import io.opentelemetry.sdk.trace.ReadableSpan;
 import io.opentelemetry.sdk.trace.SdkTracerProvider;
 import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.AfterAll;
@@ -178,6 +180,28 @@ public class SpanValueTest {
         .hasMessageContaining("invalid span");
   }
 
+  @Test
+  public void checkManySparseValuesOnSameSpan() {
+    Span span = newSpan();
+    List<SpanValue<String>> values = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      SpanValue<String> value = SpanValue.createSparse();
+      values.add(value);
+      value.set(span, "value" + i);
+    }
+    for (int i = 0; i < 20; i++) {
+      assertThat(values.get(i).get(span)).isEqualTo("value" + i);
+    }
+
+    for (int i = 0; i < 20; i += 2) {
+      values.get(i).clear(span);
+    }
+    for (int i = 0; i < 20; i++) {
+      assertThat(values.get(i).get(span)).isEqualTo(i % 2 == 0 ? null : "value" + i);
+      assertThat(values.get(i).setIfNull(span, "new")).isEqualTo(i % 2 == 0);
+    }
+  }
+
   @Test
   public void verifyMutableSpanUnwrapped() {
     SpanValue<String> val = SpanValue.createSparse();
@@ -0,0 +1,134 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class StripedSpanValueStorageProviderTest {
+
+  private SdkTracerProvider tracerProvider;
+  private Tracer tracer;
+
+  @BeforeEach
+  void init() {
+    tracerProvider = SdkTracerProvider.builder().build();
+    tracer = tracerProvider.get("test-tracer");
+  }
+
+  @AfterEach
+  void close() {
+    tracerProvider.close();
+  }
+
+  @Test
+  void storageIsStablePerSpan() {
+    StripedSpanValueStorageProvider provider = new StripedSpanValueStorageProvider(4);
+    Span span1 = tracer.spanBuilder("span1").startSpan();
+    Span span2 = tracer.spanBuilder("span2").startSpan();
+
+    assertThat(provider.get(span1, false)).isNull();
+    SpanValueStorage storage1 = provider.get(span1, true);
+    SpanValueStorage storage2 = provider.get(span2, true);
+
+    assertThat(storage1).isNotNull().isNotSameAs(storage2);
+    assertThat(provider.get(span1, false)).isSameAs(storage1);
+    assertThat(provider.get(span1, true)).isSameAs(storage1);
+    assertThat(provider.get(span2, false)).isSameAs(storage2);
+    assertThat(provider.approximateSize()).isEqualTo(2);
+  }
+
+  @Test
+  void staleEntriesRemovedOnWrite() {
+    // use a single shard, so that the cleanup is guaranteed to happen for the same shard
+    StripedSpanValueStorageProvider provider = new StripedSpanValueStorageProvider(1);
+    Span span = tracer.spanBuilder("span").startSpan();
+    provider.get(span, true);
+    WeakReference<Span> weakSpan = new WeakReference<>(span);
+    span = null;
+
+    await()
+        .atMost(Duration.ofSeconds(10))
+        .pollInterval(Duration.ofMillis(1))
+        .until(
+            () -> {
+              System.gc();
+              return weakSpan.get() == null;
+            });
+
+    List<Span> liveSpans = new ArrayList<>();
+    await()
+        .atMost(Duration.ofSeconds(10))
+        .untilAsserted(
+            () -> {
+              // the reference might be enqueued with a delay after being cleared,
+              // so we keep on initializing new storages to trigger the cleanup
+              Span live = tracer.spanBuilder("live").startSpan();
+              liveSpans.add(live);
+              provider.get(live, true);
+              assertThat(provider.approximateSize()).isEqualTo(liveSpans.size());
+            });
+  }
+
+  @Test
+  void staleEntriesRemovedFromOtherShards() {
+    StripedSpanValueStorageProvider provider = new StripedSpanValueStorageProvider(4);
+    List<WeakReference<Span>> staleSpans = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      Span span = tracer.spanBuilder("stale").startSpan();
+      provider.get(span, true);
+      staleSpans.add(new WeakReference<>(span));
+    }
+
+    await()
+        .atMost(Duration.ofSeconds(10))
+        .pollInterval(Duration.ofMillis(1))
+        .until(
+            () -> {
+              System.gc();
+              return staleSpans.stream().allMatch(ref -> ref.get() == null);
+            });
+
+    List<Span> liveSpans = new ArrayList<>();
+    await()
+        .atMost(Duration.ofSeconds(10))
+        .pollInterval(Duration.ofMillis(1))
+        .untilAsserted(
+            () -> {
+              // only initialize storages in the first shard, the others are cleaned up nonetheless
+              Span live = tracer.spanBuilder("live").startSpan();
+              if (provider.shardIndex(System.identityHashCode(live)) == 0) {
+                liveSpans.add(live);
+                provider.get(live, true);
+              }
+              assertThat(provider.approximateSize()).isEqualTo(liveSpans.size());
+            });
+  }
+}
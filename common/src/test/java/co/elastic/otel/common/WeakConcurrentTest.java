@@ -0,0 +1,100 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.common;
+
+import static io.opentelemetry.sdk.testing.assertj.OpenTelemetryAssertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import com.blogspot.mydailyjava.weaklockfree.WeakConcurrentMap;
+import io.opentelemetry.api.metrics.BatchCallback;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.testing.exporter.InMemoryMetricReader;
+import java.time.Duration;
+import java.util.Collection;
+import org.junit.jupiter.api.Test;
+
+public class WeakConcurrentTest {
+
+  @Test
+  void cleanupIntervalAdaptsToStaleEntries() {
+    assertThat(WeakConcurrent.nextCleanupInterval(100, 0)).isEqualTo(200);
+    assertThat(WeakConcurrent.nextCleanupInterval(800, 0)).isEqualTo(1000);
+    assertThat(WeakConcurrent.nextCleanupInterval(100, 10)).isEqualTo(100);
+    assertThat(WeakConcurrent.nextCleanupInterval(100, 5000)).isEqualTo(50);
+    assertThat(WeakConcurrent.nextCleanupInterval(15, 5000)).isEqualTo(10);
+  }
+
+  @Test
+  void staleEntriesExpungedInBackground() {
+    WeakConcurrentMap<Object, String> map = WeakConcurrent.createMap();
+    long expungedBefore = WeakConcurrent.getExpungedEntryCount();
+    for (int i = 0; i < 10; i++) {
+      map.put(new Object(), "value");
+    }
+    assertThat(WeakConcurrent.getTotalMapSize()).isGreaterThanOrEqualTo(10);
+
+    await()
+        .atMost(Duration.ofSeconds(10))
+        .pollInterval(Duration.ofMillis(10))
+        .untilAsserted(
+            () -> {
+              System.gc();
+              assertThat(map.approximateSize()).isEqualTo(0);
+              assertThat(WeakConcurrent.getExpungedEntryCount())
+                  .isGreaterThanOrEqualTo(expungedBefore + 10);
+              assertThat(WeakConcurrent.getCleanupPassCount()).isGreaterThan(0);
+            });
+  }
+
+  @Test
+  void metricsReported() {
+    InMemoryMetricReader metricReader = InMemoryMetricReader.create();
+    WeakConcurrentMap<Object, String> map = WeakConcurrent.createMap();
+    Object key = new Object();
+    map.put(key, "value");
+
+    try (SdkMeterProvider meterProvider =
+            SdkMeterProvider.builder().registerMetricReader(metricReader).build();
+        BatchCallback registration =
+            WeakConcurrent.registerMetrics(
+                meterProvider.get(WeakConcurrent.INSTRUMENTATION_SCOPE))) {
+      Collection<MetricData> metrics = metricReader.collectAllMetrics();
+      assertThat(metrics)
+          .extracting(MetricData::getName)
+          .containsExactlyInAnyOrder(
+              "elastic.weak_map.size",
+              "elastic.weak_map.cleanup.expunged",
+              "elastic.weak_map.cleanup.passes",
+              "elastic.weak_map.cleanup.duration",
+              "elastic.weak_map.cleanup.interval");
+      assertThat(metrics)
+          .filteredOn(metric -> metric.getName().equals("elastic.weak_map.size"))
+          .singleElement()
+          .satisfies(
+              metric ->
+                  assertThat(metric)
+                      .hasLongSumSatisfying(
+                          sum ->
+                              sum.hasPointsSatisfying(
+                                  pt -> assertThat(pt.getValue()).isGreaterThanOrEqualTo(1))));
+    }
+    assertThat(map.get(key)).isEqualTo("value");
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.common.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class CachingWildcardMatcherTest {
+
+  private final List<WildcardMatcher> matchers =
+      Arrays.asList(WildcardMatcher.valueOf("com.example.*"), WildcardMatcher.valueOf("*Impl"));
+
+  @Test
+  public void testResultsCached() {
+    CachingWildcardMatcher cache = new CachingWildcardMatcher(matchers, 16);
+
+    assertThat(cache.anyMatch("com.example.Foo")).isSameAs(matchers.get(0));
+    assertThat(cache.anyMatch("org.example.FooImpl")).isSameAs(matchers.get(1));
+    assertThat(cache.anyMatch("org.example.Foo")).isNull();
+    assertThat(cache.getMissCount()).isEqualTo(3);
+    assertThat(cache.getHitCount()).isEqualTo(0);
+
+    assertThat(cache.anyMatch("com.example.Foo")).isSameAs(matchers.get(0));
+    assertThat(cache.anyMatch("org.example.FooImpl")).isSameAs(matchers.get(1));
+    assertThat(cache.isNoneMatch("org.example.Foo")).isTrue();
+    assertThat(cache.getMissCount()).isEqualTo(3);
+    assertThat(cache.getHitCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void testNonStringInputsNotCached() {
+    CachingWildcardMatcher cache = new CachingWildcardMatcher(matchers, 16);
+
+    assertThat(cache.anyMatch(new StringBuilder("com.example.Foo"))).isSameAs(matchers.get(0));
+    assertThat(cache.anyMatch("org.example.", "FooImpl")).isSameAs(matchers.get(1));
+    assertThat(cache.anyMatch(null)).isNull();
+    assertThat(cache.getMissCount()).isEqualTo(0);
+    assertThat(cache.getHitCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testBoundedSize() {
+    CachingWildcardMatcher cache = new CachingWildcardMatcher(matchers, 8);
+    assertThat(cache.getCapacity()).isEqualTo(8);
+
+    for (int i = 0; i < 1000; i++) {
+      String input = "com.example.Class" + i;
+      assertThat(cache.anyMatch(input)).isSameAs(matchers.get(0));
+    }
+    assertThat(cache.getMissCount()).isEqualTo(1000);
+    assertThat(cache.getEvictionCount()).isGreaterThanOrEqualTo(1000 - cache.getCapacity());
+  }
+
+  @Test
+  public void testReferencedEntriesSurviveEviction() {
+    CachingWildcardMatcher cache = new CachingWildcardMatcher(matchers, 4);
+    cache.anyMatch("hot");
+    for (int i = 0; i < 100; i++) {
+      cache.anyMatch("hot");
+      cache.anyMatch("cold" + i);
+    }
+    // the only bucket has four entries, "hot" is referenced before every insertion
+    assertThat(cache.getMissCount()).isEqualTo(101);
+    assertThat(cache.getHitCount()).isEqualTo(100);
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.common.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class WildcardMatcherSetTest {
+
+  @Test
+  public void testFirstMatchReturned() {
+    List<WildcardMatcher> matchers =
+        Arrays.asList(
+            WildcardMatcher.valueOf("/foo/*"),
+            WildcardMatcher.valueOf("*.js"),
+            WildcardMatcher.valueOf("*foo*"),
+            WildcardMatcher.valueOf("(?-i)*Bar*"));
+    WildcardMatcherSet set = WildcardMatcherSet.of(matchers);
+
+    assertThat(set.anyMatch("/FOO/main.js")).isSameAs(matchers.get(0));
+    assertThat(set.anyMatch("/bar/main.JS")).isSameAs(matchers.get(1));
+    assertThat(set.anyMatch("/bar/foo")).isSameAs(matchers.get(2));
+    assertThat(set.anyMatch("/Bar/baz")).isSameAs(matchers.get(3));
+    assertThat(set.anyMatch("/bar/baz")).isNull();
+    assertThat(set.anyMatch("/foo/", "bar")).isSameAs(matchers.get(0));
+    assertThat(set.anyMatch(null)).isNull();
+    assertThat(set.isAnyMatch("main.js")).isTrue();
+    assertThat(set.isNoneMatch("main.css")).isTrue();
+  }
+
+  @Test
+  public void testMatchersWithoutLiterals() {
+    List<WildcardMatcher> matchers =
+        Arrays.asList(WildcardMatcher.valueOf("foo"), WildcardMatcher.matchAll());
+    WildcardMatcherSet set = WildcardMatcherSet.of(matchers);
+
+    assertThat(set.anyMatch("foo")).isSameAs(matchers.get(0));
+    assertThat(set.anyMatch("bar")).isSameAs(matchers.get(1));
+    assertThat(set.anyMatch("")).isSameAs(matchers.get(1));
+  }
+
+  @Test
+  public void testEmpty() {
+    WildcardMatcherSet set = WildcardMatcherSet.of(Collections.emptyList());
+
+    assertThat(set.isEmpty()).isTrue();
+    assertThat(set.anyMatch("foo")).isNull();
+  }
+
+  @Test
+  public void testEquivalentToList() {
+    Random random = new Random(42);
+    String patternChars = "abAB.*/";
+    String inputChars = "abAB./";
+    for (int round = 0; round < 10_000; round++) {
+      List<WildcardMatcher> matchers = new ArrayList<>();
+      int matcherCount = random.nextInt(100);
+      for (int i = 0; i < matcherCount; i++) {
+        StringBuilder pattern = new StringBuilder(random.nextBoolean() ? "" : "(?-i)");
+        int length = random.nextInt(6);
+        for (int j = 0; j < length; j++) {
+          pattern.append(patternChars.charAt(random.nextInt(patternChars.length())));
+        }
+        matchers.add(WildcardMatcher.valueOf(pattern.toString()));
+      }
+      WildcardMatcherSet set = WildcardMatcherSet.of(matchers);
+
+      StringBuilder input = new StringBuilder();
+      int length = random.nextInt(10);
+      for (int j = 0; j < length; j++) {
+        input.append(inputChars.charAt(random.nextInt(inputChars.length())));
+      }
+      String firstPart = input.substring(0, length / 2);
+      String secondPart = input.substring(length / 2);
+
+      assertThat(set.anyMatch(input))
+          .describedAs("%s matching %s", matchers, input)
+          .isSameAs(WildcardMatcher.anyMatch(matchers, input));
+      assertThat(set.anyMatch(firstPart, secondPart))
+          .describedAs("%s matching %s", matchers, input)
+          .isSameAs(WildcardMatcher.anyMatch(matchers, firstPart, secondPart));
+    }
+  }
+}
@@ -49,4 +49,13 @@ public class HexUtilsTest {
 
     assertThat(result.toString()).isEqualTo("01abff");
   }
+
+  @Test
+  public void bytesToLongMatchesHex() {
+    byte[] data =
+        new byte[] {42, 0x01, 0x23, 0x45, 0x67, (byte) 0x89, (byte) 0xAB, (byte) 0xCD, (byte) 0xEF};
+
+    assertThat(HexUtils.bytesToLong(data, 1))
+        .isEqualTo(HexUtils.hexToLong("0123456789abcdef", 0));
+  }
 }
@@ -21,6 +21,7 @@ package co.elastic.otel;
 import co.elastic.otel.dynamicconfig.BlockableLogRecordExporter;
 import co.elastic.otel.dynamicconfig.BlockableMetricExporter;
 import co.elastic.otel.dynamicconfig.BlockableSpanExporter;
+import co.elastic.otel.dynamicconfig.BlockedSendingLogRecordProcessor;
 import co.elastic.otel.dynamicconfig.DynamicConfiguration;
 import co.elastic.otel.dynamicconfig.DynamicInstrumentation;
 import com.google.auto.service.AutoService;
@@ -54,13 +55,19 @@ public class ElasticAutoConfigurationCustomizerProvider
   public void customize(AutoConfigurationCustomizer autoConfiguration) {
     autoConfiguration.addMetricExporterCustomizer(
         (metricexporter, configProperties) ->
-            BlockableMetricExporter.createCustomInstance(metricexporter));
+            BlockableMetricExporter.createCustomInstance(
+                metricexporter, disableSendBufferSize(configProperties)));
     autoConfiguration.addSpanExporterCustomizer(
         (spanExporter, configProperties) ->
-            BlockableSpanExporter.createCustomInstance(spanExporter));
+            BlockableSpanExporter.createCustomInstance(
+                spanExporter, disableSendBufferSize(configProperties)));
     autoConfiguration.addLogRecordExporterCustomizer(
         (logExporter, configProperties) ->
-            BlockableLogRecordExporter.createCustomInstance(logExporter));
+            BlockableLogRecordExporter.createCustomInstance(
+                logExporter, disableSendBufferSize(configProperties)));
+    autoConfiguration.addLogRecordProcessorCustomizer(
+        (logProcessor, configProperties) ->
+            BlockedSendingLogRecordProcessor.wrapIfExporting(logProcessor));
 
     autoConfiguration.addPropertiesCustomizer(
         ElasticAutoConfigurationCustomizerProvider::propertiesCustomizer);
@@ -72,6 +79,10 @@ public class ElasticAutoConfigurationCustomizerProvider
         });
   }
 
+  private static int disableSendBufferSize(ConfigProperties configProperties) {
+    return configProperties.getInt(DynamicConfiguration.DISABLE_SEND_BUFFER_SIZE_OPTION, 0);
+  }
+
   static Map<String, String> propertiesCustomizer(ConfigProperties configProperties) {
     Map<String, String> config = new HashMap<>();
 
@@ -22,6 +22,7 @@ import io.opentelemetry.sdk.common.CompletableResultCode;
 import io.opentelemetry.sdk.logs.data.LogRecordData;
 import io.opentelemetry.sdk.logs.export.LogRecordExporter;
 import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
 import javax.annotation.Nonnull;
 
 public class BlockableLogRecordExporter implements LogRecordExporter {
@@ -29,33 +30,83 @@ public class BlockableLogRecordExporter implements LogRecordExporter {
 
   private volatile boolean sendingLogs = true;
   private final LogRecordExporter delegate;
+  private final LongAdder droppedLogs = new LongAdder();
+  private final ExportBuffer<LogRecordData> buffer;
 
   public static BlockableLogRecordExporter getInstance() {
     return INSTANCE;
   }
 
+  /**
+   * Returns true, if an instance exists and sending is currently disabled. Used to drop log records
+   * before they are queued for export.
+   */
+  static boolean isBlocked() {
+    BlockableLogRecordExporter instance = INSTANCE;
+    return instance != null && !instance.sendingLogs && !instance.buffer.isEnabled();
+  }
+
+  /** Records log records which have been dropped upstream because sending is disabled. */
+  static void recordDropped(long count) {
+    BlockableLogRecordExporter instance = INSTANCE;
+    if (instance != null) {
+      instance.droppedLogs.add(count);
+    }
+  }
+
   public static BlockableLogRecordExporter createCustomInstance(LogRecordExporter exporter) {
-    INSTANCE = new BlockableLogRecordExporter(exporter);
+    return createCustomInstance(exporter, 0);
+  }
+
+  /**
+   * @param bufferSize the maximum number of log records to buffer while sending is disabled, zero
+   *     to drop log records instead
+   */
+  public static BlockableLogRecordExporter createCustomInstance(
+      LogRecordExporter exporter, int bufferSize) {
+    INSTANCE = new BlockableLogRecordExporter(exporter, bufferSize);
     return INSTANCE;
   }
 
-  private BlockableLogRecordExporter(LogRecordExporter delegate) {
+  private BlockableLogRecordExporter(LogRecordExporter delegate, int bufferSize) {
     this.delegate = delegate;
+    this.buffer =
+        new ExportBuffer<>(bufferSize, delegate::export, () -> sendingLogs, droppedLogs::add);
   }
 
   public void setSendingLogs(boolean send) {
     sendingLogs = send;
+    if (send) {
+      buffer.replay();
+    }
   }
 
   public boolean sendingLogs() {
     return sendingLogs;
   }
 
+  /**
+   * Returns the number of log records which have been dropped because sending was disabled,
+   * including buffered log records whose replay failed.
+   */
+  public long getDroppedLogCount() {
+    return droppedLogs.sum();
+  }
+
+  /** Returns the number of log records currently buffered for sending once enabled again. */
+  public int getBufferedLogCount() {
+    return buffer.getBufferedItemCount();
+  }
+
   @Override
   public CompletableResultCode export(@Nonnull Collection<LogRecordData> collection) {
     if (sendingLogs) {
-      return delegate.export(collection);
+      return buffer.export(collection);
+    } else if (buffer.isEnabled()) {
+      buffer.add(collection);
+      return CompletableResultCode.ofSuccess();
     } else {
+      droppedLogs.add(collection.size());
       return CompletableResultCode.ofSuccess();
     }
   }
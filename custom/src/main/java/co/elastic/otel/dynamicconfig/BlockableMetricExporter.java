@@ -25,6 +25,7 @@ import io.opentelemetry.sdk.metrics.data.AggregationTemporality;
 import io.opentelemetry.sdk.metrics.data.MetricData;
 import io.opentelemetry.sdk.metrics.export.MetricExporter;
 import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
 import javax.annotation.Nonnull;
 
 public class BlockableMetricExporter implements MetricExporter {
@@ -32,28 +33,58 @@ public class BlockableMetricExporter implements MetricExporter {
 
   private volatile boolean sendingMetrics = true;
   private final MetricExporter delegate;
+  private final LongAdder droppedMetrics = new LongAdder();
+  private final ExportBuffer<MetricData> buffer;
 
   public static BlockableMetricExporter getInstance() {
     return INSTANCE;
   }
 
   public static BlockableMetricExporter createCustomInstance(MetricExporter exporter) {
-    INSTANCE = new BlockableMetricExporter(exporter);
+    return createCustomInstance(exporter, 0);
+  }
+
+  /**
+   * @param bufferSize the maximum number of metrics to buffer while sending is disabled, zero to
+   *     drop metrics instead
+   */
+  public static BlockableMetricExporter createCustomInstance(
+      MetricExporter exporter, int bufferSize) {
+    INSTANCE = new BlockableMetricExporter(exporter, bufferSize);
     return INSTANCE;
   }
 
-  private BlockableMetricExporter(MetricExporter delegate) {
+  private BlockableMetricExporter(MetricExporter delegate, int bufferSize) {
     this.delegate = delegate;
+    this.buffer =
+        new ExportBuffer<>(bufferSize, delegate::export, () -> sendingMetrics, droppedMetrics::add);
   }
 
   public void setSendingMetrics(boolean send) {
     sendingMetrics = send;
+    if (send) {
+      buffer.replay();
+    }
   }
 
   public boolean sendingMetrics() {
     return sendingMetrics;
   }
 
+  /**
+   * Returns the number of metrics which have been dropped because sending was disabled, including
+   * buffered metrics whose replay failed. Unlike spans and logs, metrics are aggregated by the SDK
+   * and can therefore only be dropped on export.
+   */
+  public long getDroppedMetricCount() {
+    return droppedMetrics.sum();
+  }
+
+  /** Returns the number of metrics currently buffered for sending once sending is enabled again. */
+  public int getBufferedMetricCount() {
+    return buffer.getBufferedItemCount();
+  }
+
   @Override
   public AggregationTemporality getAggregationTemporality(@Nonnull InstrumentType instrumentType) {
     return delegate.getAggregationTemporality(instrumentType);
@@ -67,8 +98,12 @@ public class BlockableMetricExporter implements MetricExporter {
   @Override
   public CompletableResultCode export(@Nonnull Collection<MetricData> metrics) {
     if (sendingMetrics) {
-      return delegate.export(metrics);
+      return buffer.export(metrics);
+    } else if (buffer.isEnabled()) {
+      buffer.add(metrics);
+      return CompletableResultCode.ofSuccess();
     } else {
+      droppedMetrics.add(metrics.size());
       return CompletableResultCode.ofSuccess();
     }
   }
@@ -22,6 +22,7 @@ import io.opentelemetry.sdk.common.CompletableResultCode;
 import io.opentelemetry.sdk.trace.data.SpanData;
 import io.opentelemetry.sdk.trace.export.SpanExporter;
 import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
 import javax.annotation.Nonnull;
 
 public class BlockableSpanExporter implements SpanExporter {
@@ -29,33 +30,82 @@ public class BlockableSpanExporter implements SpanExporter {
 
   private volatile boolean sendingSpans = true;
   private final SpanExporter delegate;
+  private final LongAdder droppedSpans = new LongAdder();
+  private final ExportBuffer<SpanData> buffer;
 
   public static BlockableSpanExporter getInstance() {
     return INSTANCE;
   }
 
+  /**
+   * Returns true, if an instance exists and sending is currently disabled. Used to drop spans
+   * before they are materialized and queued for export.
+   */
+  static boolean isBlocked() {
+    BlockableSpanExporter instance = INSTANCE;
+    return instance != null && !instance.sendingSpans && !instance.buffer.isEnabled();
+  }
+
+  /** Records spans which have been dropped upstream because sending is disabled. */
+  static void recordDropped(long count) {
+    BlockableSpanExporter instance = INSTANCE;
+    if (instance != null) {
+      instance.droppedSpans.add(count);
+    }
+  }
+
   public static BlockableSpanExporter createCustomInstance(SpanExporter exporter) {
-    INSTANCE = new BlockableSpanExporter(exporter);
+    return createCustomInstance(exporter, 0);
+  }
+
+  /**
+   * @param bufferSize the maximum number of spans to buffer while sending is disabled, zero to
+   *     drop spans instead
+   */
+  public static BlockableSpanExporter createCustomInstance(SpanExporter exporter, int bufferSize) {
+    INSTANCE = new BlockableSpanExporter(exporter, bufferSize);
     return INSTANCE;
   }
 
-  private BlockableSpanExporter(SpanExporter delegate) {
+  private BlockableSpanExporter(SpanExporter delegate, int bufferSize) {
     this.delegate = delegate;
+    this.buffer =
+        new ExportBuffer<>(bufferSize, delegate::export, () -> sendingSpans, droppedSpans::add);
   }
 
   public void setSendingSpans(boolean send) {
     sendingSpans = send;
+    if (send) {
+      buffer.replay();
+    }
   }
 
   public boolean sendingSpans() {
     return sendingSpans;
   }
 
+  /**
+   * Returns the number of spans which have been dropped because sending was disabled, including
+   * buffered spans whose replay failed.
+   */
+  public long getDroppedSpanCount() {
+    return droppedSpans.sum();
+  }
+
+  /** Returns the number of spans currently buffered for sending once sending is enabled again. */
+  public int getBufferedSpanCount() {
+    return buffer.getBufferedItemCount();
+  }
+
   @Override
   public CompletableResultCode export(@Nonnull Collection<SpanData> spans) {
     if (sendingSpans) {
-      return delegate.export(spans);
+      return buffer.export(spans);
+    } else if (buffer.isEnabled()) {
+      buffer.add(spans);
+      return CompletableResultCode.ofSuccess();
     } else {
+      droppedSpans.add(spans.size());
       return CompletableResultCode.ofSuccess();
     }
   }
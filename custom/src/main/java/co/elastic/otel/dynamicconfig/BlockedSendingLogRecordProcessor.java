@@ -0,0 +1,75 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.dynamicconfig;
+
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.logs.LogRecordProcessor;
+import io.opentelemetry.sdk.logs.ReadWriteLogRecord;
+import io.opentelemetry.sdk.logs.export.BatchLogRecordProcessor;
+import io.opentelemetry.sdk.logs.export.SimpleLogRecordProcessor;
+
+/**
+ * Wraps an exporting {@link LogRecordProcessor} and drops log records while sending is disabled via
+ * {@link BlockableLogRecordExporter}, so that they are not queued for export. Dropped log records
+ * are accounted in {@link BlockableLogRecordExporter#getDroppedLogCount()}.
+ */
+public class BlockedSendingLogRecordProcessor implements LogRecordProcessor {
+
+  private final LogRecordProcessor delegate;
+
+  private BlockedSendingLogRecordProcessor(LogRecordProcessor delegate) {
+    this.delegate = delegate;
+  }
+
+  /**
+   * Wraps the provided processor if it is exporting log records, otherwise returns it unchanged.
+   */
+  public static LogRecordProcessor wrapIfExporting(LogRecordProcessor processor) {
+    if (processor instanceof BatchLogRecordProcessor
+        || processor instanceof SimpleLogRecordProcessor) {
+      return new BlockedSendingLogRecordProcessor(processor);
+    }
+    return processor;
+  }
+
+  @Override
+  public void onEmit(Context context, ReadWriteLogRecord logRecord) {
+    if (BlockableLogRecordExporter.isBlocked()) {
+      BlockableLogRecordExporter.recordDropped(1);
+    } else {
+      delegate.onEmit(context, logRecord);
+    }
+  }
+
+  @Override
+  public CompletableResultCode shutdown() {
+    return delegate.shutdown();
+  }
+
+  @Override
+  public CompletableResultCode forceFlush() {
+    return delegate.forceFlush();
+  }
+
+  @Override
+  public void close() {
+    delegate.close();
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.dynamicconfig;
+
+import co.elastic.otel.common.AbstractChainingSpanProcessor;
+import co.elastic.otel.common.ChainingSpanProcessorAutoConfiguration;
+import co.elastic.otel.common.ChainingSpanProcessorRegisterer;
+import com.google.auto.service.AutoService;
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+
+/**
+ * Drops ended spans as early as possible while sending is disabled via {@link
+ * BlockableSpanExporter}, so that they are neither materialized via {@link
+ * ReadableSpan#toSpanData()} nor queued by the exporting span processor. Dropped spans are
+ * accounted in {@link BlockableSpanExporter#getDroppedSpanCount()}.
+ */
+public class BlockedSendingSpanProcessor extends AbstractChainingSpanProcessor {
+
+  private final boolean nextRequiresEnd;
+
+  public BlockedSendingSpanProcessor(SpanProcessor next) {
+    super(next);
+    nextRequiresEnd = next.isEndRequired();
+  }
+
+  @Override
+  protected boolean requiresStart() {
+    return false;
+  }
+
+  @Override
+  public void onEnd(ReadableSpan span) {
+    if (BlockableSpanExporter.isBlocked()) {
+      BlockableSpanExporter.recordDropped(1);
+    } else if (nextRequiresEnd) {
+      next.onEnd(span);
+    }
+  }
+
+  @Override
+  public boolean isEndRequired() {
+    return nextRequiresEnd;
+  }
+
+  @AutoService(ChainingSpanProcessorAutoConfiguration.class)
+  public static class AutoConfig implements ChainingSpanProcessorAutoConfiguration {
+
+    @Override
+    public void registerSpanProcessors(
+        ConfigProperties properties, ChainingSpanProcessorRegisterer registerer) {
+      if (!DynamicConfigurationAgentListener.isDynamicConfigurationEnabled()) {
+        // sending can still be disabled via the API, the exporters then drop the spans instead
+        return;
+      }
+      // registered first, so that dropped spans don't reach other stages, e.g. async processing
+      registerer.register(
+          BlockedSendingSpanProcessor::new, ChainingSpanProcessorRegisterer.ORDER_FIRST);
+    }
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.dynamicconfig;
+
+import static co.elastic.otel.dynamicconfig.DynamicConfiguration.INSTRUMENTATION_NAME_PREPEND;
+
+import co.elastic.otel.common.config.CachingWildcardMatcher;
+import co.elastic.otel.common.config.WildcardMatcher;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.ObservableLongMeasurement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * The entries of {@link DynamicConfiguration#INSTRUMENTATION_DISABLE_OPTION} containing wildcards,
+ * e.g. {@code jdbc*}. These are evaluated for every tracer whenever the configuration changes and
+ * whenever a tracer is created, so the results are cached per instrumentation scope name.
+ */
+final class DisabledInstrumentationPatterns {
+
+  private static final DisabledInstrumentationPatterns INSTANCE =
+      new DisabledInstrumentationPatterns();
+
+  private static final String METRICS_PREFIX =
+      "elastic.dynamic_config.disabled_instrumentation_patterns.cache.";
+
+  /** Instrumentation scope names are few, so that this easily fits all of them. */
+  private static final int CACHE_SIZE = 1024;
+
+  private Set<String> patterns = Collections.emptySet();
+  @Nullable private volatile CachingWildcardMatcher matcher;
+
+  // counts of the caches replaced by configuration changes, keeping the counters monotonic
+  private long retiredHits;
+  private long retiredMisses;
+  private long retiredEvictions;
+
+  static DisabledInstrumentationPatterns getInstance() {
+    return INSTANCE;
+  }
+
+  static boolean isPattern(String instrumentation) {
+    return instrumentation.indexOf('*') >= 0;
+  }
+
+  /**
+   * Replaces the current patterns.
+   *
+   * @param newPatterns the instrumentation names containing wildcards
+   * @return whether the patterns have changed, so that the tracers need to be updated
+   */
+  synchronized boolean set(Set<String> newPatterns) {
+    if (patterns.equals(newPatterns)) {
+      return false;
+    }
+    CachingWildcardMatcher current = matcher;
+    if (current != null) {
+      retiredHits += current.getHitCount();
+      retiredMisses += current.getMissCount();
+      retiredEvictions += current.getEvictionCount();
+    }
+    patterns = new HashSet<>(newPatterns);
+    if (patterns.isEmpty()) {
+      matcher = null;
+    } else {
+      List<WildcardMatcher> matchers = new ArrayList<>(patterns.size());
+      for (String pattern : patterns) {
+        matchers.add(WildcardMatcher.valueOf(withScopePrefix(pattern)));
+      }
+      matcher = new CachingWildcardMatcher(matchers, CACHE_SIZE);
+    }
+    return true;
+  }
+
+  /**
+   * Instrumentations are configured without the prefix of their scope name. The prefix is added to
+   * the pattern instead of removing it from every scope name, so that lookups don't allocate.
+   */
+  private static String withScopePrefix(String pattern) {
+    int flagsEnd = pattern.startsWith("(?") ? pattern.indexOf(')') + 1 : 0;
+    return pattern.substring(0, flagsEnd)
+        + INSTRUMENTATION_NAME_PREPEND
+        + pattern.substring(flagsEnd);
+  }
+
+  /** Returns true if the given instrumentation scope is disabled by any of the patterns. */
+  boolean isDisabled(String scopeName) {
+    CachingWildcardMatcher current = matcher;
+    return current != null && current.isAnyMatch(scopeName);
+  }
+
+  /** Registers the counters of the cache with the given meter. */
+  void registerMetrics(Meter meter) {
+    ObservableLongMeasurement hits =
+        meter
+            .counterBuilder(METRICS_PREFIX + "hits")
+            .setDescription("Number of instrumentation scope names looked up from the cache")
+            .setUnit("{lookup}")
+            .buildObserver();
+    ObservableLongMeasurement misses =
+        meter
+            .counterBuilder(METRICS_PREFIX + "misses")
+            .setDescription("Number of instrumentation scope names matched against the patterns")
+            .setUnit("{lookup}")
+            .buildObserver();
+    ObservableLongMeasurement evictions =
+        meter
+            .counterBuilder(METRICS_PREFIX + "evictions")
+            .setDescription("Number of cached results evicted to make space for others")
+            .setUnit("{entry}")
+            .buildObserver();
+    meter.batchCallback(
+        () -> {
+          synchronized (this) {
+            long hitCount = retiredHits;
+            long missCount = retiredMisses;
+            long evictionCount = retiredEvictions;
+            CachingWildcardMatcher current = matcher;
+            if (current != null) {
+              hitCount += current.getHitCount();
+              missCount += current.getMissCount();
+              evictionCount += current.getEvictionCount();
+            }
+            hits.record(hitCount);
+            misses.record(missCount);
+            evictions.record(evictionCount);
+          }
+        },
+        hits,
+        misses,
+        evictions);
+  }
+}
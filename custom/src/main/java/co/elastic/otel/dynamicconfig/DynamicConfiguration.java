@@ -20,10 +20,17 @@ package co.elastic.otel.dynamicconfig;
 
 import static co.elastic.otel.dynamicconfig.DynamicInstrumentation.updateTracerConfigurations;
 
-import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.trace.TracerProvider;
 import io.opentelemetry.sdk.common.InstrumentationScopeInfo;
 import io.opentelemetry.sdk.internal.ScopeConfigurator;
 import io.opentelemetry.sdk.trace.internal.TracerConfig;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
@@ -42,12 +49,22 @@ public class DynamicConfiguration {
   }
 
   public static final String DISABLE_SEND_OPTION = "elastic.otel.java.experimental.disable_send";
+  // maximum number of items (spans, metrics, log records), not bytes, per signal kept while
+  // sending is disabled, 0 drops them instead
+  public static final String DISABLE_SEND_BUFFER_SIZE_OPTION =
+      "elastic.otel.java.experimental.disable_send.buffer.size";
   public static final String INSTRUMENTATION_DISABLE_OPTION =
       "elastic.otel.java.experimental.disable_instrumentations";
 
   private Boolean recoverySendSpansState;
   private Boolean recoverySendLogsState;
   private Boolean recoverySendMetricsState;
+  // the options last applied by each source, see applyOptions
+  private final Map<Object, Map<String, String>> optionsBySource = new IdentityHashMap<>();
+  // instrumentations disabled through INSTRUMENTATION_DISABLE_OPTION by applyOptions
+  private final Set<String> optionDisabledInstrumentations = new HashSet<>();
+  // null until the SDK has been initialized, tracers created before that use the configurator
+  private volatile TracerProvider tracerProvider;
 
   private void initSendingStates() {
     if (recoverySendSpansState == null) {
@@ -108,17 +125,129 @@ public class DynamicConfiguration {
   }
 
   public void reenableTracesFor(String instrumentationName) {
-    UpdatableConfigurator.INSTANCE.put(
-        InstrumentationScopeInfo.create(INSTRUMENTATION_NAME_PREPEND + instrumentationName),
-        TracerConfig.enabled());
-    updateTracerConfigurations(GlobalOpenTelemetry.getTracerProvider());
+    setTracesEnabled(Collections.singletonMap(instrumentationName, Boolean.TRUE));
   }
 
   public void disableTracesFor(String instrumentationName) {
-    UpdatableConfigurator.INSTANCE.put(
-        InstrumentationScopeInfo.create(INSTRUMENTATION_NAME_PREPEND + instrumentationName),
-        TracerConfig.disabled());
-    updateTracerConfigurations(GlobalOpenTelemetry.getTracerProvider());
+    setTracesEnabled(Collections.singletonMap(instrumentationName, Boolean.FALSE));
+  }
+
+  /**
+   * Enables or disables the traces of all the given instrumentations, updating the tracers only
+   * once for the whole set of changes.
+   *
+   * @param instrumentationsEnabled instrumentation names mapped to whether they should be enabled
+   */
+  public void setTracesEnabled(Map<String, Boolean> instrumentationsEnabled) {
+    if (instrumentationsEnabled.isEmpty()) {
+      return;
+    }
+    putTracerConfigs(instrumentationsEnabled);
+    updateTracers();
+  }
+
+  private static void putTracerConfigs(Map<String, Boolean> instrumentationsEnabled) {
+    instrumentationsEnabled.forEach(
+        (instrumentationName, enabled) ->
+            UpdatableConfigurator.INSTANCE.put(
+                InstrumentationScopeInfo.create(INSTRUMENTATION_NAME_PREPEND + instrumentationName),
+                enabled ? TracerConfig.enabled() : TracerConfig.disabled()));
+  }
+
+  private void updateTracers() {
+    TracerProvider provider = tracerProvider;
+    if (provider != null) {
+      updateTracerConfigurations(provider);
+    }
+  }
+
+  /**
+   * Sets the tracer provider whose tracers are updated on configuration changes and applies the
+   * current configuration to its existing tracers. Must be called once the SDK is initialized.
+   */
+  public void setTracerProvider(TracerProvider provider) {
+    tracerProvider = provider;
+    updateTracerConfigurations(provider);
+  }
+
+  /**
+   * Starts the source, applying every set of options it pushes with {@link #applyOptions}.
+   *
+   * @param source the source to start
+   */
+  public void addSource(DynamicConfigurationSource source) {
+    source.start(options -> applyOptions(source, options));
+  }
+
+  /** Stops the source and reverts the options applied by it. */
+  public void removeSource(DynamicConfigurationSource source) {
+    source.stop();
+    synchronized (this) {
+      if (optionsBySource.remove(source) != null) {
+        applyCombinedOptions();
+      }
+    }
+  }
+
+  /**
+   * Applies the current values of {@link #DISABLE_SEND_OPTION} and {@link
+   * #INSTRUMENTATION_DISABLE_OPTION} of the given source, options not present are treated as unset.
+   *
+   * <p>The options of all sources are combined: sending is disabled if any source disables it and
+   * the disabled instrumentations are the union of those of all sources. Only the instrumentations
+   * whose state differs from the previously combined options are updated. Instrumentation names
+   * containing wildcards, e.g. {@code jdbc*}, disable all matching instrumentations.
+   *
+   * @param source identifies the source of the options, replacing the options it applied before
+   * @param options the current options of the source
+   */
+  public synchronized void applyOptions(Object source, Map<String, String> options) {
+    optionsBySource.put(source, new HashMap<>(options));
+    applyCombinedOptions();
+  }
+
+  private void applyCombinedOptions() {
+    boolean disableSend = false;
+    Set<String> disabled = new HashSet<>();
+    Set<String> disabledPatterns = new HashSet<>();
+    for (Map<String, String> options : optionsBySource.values()) {
+      disableSend |= Boolean.parseBoolean(options.get(DISABLE_SEND_OPTION));
+      String disableList = options.get(INSTRUMENTATION_DISABLE_OPTION);
+      if (disableList != null) {
+        for (String instrumentation : disableList.split(",")) {
+          instrumentation = instrumentation.trim();
+          if (DisabledInstrumentationPatterns.isPattern(instrumentation)) {
+            disabledPatterns.add(instrumentation);
+          } else if (!instrumentation.isEmpty()) {
+            disabled.add(instrumentation);
+          }
+        }
+      }
+    }
+    if (disableSend) {
+      stopAllSending();
+    } else {
+      restartAllSending();
+    }
+
+    Map<String, Boolean> changes = new HashMap<>();
+    for (String instrumentation : disabled) {
+      if (optionDisabledInstrumentations.add(instrumentation)) {
+        changes.put(instrumentation, Boolean.FALSE);
+      }
+    }
+    for (Iterator<String> it = optionDisabledInstrumentations.iterator(); it.hasNext(); ) {
+      String instrumentation = it.next();
+      if (!disabled.contains(instrumentation)) {
+        it.remove();
+        changes.put(instrumentation, Boolean.TRUE);
+      }
+    }
+    boolean patternsChanged = DisabledInstrumentationPatterns.getInstance().set(disabledPatterns);
+    putTracerConfigs(changes);
+    if (patternsChanged || !changes.isEmpty()) {
+      updateTracers();
+    }
   }
 
   public void disableAllTraces() {
@@ -142,6 +271,9 @@ public class DynamicConfiguration {
       if (!map.getOrDefault(ALL_INSTRUMENTATION_FULL_NAME, TracerConfig.enabled()).isEnabled()) {
         return TracerConfig.disabled();
       }
+      if (DisabledInstrumentationPatterns.getInstance().isDisabled(scopeInfo.getName())) {
+        return TracerConfig.disabled();
+      }
       return map.getOrDefault(scopeInfo.getName(), TracerConfig.defaultConfig());
     }
 
@@ -0,0 +1,51 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.dynamicconfig;
+
+import com.google.auto.service.AutoService;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.javaagent.extension.AgentListener;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.autoconfigure.AutoConfiguredOpenTelemetrySdk;
+
+/**
+ * Sets up the parts of the dynamic configuration which require the fully initialized SDK. Using
+ * {@link io.opentelemetry.api.GlobalOpenTelemetry} instead is not an option, as accessing it before
+ * the agent has registered the SDK would install a noop instance.
+ */
+@AutoService(AgentListener.class)
+public class DynamicConfigurationAgentListener implements AgentListener {
+
+  /** Returns true if any source which can disable sending at runtime is configured. */
+  static boolean isDynamicConfigurationEnabled() {
+    return DynamicConfigurationPropertyChecker.isEnabled()
+        || FileDynamicConfigurationSource.getConfiguredFile() != null;
+  }
+
+  @Override
+  public void afterAgent(AutoConfiguredOpenTelemetrySdk autoConfiguredOpenTelemetrySdk) {
+    OpenTelemetrySdk sdk = autoConfiguredOpenTelemetrySdk.getOpenTelemetrySdk();
+    Meter meter = sdk.getMeterProvider().get(SendingBlockedMetrics.INSTRUMENTATION_SCOPE);
+    SendingBlockedMetrics.register(meter);
+    DisabledInstrumentationPatterns.getInstance().registerMetrics(meter);
+    DynamicConfiguration.getInstance().setTracerProvider(sdk.getSdkTracerProvider());
+    // started only now, so that the initial options are applied to the initialized SDK
+    FileDynamicConfigurationSource.startIfConfigured();
+  }
+}
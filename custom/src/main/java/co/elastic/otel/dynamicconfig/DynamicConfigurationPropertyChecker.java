@@ -19,9 +19,7 @@
 package co.elastic.otel.dynamicconfig;
 
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -31,17 +29,21 @@ public class DynamicConfigurationPropertyChecker implements Runnable {
   private static final Logger logger =
       Logger.getLogger(DynamicConfigurationPropertyChecker.class.getName());
 
-  public static synchronized void startCheckerThread() {
-    if (checkerThread != null) {
-      return;
-    }
-    if ("true"
+  static boolean isEnabled() {
+    return "true"
             .equals(
                 System.getProperty(
                     DynamicConfiguration.INSTRUMENTATION_DISABLE_OPTION + ".checker"))
         || "true"
             .equals(
-                System.getenv("ELASTIC_OTEL_JAVA_EXPERIMENTAL_DISABLE_INSTRUMENTATIONS_CHECKER"))) {
+                System.getenv("ELASTIC_OTEL_JAVA_EXPERIMENTAL_DISABLE_INSTRUMENTATIONS_CHECKER"));
+  }
+
+  public static synchronized void startCheckerThread() {
+    if (checkerThread != null) {
+      return;
+    }
+    if (isEnabled()) {
       try {
         interval =
             Long.parseLong(
@@ -58,63 +60,21 @@ public class DynamicConfigurationPropertyChecker implements Runnable {
     }
   }
 
-  private final Map<String, Boolean> alreadyDisabled = new HashMap<>();
-
-  private void checkSending() {
-    boolean stopSending;
+  // The options of all sources are combined by DynamicConfiguration, so an instrumentation
+  // disabled by another source stays disabled even if it is not in the property
+  private void checkProperties() {
+    Map<String, String> options = new HashMap<>();
     synchronized (this) {
-      stopSending =
-          Boolean.parseBoolean(System.getProperty(DynamicConfiguration.DISABLE_SEND_OPTION));
-    }
-    if (stopSending) {
-      DynamicConfiguration.getInstance().stopAllSending();
-    } else {
-      DynamicConfiguration.getInstance().restartAllSending();
+      putIfSet(options, DynamicConfiguration.DISABLE_SEND_OPTION);
+      putIfSet(options, DynamicConfiguration.INSTRUMENTATION_DISABLE_OPTION);
     }
+    DynamicConfiguration.getInstance().applyOptions(this, options);
   }
 
-  // Note that if the property and the API are both used to specify enablement
-  // for a particular instrument, and this thread is executing, the property
-  // will take priority if the instrument is in the property - by virtue of running
-  // more frequently; but won't if the instrument is removed from the property!
-  // TODO define priority of enablement by source of disabler
-  private void checkDisablingInstrumentations() {
-    String disableList;
-    synchronized (this) {
-      disableList = System.getProperty(DynamicConfiguration.INSTRUMENTATION_DISABLE_OPTION);
-    }
-    if (disableList != null && !disableList.trim().isEmpty()) {
-      // some values in the disable_instrumentations list
-      Set<String> toBeEnabled = null;
-      if (!alreadyDisabled.isEmpty()) {
-        toBeEnabled = new HashSet<>(alreadyDisabled.keySet());
-      }
-      for (String toBeDisabled : disableList.split(",")) {
-        toBeDisabled = toBeDisabled.trim();
-        if (alreadyDisabled.containsKey(toBeDisabled)) {
-          // already disabled and keep it that way
-          if (toBeEnabled != null) {
-            toBeEnabled.remove(toBeDisabled);
-          }
-        } else {
-          DynamicConfiguration.getInstance().disableTracesFor(toBeDisabled);
-          alreadyDisabled.put(toBeDisabled, Boolean.TRUE);
-        }
-      }
-      if (toBeEnabled != null) {
-        for (String instrumentation : toBeEnabled) {
-          DynamicConfiguration.getInstance().reenableTracesFor(instrumentation);
-          alreadyDisabled.remove(instrumentation);
-        }
-      }
-    } else {
-      // empty list so anything currently disabled should be re-enabled
-      if (!alreadyDisabled.isEmpty()) {
-        for (String instrumentation : new HashSet<>(alreadyDisabled.keySet())) {
-          DynamicConfiguration.getInstance().reenableTracesFor(instrumentation);
-          alreadyDisabled.remove(instrumentation);
-        }
-      }
+  private static void putIfSet(Map<String, String> options, String name) {
+    String value = System.getProperty(name);
+    if (value != null) {
+      options.put(name, value);
     }
   }
 
@@ -122,8 +82,7 @@ public class DynamicConfigurationPropertyChecker implements Runnable {
   public void run() {
     while (true) {
       try {
-        checkSending();
-        checkDisablingInstrumentations();
+        checkProperties();
         Thread.sleep(interval);
       } catch (Exception logged) {
         logger.log(Level.SEVERE, "Checker thread hit an exception: ", logged);
@@ -0,0 +1,41 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.dynamicconfig;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A source of dynamic configuration changes which pushes the current option values (e.g. {@link
+ * DynamicConfiguration#INSTRUMENTATION_DISABLE_OPTION}) as soon as they change, rather than being
+ * polled. Sources are registered with {@link DynamicConfiguration#addSource}.
+ */
+public interface DynamicConfigurationSource {
+
+  /**
+   * Starts the source. The consumer must be called with the complete set of current option
+   * values, once initially and then on every change. Options which are not present are treated as
+   * unset. As sources may be started during the SDK initialization, the consumer should be called
+   * from a separate thread.
+   */
+  void start(Consumer<Map<String, String>> optionsConsumer);
+
+  /** Stops the source, after which the consumer must not be called anymore. */
+  void stop();
+}
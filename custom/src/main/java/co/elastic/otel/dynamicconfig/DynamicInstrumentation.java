@@ -28,10 +28,12 @@ import io.opentelemetry.sdk.internal.ScopeConfigurator;
 import io.opentelemetry.sdk.trace.SdkTracerProvider;
 import io.opentelemetry.sdk.trace.SdkTracerProviderBuilder;
 import io.opentelemetry.sdk.trace.internal.TracerConfig;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -48,38 +50,91 @@ public class DynamicInstrumentation {
 
   private static final Logger logger = Logger.getLogger(DynamicInstrumentation.class.getName());
 
-  private static Object getField(String fieldname, Object target) {
+  private static final String SDK_TRACER_CLASS = "io.opentelemetry.sdk.trace.SdkTracer";
+
+  // the TracerProvider wrapping the SdkTracerProvider depends on the runtime (agent or not), so
+  // the "delegate" getter is resolved once per wrapper class
+  private static final ClassValue<MethodHandle> DELEGATE_GETTERS =
+      new ClassValue<MethodHandle>() {
+        @Override
+        protected MethodHandle computeValue(Class<?> type) {
+          return fieldGetter(type, "delegate");
+        }
+      };
+
+  private static MethodHandle fieldGetter(Class<?> type, String fieldname) {
     try {
-      Field field = target.getClass().getDeclaredField(fieldname);
+      Field field = type.getDeclaredField(fieldname);
       field.setAccessible(true);
-      return field.get(target);
+      return MethodHandles.lookup().unreflectGetter(field);
     } catch (NoSuchFieldException | IllegalAccessException e) {
-      throw new IllegalStateException(
-          "Error getting " + fieldname + " from " + target.getClass(), e);
+      throw new IllegalStateException("Error getting " + fieldname + " from " + type, e);
     }
   }
 
-  private static Object call(String methodname, Object target) {
+  private static MethodHandle fieldSetter(Class<?> type, String fieldname) {
     try {
-      Method method = target.getClass().getDeclaredMethod(methodname);
-      method.setAccessible(true);
-      return method.invoke(target);
-    } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
-      throw new IllegalStateException(
-          "Error calling " + methodname + " on " + target.getClass(), e);
+      Field field = type.getDeclaredField(fieldname);
+      field.setAccessible(true);
+      return MethodHandles.lookup().unreflectSetter(field);
+    } catch (NoSuchFieldException | IllegalAccessException e) {
+      throw new IllegalStateException("Error setting " + fieldname + " on " + type, e);
     }
   }
 
-  private static <T> Object call(
-      String methodname, Object target, T arg1, Class<? super T> arg1Class) {
+  private static MethodHandle method(Class<?> type, String methodname, Class<?>... argClasses) {
     try {
-      Method method = target.getClass().getDeclaredMethod(methodname, arg1Class);
+      Method method = type.getDeclaredMethod(methodname, argClasses);
       method.setAccessible(true);
-      return method.invoke(target, arg1);
-    } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+      return MethodHandles.lookup().unreflect(method);
+    } catch (NoSuchMethodException | IllegalAccessException e) {
       throw new IllegalStateException(
-          "Error calling " + methodname + " on " + target.getClass() + "(" + arg1Class + ")", e);
+          "Error calling " + methodname + " on " + type + Arrays.toString(argClasses), e);
+    }
+  }
+
+  private static Class<?> sdkTracerClass() {
+    try {
+      return Class.forName(SDK_TRACER_CLASS, false, SdkTracerProvider.class.getClassLoader());
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException("Error loading " + SDK_TRACER_CLASS, e);
+    }
+  }
+
+  private static IllegalStateException rethrow(Throwable t) {
+    if (t instanceof ExceptionInInitializerError && t.getCause() instanceof RuntimeException) {
+      throw (RuntimeException) t.getCause();
+    }
+    if (t instanceof RuntimeException) {
+      throw (RuntimeException) t;
     }
+    if (t instanceof Error && !(t instanceof LinkageError)) {
+      throw (Error) t;
+    }
+    // includes failures to resolve the accessors, reported the same way as other SDK mismatches
+    return new IllegalStateException(t);
+  }
+
+  // holder classes so that the handles are resolved only once, on first use
+  private static final class BuilderAccessors {
+    // SdkTracerProviderBuilder.setTracerConfigurator(ScopeConfigurator<<TracerConfig>>)
+    private static final MethodHandle SET_TRACER_CONFIGURATOR =
+        method(SdkTracerProviderBuilder.class, "setTracerConfigurator", ScopeConfigurator.class);
+  }
+
+  private static final class TracerAccessors {
+    // SdkTracerProvider.tracerSdkComponentRegistry
+    private static final MethodHandle GET_COMPONENT_REGISTRY =
+        fieldGetter(SdkTracerProvider.class, "tracerSdkComponentRegistry");
+    // SdkTracerProvider.getTracerConfig(InstrumentationScopeInfo instrumentationScopeInfo)
+    private static final MethodHandle GET_TRACER_CONFIG =
+        method(SdkTracerProvider.class, "getTracerConfig", InstrumentationScopeInfo.class);
+    // SdkTracer.getInstrumentationScopeInfo()
+    private static final MethodHandle GET_INSTRUMENTATION_SCOPE_INFO =
+        method(sdkTracerClass(), "getInstrumentationScopeInfo");
+    // SdkTracer.tracerEnabled
+    private static final MethodHandle SET_TRACER_ENABLED =
+        fieldSetter(sdkTracerClass(), "tracerEnabled");
   }
 
   // SdkTracerProviderBuilder.setTracerConfigurator(ScopeConfigurator<<TracerConfig>> configurator)
@@ -87,23 +142,29 @@ public class DynamicInstrumentation {
   public static SdkTracerProviderBuilder setTracerConfigurator(
       SdkTracerProviderBuilder sdkTracerProviderBuilder,
       ScopeConfigurator<TracerConfig> configurator) {
-    call("setTracerConfigurator", sdkTracerProviderBuilder, configurator, ScopeConfigurator.class);
+    try {
+      BuilderAccessors.SET_TRACER_CONFIGURATOR.invoke(sdkTracerProviderBuilder, configurator);
+    } catch (Throwable t) {
+      throw rethrow(t);
+    }
     return sdkTracerProviderBuilder;
   }
 
   // SdkTracerProvider.getTracerConfig(InstrumentationScopeInfo instrumentationScopeInfo)
   // here because it's not currently public
   private static TracerConfig getTracerConfig(
-      SdkTracerProvider provider, InstrumentationScopeInfo instrumentationScopeInfo) {
+      SdkTracerProvider provider, InstrumentationScopeInfo instrumentationScopeInfo)
+      throws Throwable {
     return (TracerConfig)
-        call("getTracerConfig", provider, instrumentationScopeInfo, InstrumentationScopeInfo.class);
+        TracerAccessors.GET_TRACER_CONFIG.invoke(provider, instrumentationScopeInfo);
   }
 
   // SdkTracer.getInstrumentationScopeInfo()
   // here because it's not currently public
   private static InstrumentationScopeInfo getInstrumentationScopeInfo(Tracer sdkTracer)
-      throws NoSuchFieldException, IllegalAccessException {
-    return (InstrumentationScopeInfo) call("getInstrumentationScopeInfo", sdkTracer);
+      throws Throwable {
+    return (InstrumentationScopeInfo)
+        TracerAccessors.GET_INSTRUMENTATION_SCOPE_INFO.invoke(sdkTracer);
   }
 
   // Not an existing method
@@ -118,47 +179,44 @@ public class DynamicInstrumentation {
   //                    getTracerConfig(sdkTracer.getInstrumentationScopeInfo())));
   // where SdkTracer.updateTracerConfig(TracerConfig tracerConfig) is equivalent to
   //  this.tracerEnabled = tracerConfig.isEnabled();
+  // Callers applying several configuration changes should apply all of them to the configurator
+  // first and call this once, as this is a single pass over all tracers
+  @SuppressWarnings("unchecked")
   static void updateTracerConfigurations(TracerProvider provider) {
-    if (!(provider instanceof SdkTracerProvider)) {
-      provider = (TracerProvider) getField("delegate", provider);
-    }
-    ComponentRegistry<Tracer> tracerSdkComponentRegistry =
-        (ComponentRegistry<Tracer>) getField("tracerSdkComponentRegistry", provider);
-    SdkTracerProvider finalProvider = (SdkTracerProvider) provider;
     final List<String> activatedTracers;
     if (logger.isLoggable(Level.CONFIG)) {
       activatedTracers = new ArrayList<>();
     } else {
       activatedTracers = null;
     }
-    tracerSdkComponentRegistry
-        .getComponents()
-        .forEach(
-            sdkTracer -> {
-              try {
-                InstrumentationScopeInfo instrumentationScopeInfo =
-                    getInstrumentationScopeInfo(sdkTracer);
-                TracerConfig tConfig = getTracerConfig(finalProvider, instrumentationScopeInfo);
-                Field tracerEnabledField = sdkTracer.getClass().getDeclaredField("tracerEnabled");
-                tracerEnabledField.setAccessible(true);
-                // Update is synced but the reader is NOT necessarily so this is eventual
-                // consistency, takes effect when the application passes a sync boundary
-                synchronized (sdkTracer) {
-                  tracerEnabledField.set(sdkTracer, tConfig.isEnabled());
-                }
-                if (logger.isLoggable(Level.CONFIG)) {
-                  String name = instrumentationScopeInfo.getName();
-                  if (name.startsWith(INSTRUMENTATION_NAME_PREPEND)) {
-                    name = name.substring(INSTRUMENTATION_NAME_PREPEND.length());
-                  }
-                  activatedTracers.add(name);
-                  activatedTracers.add(tConfig.isEnabled() ? "enabled" : "disabled");
-                }
-              } catch (NoSuchFieldException | IllegalAccessException e) {
-                throw new RuntimeException(e);
-              }
-            });
-    if (logger.isLoggable(Level.CONFIG)) {
+    try {
+      if (!(provider instanceof SdkTracerProvider)) {
+        provider = (TracerProvider) DELEGATE_GETTERS.get(provider.getClass()).invoke(provider);
+      }
+      SdkTracerProvider sdkProvider = (SdkTracerProvider) provider;
+      ComponentRegistry<Tracer> tracerSdkComponentRegistry =
+          (ComponentRegistry<Tracer>) TracerAccessors.GET_COMPONENT_REGISTRY.invoke(sdkProvider);
+      for (Tracer sdkTracer : tracerSdkComponentRegistry.getComponents()) {
+        InstrumentationScopeInfo instrumentationScopeInfo = getInstrumentationScopeInfo(sdkTracer);
+        TracerConfig tConfig = getTracerConfig(sdkProvider, instrumentationScopeInfo);
+        // Update is synced but the reader is NOT necessarily so this is eventual
+        // consistency, takes effect when the application passes a sync boundary
+        synchronized (sdkTracer) {
+          TracerAccessors.SET_TRACER_ENABLED.invoke(sdkTracer, tConfig.isEnabled());
+        }
+        if (activatedTracers != null) {
+          String name = instrumentationScopeInfo.getName();
+          if (name.startsWith(INSTRUMENTATION_NAME_PREPEND)) {
+            name = name.substring(INSTRUMENTATION_NAME_PREPEND.length());
+          }
+          activatedTracers.add(name);
+          activatedTracers.add(tConfig.isEnabled() ? "enabled" : "disabled");
+        }
+      }
+    } catch (Throwable t) {
+      throw rethrow(t);
+    }
+    if (activatedTracers != null) {
       logger.log(Level.CONFIG, "Activated Tracers: " + activatedTracers);
     }
   }
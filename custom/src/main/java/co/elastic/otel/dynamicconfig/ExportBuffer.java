@@ -0,0 +1,205 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.dynamicconfig;
+
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import javax.annotation.Nullable;
+
+/**
+ * Buffers batches of telemetry which could not be sent because sending is disabled, so that they
+ * can be replayed in their original order once sending is enabled again.
+ *
+ * <p>The buffer is bounded by the total number of buffered items (e.g. spans). When adding a batch
+ * would exceed this limit, the oldest batches are evicted first. A limit of zero disables
+ * buffering.
+ *
+ * <p>The replay never blocks the calling thread: every batch is exported once the export of the
+ * previous batch has completed. Batches exported while a replay is in progress are queued behind
+ * it, so that the original order is preserved.
+ */
+final class ExportBuffer<T> {
+
+  private final int maxItems;
+  private final Function<Collection<T>, CompletableResultCode> exporter;
+  private final BooleanSupplier sendingEnabled;
+  private final LongConsumer droppedItems;
+
+  private final ArrayDeque<Batch<T>> batches = new ArrayDeque<>();
+
+  // guarded by this
+  private boolean replaying;
+
+  // volatile to allow cheap checks without acquiring the lock
+  private volatile int bufferedItems;
+  private volatile boolean idle = true;
+
+  /**
+   * @param maxItems the maximum number of buffered items, zero to disable buffering
+   * @param exporter exports a batch to the actual destination
+   * @param sendingEnabled whether sending is currently enabled, the replay pauses otherwise
+   * @param droppedItems receives the number of items which have been evicted or failed to export
+   */
+  ExportBuffer(
+      int maxItems,
+      Function<Collection<T>, CompletableResultCode> exporter,
+      BooleanSupplier sendingEnabled,
+      LongConsumer droppedItems) {
+    this.maxItems = Math.max(0, maxItems);
+    this.exporter = exporter;
+    this.sendingEnabled = sendingEnabled;
+    this.droppedItems = droppedItems;
+  }
+
+  boolean isEnabled() {
+    return maxItems > 0;
+  }
+
+  int getBufferedItemCount() {
+    return bufferedItems;
+  }
+
+  /** Buffers a batch while sending is disabled, evicting the oldest buffered items if required. */
+  void add(Collection<T> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    synchronized (this) {
+      enqueue(batch, null);
+    }
+  }
+
+  /**
+   * Exports the batch directly if nothing is buffered, otherwise queues it behind the buffered
+   * batches and starts replaying them.
+   *
+   * @return the result of the export, which completes once the batch has actually been exported
+   */
+  CompletableResultCode export(Collection<T> batch) {
+    if (idle) {
+      return exporter.apply(batch);
+    }
+    CompletableResultCode result = new CompletableResultCode();
+    synchronized (this) {
+      enqueue(batch, result);
+    }
+    replay();
+    return result;
+  }
+
+  /** Starts replaying the buffered batches, unless a replay is already in progress. */
+  void replay() {
+    synchronized (this) {
+      if (replaying || batches.isEmpty()) {
+        return;
+      }
+      replaying = true;
+    }
+    exportNext();
+  }
+
+  private void enqueue(Collection<T> items, @Nullable CompletableResultCode result) {
+    Collection<T> toAdd = items;
+    if (toAdd.size() > maxItems) {
+      // keep only the newest items of the batch
+      List<T> list = new ArrayList<>(items);
+      droppedItems.accept(list.size() - maxItems);
+      toAdd = new ArrayList<>(list.subList(list.size() - maxItems, list.size()));
+    }
+    int count = bufferedItems;
+    while (count + toAdd.size() > maxItems) {
+      Batch<T> evicted = batches.removeFirst();
+      count -= evicted.items.size();
+      droppedItems.accept(evicted.items.size());
+      if (evicted.result != null) {
+        evicted.result.fail();
+      }
+    }
+    batches.addLast(new Batch<>(toAdd, result));
+    bufferedItems = count + toAdd.size();
+    idle = false;
+  }
+
+  /**
+   * Exports the buffered batches one after the other. Exports which complete synchronously are
+   * handled in a loop, so that the stack does not grow with the number of batches.
+   */
+  private void exportNext() {
+    while (true) {
+      Batch<T> batch;
+      synchronized (this) {
+        batch = sendingEnabled.getAsBoolean() ? batches.pollFirst() : null;
+        if (batch == null) {
+          replaying = false;
+          idle = batches.isEmpty();
+          return;
+        }
+        bufferedItems -= batch.items.size();
+      }
+      CompletableResultCode result;
+      try {
+        result = exporter.apply(batch.items);
+      } catch (RuntimeException e) {
+        result = CompletableResultCode.ofFailure();
+      }
+      if (!result.isDone()) {
+        Batch<T> pendingBatch = batch;
+        CompletableResultCode pendingResult = result;
+        pendingResult.whenComplete(
+            () -> {
+              onExported(pendingBatch, pendingResult);
+              exportNext();
+            });
+        return;
+      }
+      onExported(batch, result);
+    }
+  }
+
+  private void onExported(Batch<T> batch, CompletableResultCode exportResult) {
+    if (batch.result != null) {
+      // the batch was exported by the SDK while the replay was in progress, it handles failures
+      if (exportResult.isSuccess()) {
+        batch.result.succeed();
+      } else {
+        batch.result.fail();
+      }
+    } else if (!exportResult.isSuccess()) {
+      droppedItems.accept(batch.items.size());
+    }
+  }
+
+  private static final class Batch<T> {
+    final Collection<T> items;
+
+    /** The result returned to the SDK, null if the batch was buffered while sending is disabled. */
+    @Nullable final CompletableResultCode result;
+
+    Batch(Collection<T> items, @Nullable CompletableResultCode result) {
+      this.items = items;
+      this.result = result;
+    }
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.dynamicconfig;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads the dynamic configuration options from a properties file and pushes them again whenever
+ * the file changes. The directory of the file is watched with a {@link WatchService}, so changes
+ * are applied immediately without polling. A missing file is equivalent to an empty one.
+ *
+ * <p>Any event in the directory causes the file to be reloaded, as the file might be a symlink
+ * which is updated by replacing another entry of the directory. For example, Kubernetes updates
+ * mounted ConfigMaps by swapping the {@code ..data} symlink the files point to. The options are
+ * only pushed if they differ from the ones pushed before.
+ */
+public class FileDynamicConfigurationSource implements DynamicConfigurationSource {
+
+  public static final String FILE_OPTION =
+      "elastic.otel.java.experimental.dynamic_configuration.file";
+
+  private static final Logger logger =
+      Logger.getLogger(FileDynamicConfigurationSource.class.getName());
+  private static boolean startedFromConfiguration;
+
+  private final Path file;
+  private WatchService watchService;
+  private Thread watcherThread;
+  private volatile boolean stopped;
+  // only accessed by the watcher thread
+  private Map<String, String> appliedOptions;
+
+  public FileDynamicConfigurationSource(Path file) {
+    this.file = file.toAbsolutePath();
+  }
+
+  static String getConfiguredFile() {
+    String path = System.getProperty(FILE_OPTION);
+    if (path == null) {
+      path = System.getenv("ELASTIC_OTEL_JAVA_EXPERIMENTAL_DYNAMIC_CONFIGURATION_FILE");
+    }
+    return path == null || path.trim().isEmpty() ? null : path.trim();
+  }
+
+  static synchronized void startIfConfigured() {
+    if (startedFromConfiguration) {
+      return;
+    }
+    String path = getConfiguredFile();
+    if (path != null) {
+      startedFromConfiguration = true;
+      try {
+        DynamicConfiguration.getInstance()
+            .addSource(new FileDynamicConfigurationSource(Paths.get(path)));
+      } catch (RuntimeException e) {
+        logger.log(Level.SEVERE, "Unable to start the dynamic configuration file watcher", e);
+      }
+    }
+  }
+
+  @Override
+  public synchronized void start(Consumer<Map<String, String>> optionsConsumer) {
+    if (watcherThread != null) {
+      throw new IllegalStateException("Already started");
+    }
+    try {
+      watchService = file.getFileSystem().newWatchService();
+      // registered before the initial load so that no change in between is missed
+      file.getParent().register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to watch " + file, e);
+    }
+    WatchService service = watchService;
+    watcherThread =
+        new Thread(
+            () -> watch(service, optionsConsumer), "Elastic dynamic configuration file watcher");
+    watcherThread.setDaemon(true);
+    watcherThread.start();
+  }
+
+  @Override
+  public synchronized void stop() {
+    stopped = true;
+    if (watchService != null) {
+      try {
+        // unblocks the watcher thread
+        watchService.close();
+      } catch (IOException e) {
+        logger.log(Level.FINE, "Error closing the watch service of " + file, e);
+      }
+    }
+  }
+
+  private void watch(WatchService service, Consumer<Map<String, String>> optionsConsumer) {
+    // the initial options are also applied from this thread, as the source may be started while
+    // the SDK is still being initialized
+    apply(optionsConsumer);
+    while (!stopped) {
+      WatchKey key;
+      try {
+        key = service.take();
+      } catch (InterruptedException | ClosedWatchServiceException e) {
+        return;
+      }
+      // any event in the directory might affect the file, see the class documentation
+      key.pollEvents();
+      if (!key.reset()) {
+        logger.log(Level.WARNING, "Stopped watching " + file + " as its directory is gone");
+        return;
+      }
+      apply(optionsConsumer);
+    }
+  }
+
+  private void apply(Consumer<Map<String, String>> optionsConsumer) {
+    Map<String, String> options = load();
+    if (options != null && !options.equals(appliedOptions) && !stopped) {
+      appliedOptions = options;
+      try {
+        optionsConsumer.accept(options);
+      } catch (RuntimeException e) {
+        logger.log(Level.SEVERE, "Error applying the dynamic configuration from " + file, e);
+      }
+    }
+  }
+
+  // returns null if the file could not be read, keeping the current configuration
+  private Map<String, String> load() {
+    if (!Files.exists(file)) {
+      return Collections.emptyMap();
+    }
+    Properties properties = new Properties();
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      properties.load(reader);
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Unable to read the dynamic configuration from " + file, e);
+      return null;
+    }
+    Map<String, String> options = new HashMap<>();
+    for (String name : properties.stringPropertyNames()) {
+      options.put(name, properties.getProperty(name));
+    }
+    return options;
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.dynamicconfig;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.ObservableLongMeasurement;
+
+/**
+ * Self-telemetry for the number of spans, metrics and log records dropped while sending was
+ * disabled. The values are only read when the metrics are collected and only reported once items
+ * of the given signal have actually been dropped.
+ */
+final class SendingBlockedMetrics {
+
+  static final String INSTRUMENTATION_SCOPE = "co.elastic.otel.dynamicconfig";
+
+  static final AttributeKey<String> SIGNAL = AttributeKey.stringKey("signal");
+
+  private static final Attributes SPANS = Attributes.of(SIGNAL, "spans");
+  private static final Attributes METRICS = Attributes.of(SIGNAL, "metrics");
+  private static final Attributes LOGS = Attributes.of(SIGNAL, "logs");
+
+  private SendingBlockedMetrics() {}
+
+  static void register(Meter meter) {
+    ObservableLongMeasurement dropped =
+        meter
+            .counterBuilder("elastic.sending.disabled.dropped")
+            .setDescription("Number of telemetry items dropped because sending was disabled")
+            .setUnit("{item}")
+            .buildObserver();
+    meter.batchCallback(
+        () -> {
+          BlockableSpanExporter spanExporter = BlockableSpanExporter.getInstance();
+          if (spanExporter != null) {
+            record(dropped, spanExporter.getDroppedSpanCount(), SPANS);
+          }
+          BlockableMetricExporter metricExporter = BlockableMetricExporter.getInstance();
+          if (metricExporter != null) {
+            record(dropped, metricExporter.getDroppedMetricCount(), METRICS);
+          }
+          BlockableLogRecordExporter logExporter = BlockableLogRecordExporter.getInstance();
+          if (logExporter != null) {
+            record(dropped, logExporter.getDroppedLogCount(), LOGS);
+          }
+        },
+        dropped);
+  }
+
+  private static void record(ObservableLongMeasurement dropped, long count, Attributes signal) {
+    if (count > 0) {
+      dropped.record(count, signal);
+    }
+  }
+}
@@ -21,12 +21,20 @@ package co.elastic.otel.config;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import co.elastic.otel.dynamicconfig.DynamicConfiguration;
+import co.elastic.otel.dynamicconfig.DynamicInstrumentation;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
 import io.opentelemetry.sdk.common.InstrumentationScopeInfo;
 import io.opentelemetry.sdk.internal.ScopeConfigurator;
 import io.opentelemetry.sdk.trace.SdkTracerProvider;
 import io.opentelemetry.sdk.trace.SdkTracerProviderBuilder;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import org.junit.jupiter.api.Test;
 
 public class DynamicInstrumentationTest {
@@ -54,4 +62,123 @@ public class DynamicInstrumentationTest {
             () -> SdkTracerProvider.class.getDeclaredMethod("updateTracerConfigurations"))
         .isInstanceOf(NoSuchMethodException.class);
   }
+
+  @Test
+  public void batchUpdatesTracerEnablement() {
+    try (OpenTelemetrySdk sdk = initSdk()) {
+      Tracer first = sdk.getTracer("io.opentelemetry.first");
+      Tracer second = sdk.getTracer("io.opentelemetry.second");
+
+      Map<String, Boolean> changes = new HashMap<>();
+      changes.put("first", false);
+      changes.put("second", false);
+      DynamicConfiguration.getInstance().setTracesEnabled(changes);
+      assertThat(isRecording(first)).isFalse();
+      assertThat(isRecording(second)).isFalse();
+
+      changes.put("first", true);
+      DynamicConfiguration.getInstance().setTracesEnabled(changes);
+      assertThat(isRecording(first)).isTrue();
+      assertThat(isRecording(second)).isFalse();
+    } finally {
+      DynamicConfiguration.getInstance().setTracesEnabled(Collections.singletonMap("second", true));
+    }
+  }
+
+  @Test
+  public void applyOptionsUpdatesChangedInstrumentations() {
+    try (OpenTelemetrySdk sdk = initSdk()) {
+      Tracer first = sdk.getTracer("io.opentelemetry.first");
+      Tracer second = sdk.getTracer("io.opentelemetry.second");
+      DynamicConfiguration config = DynamicConfiguration.getInstance();
+
+      config.applyOptions(this, disabledInstrumentations("first, second"));
+      assertThat(isRecording(first)).isFalse();
+      assertThat(isRecording(second)).isFalse();
+
+      config.applyOptions(this, disabledInstrumentations("second"));
+      assertThat(isRecording(first)).isTrue();
+      assertThat(isRecording(second)).isFalse();
+
+      config.applyOptions(this, Collections.emptyMap());
+      assertThat(isRecording(first)).isTrue();
+      assertThat(isRecording(second)).isTrue();
+    } finally {
+      DynamicConfiguration.getInstance().applyOptions(this, Collections.emptyMap());
+    }
+  }
+
+  @Test
+  public void applyOptionsCombinesSources() {
+    Object fileSource = new Object();
+    Object propertySource = new Object();
+    try (OpenTelemetrySdk sdk = initSdk()) {
+      Tracer first = sdk.getTracer("io.opentelemetry.first");
+      Tracer second = sdk.getTracer("io.opentelemetry.second");
+      DynamicConfiguration config = DynamicConfiguration.getInstance();
+
+      config.applyOptions(fileSource, disabledInstrumentations("first"));
+      // another source not disabling anything doesn't re-enable the instrumentation
+      config.applyOptions(propertySource, Collections.emptyMap());
+      assertThat(isRecording(first)).isFalse();
+      assertThat(isRecording(second)).isTrue();
+
+      config.applyOptions(propertySource, disabledInstrumentations("second"));
+      assertThat(isRecording(first)).isFalse();
+      assertThat(isRecording(second)).isFalse();
+
+      config.applyOptions(fileSource, Collections.emptyMap());
+      assertThat(isRecording(first)).isTrue();
+      assertThat(isRecording(second)).isFalse();
+    } finally {
+      DynamicConfiguration.getInstance().applyOptions(fileSource, Collections.emptyMap());
+      DynamicConfiguration.getInstance().applyOptions(propertySource, Collections.emptyMap());
+    }
+  }
+
+  @Test
+  public void applyOptionsDisablesInstrumentationsMatchingWildcards() {
+    try (OpenTelemetrySdk sdk = initSdk()) {
+      Tracer jdbc = sdk.getTracer("io.opentelemetry.jdbc");
+      Tracer jdbcPool = sdk.getTracer("io.opentelemetry.jdbc-pool");
+      Tracer other = sdk.getTracer("io.opentelemetry.other");
+      DynamicConfiguration config = DynamicConfiguration.getInstance();
+
+      config.applyOptions(this, disabledInstrumentations("jdbc*"));
+      assertThat(isRecording(jdbc)).isFalse();
+      assertThat(isRecording(jdbcPool)).isFalse();
+      assertThat(isRecording(other)).isTrue();
+      // tracers created later are disabled as well
+      assertThat(isRecording(sdk.getTracer("io.opentelemetry.jdbc-datasource"))).isFalse();
+
+      config.applyOptions(this, Collections.emptyMap());
+      assertThat(isRecording(jdbc)).isTrue();
+      assertThat(isRecording(jdbcPool)).isTrue();
+    } finally {
+      DynamicConfiguration.getInstance().applyOptions(this, Collections.emptyMap());
+    }
+  }
+
+  private static Map<String, String> disabledInstrumentations(String instrumentations) {
+    return Collections.singletonMap(
+        DynamicConfiguration.INSTRUMENTATION_DISABLE_OPTION, instrumentations);
+  }
+
+  private static OpenTelemetrySdk initSdk() {
+    SdkTracerProviderBuilder builder = SdkTracerProvider.builder();
+    DynamicInstrumentation.setTracerConfigurator(
+        builder, DynamicConfiguration.UpdatableConfigurator.INSTANCE);
+    OpenTelemetrySdk sdk = OpenTelemetrySdk.builder().setTracerProvider(builder.build()).build();
+    DynamicConfiguration.getInstance().setTracerProvider(sdk.getSdkTracerProvider());
+    return sdk;
+  }
+
+  private static boolean isRecording(Tracer tracer) {
+    Span span = tracer.spanBuilder("test").startSpan();
+    try {
+      return span.isRecording();
+    } finally {
+      span.end();
+    }
+  }
 }
@@ -0,0 +1,72 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.dynamicconfig;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.opentelemetry.api.logs.Logger;
+import io.opentelemetry.sdk.logs.LogRecordProcessor;
+import io.opentelemetry.sdk.logs.SdkLoggerProvider;
+import io.opentelemetry.sdk.logs.export.SimpleLogRecordProcessor;
+import io.opentelemetry.sdk.testing.exporter.InMemoryLogRecordExporter;
+import org.junit.jupiter.api.Test;
+
+public class BlockedSendingLogRecordProcessorTest {
+
+  @Test
+  public void onlyExportingProcessorsWrapped() {
+    LogRecordProcessor exporting =
+        SimpleLogRecordProcessor.create(InMemoryLogRecordExporter.create());
+    LogRecordProcessor other = (context, logRecord) -> {};
+
+    assertThat(BlockedSendingLogRecordProcessor.wrapIfExporting(exporting))
+        .isInstanceOf(BlockedSendingLogRecordProcessor.class);
+    assertThat(BlockedSendingLogRecordProcessor.wrapIfExporting(other)).isSameAs(other);
+  }
+
+  @Test
+  public void logsDroppedBeforeExportWhileBlocked() {
+    InMemoryLogRecordExporter logs = InMemoryLogRecordExporter.create();
+    BlockableLogRecordExporter blockable = BlockableLogRecordExporter.createCustomInstance(logs);
+
+    try (SdkLoggerProvider loggerProvider =
+        SdkLoggerProvider.builder()
+            .addLogRecordProcessor(
+                BlockedSendingLogRecordProcessor.wrapIfExporting(
+                    SimpleLogRecordProcessor.create(blockable)))
+            .build()) {
+      Logger logger = loggerProvider.get("test-logger");
+
+      blockable.setSendingLogs(false);
+      logger.logRecordBuilder().setBody("blocked1").emit();
+      logger.logRecordBuilder().setBody("blocked2").emit();
+
+      assertThat(logs.getFinishedLogRecordItems()).isEmpty();
+      assertThat(blockable.getDroppedLogCount()).isEqualTo(2);
+
+      blockable.setSendingLogs(true);
+      logger.logRecordBuilder().setBody("sent").emit();
+
+      assertThat(logs.getFinishedLogRecordItems())
+          .extracting(log -> log.getBody().asString())
+          .containsExactly("sent");
+      assertThat(blockable.getDroppedLogCount()).isEqualTo(2);
+    }
+  }
+}
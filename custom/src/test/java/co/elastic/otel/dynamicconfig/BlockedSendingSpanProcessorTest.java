@@ -0,0 +1,98 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.dynamicconfig;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import org.junit.jupiter.api.Test;
+
+public class BlockedSendingSpanProcessorTest {
+
+  @Test
+  public void spansDroppedBeforeExportWhileBlocked() {
+    InMemorySpanExporter spans = InMemorySpanExporter.create();
+    BlockableSpanExporter blockable = BlockableSpanExporter.createCustomInstance(spans);
+
+    try (OpenTelemetrySdk sdk =
+        OpenTelemetrySdk.builder()
+            .setTracerProvider(
+                SdkTracerProvider.builder()
+                    .addSpanProcessor(
+                        new BlockedSendingSpanProcessor(SimpleSpanProcessor.create(blockable)))
+                    .build())
+            .build()) {
+      Tracer tracer = sdk.getTracer("test-tracer");
+
+      blockable.setSendingSpans(false);
+      tracer.spanBuilder("blocked1").startSpan().end();
+      tracer.spanBuilder("blocked2").startSpan().end();
+
+      assertThat(spans.getFinishedSpanItems()).isEmpty();
+      assertThat(blockable.getDroppedSpanCount()).isEqualTo(2);
+
+      blockable.setSendingSpans(true);
+      tracer.spanBuilder("sent").startSpan().end();
+
+      assertThat(spans.getFinishedSpanItems())
+          .hasSize(1)
+          .allSatisfy(span -> assertThat(span.getName()).isEqualTo("sent"));
+      assertThat(blockable.getDroppedSpanCount()).isEqualTo(2);
+    }
+  }
+
+  @Test
+  public void spansBufferedWhileBlockedAndReplayedInOrder() {
+    InMemorySpanExporter spans = InMemorySpanExporter.create();
+    BlockableSpanExporter blockable = BlockableSpanExporter.createCustomInstance(spans, 2);
+
+    try (OpenTelemetrySdk sdk =
+        OpenTelemetrySdk.builder()
+            .setTracerProvider(
+                SdkTracerProvider.builder()
+                    .addSpanProcessor(
+                        new BlockedSendingSpanProcessor(SimpleSpanProcessor.create(blockable)))
+                    .build())
+            .build()) {
+      Tracer tracer = sdk.getTracer("test-tracer");
+
+      blockable.setSendingSpans(false);
+      tracer.spanBuilder("evicted").startSpan().end();
+      tracer.spanBuilder("buffered1").startSpan().end();
+      tracer.spanBuilder("buffered2").startSpan().end();
+
+      assertThat(spans.getFinishedSpanItems()).isEmpty();
+      assertThat(blockable.getBufferedSpanCount()).isEqualTo(2);
+      assertThat(blockable.getDroppedSpanCount()).isEqualTo(1);
+
+      blockable.setSendingSpans(true);
+      tracer.spanBuilder("sent").startSpan().end();
+
+      assertThat(spans.getFinishedSpanItems())
+          .extracting(SpanData::getName)
+          .containsExactly("buffered1", "buffered2", "sent");
+      assertThat(blockable.getBufferedSpanCount()).isZero();
+    }
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.dynamicconfig;
+
+import static io.opentelemetry.sdk.testing.assertj.OpenTelemetryAssertions.assertThat;
+
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.testing.exporter.InMemoryMetricReader;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import org.junit.jupiter.api.Test;
+
+public class DisabledInstrumentationPatternsTest {
+
+  @Test
+  public void patternsMatchScopeNamesAndReportCacheMetrics() {
+    DisabledInstrumentationPatterns patterns = new DisabledInstrumentationPatterns();
+    InMemoryMetricReader metricReader = InMemoryMetricReader.create();
+    try (SdkMeterProvider meterProvider =
+        SdkMeterProvider.builder().registerMetricReader(metricReader).build()) {
+      patterns.registerMetrics(meterProvider.get(SendingBlockedMetrics.INSTRUMENTATION_SCOPE));
+
+      assertThat(patterns.isDisabled("io.opentelemetry.jdbc")).isFalse();
+      assertThat(patterns.set(new HashSet<>(Arrays.asList("jdbc*", "(?-i)*Kafka")))).isTrue();
+      assertThat(patterns.set(new HashSet<>(Arrays.asList("jdbc*", "(?-i)*Kafka")))).isFalse();
+
+      assertThat(patterns.isDisabled("io.opentelemetry.jdbc")).isTrue();
+      assertThat(patterns.isDisabled("io.opentelemetry.JDBC-pool")).isTrue();
+      assertThat(patterns.isDisabled("io.opentelemetry.spring-kafka")).isFalse();
+      assertThat(patterns.isDisabled("io.opentelemetry.spring-Kafka")).isTrue();
+      // patterns only apply to the names of instrumentations
+      assertThat(patterns.isDisabled("jdbc")).isFalse();
+      assertThat(patterns.isDisabled("io.opentelemetry.jdbc")).isTrue();
+      assertAllCounters(metricReader.collectAllMetrics(), 1, 5, 0);
+
+      // the counters are kept when the patterns change
+      assertThat(patterns.set(Collections.emptySet())).isTrue();
+      assertThat(patterns.isDisabled("io.opentelemetry.jdbc")).isFalse();
+      assertAllCounters(metricReader.collectAllMetrics(), 1, 5, 0);
+    }
+  }
+
+  private static void assertAllCounters(
+      Collection<MetricData> metrics, long hits, long misses, long evictions) {
+    assertCounter(metrics, "hits", hits);
+    assertCounter(metrics, "misses", misses);
+    assertCounter(metrics, "evictions", evictions);
+  }
+
+  private static void assertCounter(Collection<MetricData> metrics, String name, long value) {
+    assertThat(metrics)
+        .anySatisfy(
+            metric ->
+                assertThat(metric)
+                    .hasName(
+                        "elastic.dynamic_config.disabled_instrumentation_patterns.cache." + name)
+                    .hasLongSumSatisfying(
+                        sum -> sum.isMonotonic().hasPointsSatisfying(pt -> pt.hasValue(value))));
+  }
+}
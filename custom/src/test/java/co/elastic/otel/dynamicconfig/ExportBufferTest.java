@@ -0,0 +1,173 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.dynamicconfig;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+
+public class ExportBufferTest {
+
+  private final List<Collection<String>> exported = new ArrayList<>();
+  private final List<CompletableResultCode> exportResults = new ArrayList<>();
+  private final AtomicBoolean sending = new AtomicBoolean(false);
+  private final LongAdder dropped = new LongAdder();
+
+  /** Exports complete only once the test completes their result. */
+  private final Function<Collection<String>, CompletableResultCode> pendingExporter =
+      batch -> {
+        exported.add(new ArrayList<>(batch));
+        CompletableResultCode result = new CompletableResultCode();
+        exportResults.add(result);
+        return result;
+      };
+
+  private final Function<Collection<String>, CompletableResultCode> successfulExporter =
+      batch -> {
+        exported.add(new ArrayList<>(batch));
+        return CompletableResultCode.ofSuccess();
+      };
+
+  private ExportBuffer<String> createBuffer(
+      int maxItems, Function<Collection<String>, CompletableResultCode> exporter) {
+    return new ExportBuffer<>(maxItems, exporter, sending::get, dropped::add);
+  }
+
+  @Test
+  public void disabledWithoutSize() {
+    assertThat(createBuffer(0, successfulExporter).isEnabled()).isFalse();
+    assertThat(createBuffer(-1, successfulExporter).isEnabled()).isFalse();
+    assertThat(createBuffer(1, successfulExporter).isEnabled()).isTrue();
+  }
+
+  @Test
+  public void oldestBatchesEvictedFirst() {
+    ExportBuffer<String> buffer = createBuffer(4, successfulExporter);
+
+    buffer.add(Arrays.asList("a", "b"));
+    buffer.add(Arrays.asList("c", "d"));
+    assertThat(dropped.sum()).isZero();
+    buffer.add(Arrays.asList("e"));
+    assertThat(dropped.sum()).isEqualTo(2);
+    assertThat(buffer.getBufferedItemCount()).isEqualTo(3);
+
+    sending.set(true);
+    buffer.replay();
+    assertThat(exported).containsExactly(Arrays.asList("c", "d"), Arrays.asList("e"));
+    assertThat(buffer.getBufferedItemCount()).isZero();
+  }
+
+  @Test
+  public void oversizedBatchKeepsNewestItems() {
+    ExportBuffer<String> buffer = createBuffer(2, successfulExporter);
+
+    buffer.add(Arrays.asList("a"));
+    buffer.add(Arrays.asList("b", "c", "d"));
+    assertThat(dropped.sum()).isEqualTo(2);
+
+    sending.set(true);
+    buffer.replay();
+    assertThat(exported).containsExactly(Arrays.asList("c", "d"));
+  }
+
+  @Test
+  public void replayChainsExportsWithoutBlocking() {
+    ExportBuffer<String> buffer = createBuffer(4, pendingExporter);
+    buffer.add(Arrays.asList("a", "b"));
+    buffer.add(Arrays.asList("c"));
+
+    sending.set(true);
+    // returns although the export of the first batch has not completed yet
+    buffer.replay();
+    assertThat(exported).containsExactly(Arrays.asList("a", "b"));
+
+    // new batches are queued behind the replay
+    CompletableResultCode newBatchResult = buffer.export(Arrays.asList("d"));
+    assertThat(exported).hasSize(1);
+    assertThat(newBatchResult.isDone()).isFalse();
+
+    exportResults.get(0).succeed();
+    assertThat(exported).containsExactly(Arrays.asList("a", "b"), Arrays.asList("c"));
+    exportResults.get(1).succeed();
+    assertThat(exported).hasSize(3).last().isEqualTo(Arrays.asList("d"));
+    assertThat(newBatchResult.isDone()).isFalse();
+
+    exportResults.get(2).succeed();
+    assertThat(newBatchResult.isSuccess()).isTrue();
+    assertThat(buffer.getBufferedItemCount()).isZero();
+
+    // once the replay has finished, batches are exported directly again
+    buffer.export(Arrays.asList("e"));
+    assertThat(exported).hasSize(4).last().isEqualTo(Arrays.asList("e"));
+    assertThat(dropped.sum()).isZero();
+  }
+
+  @Test
+  public void failedReplayCounted() {
+    ExportBuffer<String> buffer =
+        createBuffer(
+            4,
+            batch -> {
+              exported.add(new ArrayList<>(batch));
+              if (batch.contains("a")) {
+                return CompletableResultCode.ofFailure();
+              } else if (batch.contains("c")) {
+                throw new IllegalStateException("expected");
+              }
+              return CompletableResultCode.ofSuccess();
+            });
+    buffer.add(Arrays.asList("a", "b"));
+    buffer.add(Arrays.asList("c"));
+    buffer.add(Arrays.asList("d"));
+
+    sending.set(true);
+    buffer.replay();
+
+    assertThat(dropped.sum()).isEqualTo(3);
+    assertThat(exported)
+        .containsExactly(Arrays.asList("a", "b"), Arrays.asList("c"), Arrays.asList("d"));
+    assertThat(buffer.getBufferedItemCount()).isZero();
+  }
+
+  @Test
+  public void replayPausedWhileSendingDisabled() {
+    ExportBuffer<String> buffer = createBuffer(4, pendingExporter);
+    buffer.add(Arrays.asList("a"));
+    buffer.add(Arrays.asList("b"));
+
+    sending.set(true);
+    buffer.replay();
+    sending.set(false);
+    exportResults.get(0).succeed();
+    assertThat(exported).containsExactly(Arrays.asList("a"));
+    assertThat(buffer.getBufferedItemCount()).isEqualTo(1);
+
+    sending.set(true);
+    buffer.replay();
+    assertThat(exported).containsExactly(Arrays.asList("a"), Arrays.asList("b"));
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.dynamicconfig;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FileDynamicConfigurationSourceTest {
+
+  @Test
+  public void pushesOptionsOnChange(@TempDir Path dir) throws IOException {
+    Path file = dir.resolve("dynamic.properties");
+    CopyOnWriteArrayList<Map<String, String>> received = new CopyOnWriteArrayList<>();
+    FileDynamicConfigurationSource source = new FileDynamicConfigurationSource(file);
+
+    source.start(received::add);
+    try {
+      // a missing file is pushed as empty options
+      await().atMost(Duration.ofSeconds(10)).until(() -> received.size() == 1);
+      assertThat(received.get(0)).isEmpty();
+
+      write(file, DynamicConfiguration.INSTRUMENTATION_DISABLE_OPTION + "=jdbc,kafka\n");
+      await()
+          .atMost(Duration.ofSeconds(30))
+          .untilAsserted(
+              () ->
+                  assertThat(last(received))
+                      .containsEntry(
+                          DynamicConfiguration.INSTRUMENTATION_DISABLE_OPTION, "jdbc,kafka"));
+
+      Files.delete(file);
+      await()
+          .atMost(Duration.ofSeconds(30))
+          .untilAsserted(() -> assertThat(last(received)).isEmpty());
+    } finally {
+      source.stop();
+    }
+
+    int count = received.size();
+    write(file, DynamicConfiguration.DISABLE_SEND_OPTION + "=true\n");
+    await().during(Duration.ofMillis(500)).until(() -> received.size() == count);
+  }
+
+  @Test
+  public void pushesOptionsOnConfigMapUpdate(@TempDir Path dir) throws IOException {
+    // mimics the layout of a Kubernetes ConfigMap volume, which is updated by swapping a symlink
+    Path version1 = Files.createDirectory(dir.resolve("..version1"));
+    write(
+        version1.resolve("dynamic.properties"),
+        DynamicConfiguration.DISABLE_SEND_OPTION + "=true\n");
+    Files.createSymbolicLink(dir.resolve("..data"), version1.getFileName());
+    Path file =
+        Files.createSymbolicLink(
+            dir.resolve("dynamic.properties"), Paths.get("..data", "dynamic.properties"));
+    CopyOnWriteArrayList<Map<String, String>> received = new CopyOnWriteArrayList<>();
+    FileDynamicConfigurationSource source = new FileDynamicConfigurationSource(file);
+
+    source.start(received::add);
+    try {
+      await().atMost(Duration.ofSeconds(10)).until(() -> received.size() == 1);
+      assertThat(received.get(0)).containsEntry(DynamicConfiguration.DISABLE_SEND_OPTION, "true");
+
+      // unrelated changes in the directory do not push the same options again
+      write(dir.resolve("unrelated.txt"), "unrelated");
+
+      Path version2 = Files.createDirectory(dir.resolve("..version2"));
+      write(
+          version2.resolve("dynamic.properties"),
+          DynamicConfiguration.DISABLE_SEND_OPTION + "=false\n");
+      Path newData = Files.createSymbolicLink(dir.resolve("..data_tmp"), version2.getFileName());
+      Files.move(
+          newData,
+          dir.resolve("..data"),
+          StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+
+      await()
+          .atMost(Duration.ofSeconds(30))
+          .untilAsserted(
+              () ->
+                  assertThat(last(received))
+                      .containsEntry(DynamicConfiguration.DISABLE_SEND_OPTION, "false"));
+      assertThat(received).hasSize(2);
+    } finally {
+      source.stop();
+    }
+  }
+
+  private static Map<String, String> last(List<Map<String, String>> received) {
+    return received.get(received.size() - 1);
+  }
+
+  private static void write(Path file, String content) throws IOException {
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.dynamicconfig;
+
+import static io.opentelemetry.sdk.testing.assertj.OpenTelemetryAssertions.assertThat;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.testing.exporter.InMemoryLogRecordExporter;
+import io.opentelemetry.sdk.testing.exporter.InMemoryMetricExporter;
+import io.opentelemetry.sdk.testing.exporter.InMemoryMetricReader;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import org.junit.jupiter.api.Test;
+
+public class SendingBlockedMetricsTest {
+
+  @Test
+  public void droppedItemsReportedPerSignal() {
+    InMemoryMetricReader metricReader = InMemoryMetricReader.create();
+    try (SdkMeterProvider meterProvider =
+        SdkMeterProvider.builder().registerMetricReader(metricReader).build()) {
+      SendingBlockedMetrics.register(
+          meterProvider.get(SendingBlockedMetrics.INSTRUMENTATION_SCOPE));
+
+      BlockableSpanExporter.createCustomInstance(InMemorySpanExporter.create());
+      BlockableMetricExporter.createCustomInstance(InMemoryMetricExporter.create());
+      BlockableLogRecordExporter.createCustomInstance(InMemoryLogRecordExporter.create());
+      BlockableSpanExporter.recordDropped(2);
+      BlockableSpanExporter.recordDropped(3);
+
+      // metrics and logs are not reported, as none have been dropped
+      assertThat(metricReader.collectAllMetrics())
+          .anySatisfy(
+              metric ->
+                  assertThat(metric)
+                      .hasName("elastic.sending.disabled.dropped")
+                      .hasLongSumSatisfying(
+                          sum ->
+                              sum.isMonotonic()
+                                  .hasPointsSatisfying(
+                                      point ->
+                                          point
+                                              .hasValue(5)
+                                              .hasAttributes(
+                                                  Attributes.of(
+                                                      SendingBlockedMetrics.SIGNAL, "spans")))));
+    }
+  }
+}
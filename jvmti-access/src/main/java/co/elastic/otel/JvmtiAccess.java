@@ -87,6 +87,32 @@ public class JvmtiAccess {
     return numRead;
   }
 
+  static int receiveProfilerReturnChannelMessageBatch(
+      ByteBuffer outputBuffer, int maxMessages, int maxMessageSize) {
+    ensureInitialized();
+    int numRead =
+        JvmtiAccessImpl.readProfilerReturnChannelSocketMessageBatch0(
+            outputBuffer, maxMessages, maxMessageSize);
+    if (numRead < 0) {
+      throw new IllegalStateException("Native code returned error: " + numRead);
+    }
+    return numRead;
+  }
+
+  static boolean awaitProfilerReturnChannelMessages(long timeoutMillis) {
+    ensureInitialized();
+    int result = JvmtiAccessImpl.awaitProfilerReturnChannelSocketMessages0(timeoutMillis);
+    if (result < 0) {
+      throw new IllegalStateException("Native code returned error: " + result);
+    }
+    return result > 0;
+  }
+
+  static void wakeupProfilerReturnChannel() {
+    ensureInitialized();
+    checkError(JvmtiAccessImpl.wakeupProfilerReturnChannelSocket0());
+  }
+
   public static void ensureInitialized() {
     switch (state) {
       case NOT_LOADED:
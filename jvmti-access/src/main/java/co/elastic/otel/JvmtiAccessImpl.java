@@ -63,6 +63,28 @@ public class JvmtiAccessImpl {
    */
   static native int readProfilerReturnChannelSocketMessage0(ByteBuffer outputDirectBuffer);
 
+  /**
+   * Reads up to maxMessages messages with a single native call into the provided buffer. The buffer
+   * starts with a table of (offset, length) int pairs in native byte order, one pair per received
+   * message. The messages are stored in slots of maxMessageSize bytes following that table.
+   *
+   * @return the number of messages read, 0 if no message was received.
+   */
+  static native int readProfilerReturnChannelSocketMessageBatch0(
+      ByteBuffer outputDirectBuffer, int maxMessages, int maxMessageSize);
+
+  /**
+   * Blocks until a message is available on the socket, the timeout elapses or {@link
+   * #wakeupProfilerReturnChannelSocket0()} is invoked.
+   *
+   * @param timeoutMillis the maximum time to block, a negative value means no timeout
+   * @return 1 if a message is available for reading, 0 otherwise
+   */
+  static native int awaitProfilerReturnChannelSocketMessages0(long timeoutMillis);
+
+  /** Interrupts threads blocked in {@link #awaitProfilerReturnChannelSocketMessages0(long)}. */
+  static native int wakeupProfilerReturnChannelSocket0();
+
   /**
    * ONLY FOR TESTING! Sends data to the socket which can be subsequently read via {@link
    * #readProfilerReturnChannelSocketMessage0(ByteBuffer)}.
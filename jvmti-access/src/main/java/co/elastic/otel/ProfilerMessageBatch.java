@@ -0,0 +1,104 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel;
+
+import co.elastic.otel.profiler.DecodeException;
+import co.elastic.otel.profiler.MessageDecoder;
+import co.elastic.otel.profiler.ProfilerMessage;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A batch of messages received from the profiler via {@link
+ * UniversalProfilingCorrelation#readProfilerReturnChannelMessages(ProfilerMessageBatch)}. The
+ * batch is backed by a single direct buffer, which is reused for every read.
+ *
+ * <p>Instances are not thread safe. The messages returned by {@link #next()} are reused and only
+ * remain valid until the next call of {@link #next()}.
+ */
+public class ProfilerMessageBatch {
+
+  final ByteBuffer buffer;
+  final int maxMessages;
+  final int maxMessageSize;
+
+  private final ByteBuffer messageView;
+  private final MessageDecoder messageDecoder = new MessageDecoder();
+
+  private int messageCount = 0;
+  private int nextMessage = 0;
+
+  /**
+   * @param maxMessages the maximum number of messages to read with a single native call, at most
+   *     256
+   * @param maxMessageSize the maximum size of a single message, larger messages are discarded and
+   *     reported via a {@link DecodeException} by {@link #next()}
+   */
+  public ProfilerMessageBatch(int maxMessages, int maxMessageSize) {
+    if (maxMessages <= 0 || maxMessageSize <= 0) {
+      throw new IllegalArgumentException("maxMessages and maxMessageSize must be positive");
+    }
+    this.maxMessages = maxMessages;
+    this.maxMessageSize = maxMessageSize;
+    int tableSize = maxMessages * 2 * 4;
+    buffer = ByteBuffer.allocateDirect(tableSize + maxMessages * maxMessageSize);
+    buffer.order(ByteOrder.nativeOrder());
+    messageView = buffer.duplicate();
+    messageView.order(ByteOrder.nativeOrder());
+  }
+
+  void reset(int count) {
+    messageCount = count;
+    nextMessage = 0;
+  }
+
+  /**
+   * @return the number of messages received with the last read
+   */
+  public int size() {
+    return messageCount;
+  }
+
+  public boolean hasNext() {
+    return nextMessage < messageCount;
+  }
+
+  /**
+   * Decodes the next message of this batch.
+   *
+   * @throws DecodeException if the current message could not be decoded. The message is skipped,
+   *     so that subsequent calls return the following messages.
+   */
+  public ProfilerMessage next() throws DecodeException {
+    if (!hasNext()) {
+      throw new IllegalStateException("No more messages in this batch");
+    }
+    int index = nextMessage++;
+    int offset = buffer.getInt(index * 8);
+    int length = buffer.getInt(index * 8 + 4);
+    if (length < 0) {
+      // marked by the native code, as the message did not fit into its slot
+      throw new DecodeException(
+          "Discarded message exceeding the maximum size of " + maxMessageSize + " bytes", null);
+    }
+    messageView.limit(offset + length);
+    messageView.position(offset);
+    return messageDecoder.decode(messageView);
+  }
+}
@@ -164,6 +164,46 @@ public class UniversalProfilingCorrelation {
     return null;
   }
 
+  /**
+   * Reads all messages currently available from the profiler return channel socket into the
+   * provided batch, using a single native call. The messages can afterwards be iterated via {@link
+   * ProfilerMessageBatch#hasNext()} and {@link ProfilerMessageBatch#next()}.
+   *
+   * @param batch the batch to read into, previous content of the batch is discarded
+   * @return true, if at least one message was received
+   */
+  public static synchronized boolean readProfilerReturnChannelMessages(ProfilerMessageBatch batch) {
+    int count =
+        JvmtiAccess.receiveProfilerReturnChannelMessageBatch(
+            batch.buffer, batch.maxMessages, batch.maxMessageSize);
+    batch.reset(count);
+    return count > 0;
+  }
+
+  /**
+   * Blocks the calling thread until a message from the profiler is available, the given timeout
+   * elapses or {@link #wakeupProfilerReturnChannel()} is invoked. Spurious returns are possible.
+   *
+   * <p>Unlike the read methods, this method does not synchronize, so that messages can be read and
+   * the channel can be stopped while a thread is blocked here. Stopping the channel wakes up any
+   * blocked threads.
+   *
+   * @param timeoutMillis the maximum time to block, a negative value means no timeout
+   * @return true, if messages are available for reading
+   */
+  public static boolean awaitProfilerReturnChannelMessages(long timeoutMillis) {
+    return JvmtiAccess.awaitProfilerReturnChannelMessages(timeoutMillis);
+  }
+
+  /**
+   * Wakes up threads blocked in {@link #awaitProfilerReturnChannelMessages(long)}. If no thread is
+   * currently blocked, the next call to {@link #awaitProfilerReturnChannelMessages(long)} will
+   * return immediately.
+   */
+  public static void wakeupProfilerReturnChannel() {
+    JvmtiAccess.wakeupProfilerReturnChannel();
+  }
+
   static synchronized void reset() {
     threadStorage = new ThreadLocal<>();
     if (processStorage != null) {
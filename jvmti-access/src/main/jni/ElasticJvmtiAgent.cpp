@@ -133,6 +133,18 @@ namespace elastic
             return profilerSocket.readMessage(jniEnv, outputBuffer);
         }
 
+        jint readProfilerSocketMessageBatch(JNIEnv* jniEnv, jobject outputBuffer, jint maxMessages, jint maxMessageSize) {
+            return profilerSocket.readMessageBatch(jniEnv, outputBuffer, maxMessages, maxMessageSize);
+        }
+
+        jint awaitProfilerSocketMessages(JNIEnv* jniEnv, jlong timeoutMillis) {
+            return profilerSocket.awaitMessages(jniEnv, timeoutMillis);
+        }
+
+        ReturnCode wakeupProfilerSocket(JNIEnv* jniEnv) {
+            return profilerSocket.wakeup(jniEnv);
+        }
+
         //ONLY FOR TESTING!
         ReturnCode writeProfilerSocketMessage(JNIEnv* jniEnv, jbyteArray message) {
             return profilerSocket.writeMessage(jniEnv, message);
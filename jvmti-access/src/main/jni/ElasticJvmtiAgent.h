@@ -32,6 +32,9 @@ namespace elastic {
         ReturnCode closeProfilerSocket(JNIEnv* jniEnv);
 
         jint readProfilerSocketMessage(JNIEnv* jniEnv, jobject outputBuffer);
+        jint readProfilerSocketMessageBatch(JNIEnv* jniEnv, jobject outputBuffer, jint maxMessages, jint maxMessageSize);
+        jint awaitProfilerSocketMessages(JNIEnv* jniEnv, jlong timeoutMillis);
+        ReturnCode wakeupProfilerSocket(JNIEnv* jniEnv);
         ReturnCode writeProfilerSocketMessage(JNIEnv* jniEnv, jbyteArray message);
 
         void onVirtualThreadMount(JNIEnv* jni, jthread currentThread);
@@ -45,6 +45,18 @@ JNIEXPORT jint JNICALL Java_co_elastic_otel_JvmtiAccessImpl_readProfilerReturnCh
     return elastic::jvmti_agent::readProfilerSocketMessage(env, byteBuffer);
 }
 
+JNIEXPORT jint JNICALL Java_co_elastic_otel_JvmtiAccessImpl_readProfilerReturnChannelSocketMessageBatch0(JNIEnv* env, jclass, jobject byteBuffer, jint maxMessages, jint maxMessageSize) {
+    return elastic::jvmti_agent::readProfilerSocketMessageBatch(env, byteBuffer, maxMessages, maxMessageSize);
+}
+
+JNIEXPORT jint JNICALL Java_co_elastic_otel_JvmtiAccessImpl_awaitProfilerReturnChannelSocketMessages0(JNIEnv* env, jclass, jlong timeoutMillis) {
+    return elastic::jvmti_agent::awaitProfilerSocketMessages(env, timeoutMillis);
+}
+
+JNIEXPORT jint JNICALL Java_co_elastic_otel_JvmtiAccessImpl_wakeupProfilerReturnChannelSocket0(JNIEnv* env, jclass) {
+    return toJint(elastic::jvmti_agent::wakeupProfilerSocket(env));
+}
+
 JNIEXPORT jint JNICALL Java_co_elastic_otel_JvmtiAccessImpl_sendToProfilerReturnChannelSocket0(JNIEnv* env, jclass, jbyteArray message) {
     return toJint(elastic::jvmti_agent::writeProfilerSocketMessage(env, message));
 }
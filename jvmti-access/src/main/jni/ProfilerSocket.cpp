@@ -4,12 +4,22 @@
 #include <sys/un.h>
 #include <fcntl.h>
 #include <cstring>
+#include <sys/uio.h>
+#include <poll.h>
+#include <climits>
+#include <algorithm>
 
 namespace elastic {
     namespace jvmti_agent {
 
         ProfilerSocket::State::~State() {
             close(socketFd);
+            if (wakeupReadFd != -1) {
+                close(wakeupReadFd);
+            }
+            if (wakeupWriteFd != -1) {
+                close(wakeupWriteFd);
+            }
             if (socketFilePath != "") {
                 unlink(socketFilePath.c_str());
             }
@@ -49,6 +59,28 @@ namespace elastic {
 
 
 
+        ReturnCode ProfilerSocket::State::createWakeupPipe(JNIEnv* jniEnv) {
+            int fds[2];
+            if (pipe(fds) != 0) {
+                return raiseExceptionAndReturn(jniEnv, ReturnCode::ERROR, "Could not create wakeup pipe, error is ", errno);
+            }
+            wakeupReadFd = fds[0];
+            wakeupWriteFd = fds[1];
+            for (int fd : fds) {
+                int flags = fcntl(fd, F_GETFL, 0);
+                if (flags == -1 || fcntl(fd, F_SETFL, flags | O_NONBLOCK) != 0) {
+                    return raiseExceptionAndReturn(jniEnv, ReturnCode::ERROR, "Could not configure wakeup pipe to be non-blocking, error is ", errno);
+                }
+            }
+            return ReturnCode::SUCCESS;
+        }
+
+        void ProfilerSocket::State::wakeup() {
+            uint8_t signal = 1;
+            // if the pipe is full, a wakeup is already pending, so we can ignore the result
+            [[maybe_unused]] auto ignored = write(wakeupWriteFd, &signal, 1);
+        }
+
         ReturnCode ProfilerSocket::openSocket(JNIEnv* jniEnv, jstring filepath) {
             std::lock_guard<std::mutex> guard(mutex);
             if(state != nullptr) {
@@ -59,7 +91,7 @@ namespace elastic {
             if (socketFd == -1) {
                 return raiseExceptionAndReturn(jniEnv, ReturnCode::ERROR, "Could not create SOCK_DGRAM domain socket, error is ", errno);
             }
-            std::unique_ptr<State> newState = std::make_unique<State>(socketFd);
+            std::shared_ptr<State> newState = std::make_shared<State>(socketFd);
 
             int flags = fcntl(socketFd, F_GETFL, 0);
             if (flags == -1) {
@@ -71,6 +103,11 @@ namespace elastic {
                 return raiseExceptionAndReturn(jniEnv, ReturnCode::ERROR, "Could not configure socket to be non-blocking, error is ", errno);                
             }
 
+            auto pipeRes = newState->createWakeupPipe(jniEnv);
+            if (pipeRes != ReturnCode::SUCCESS) {
+                return pipeRes;
+            }
+
             auto bindRes = newState->bindToPath(jniEnv, filepath);
             if (bindRes != ReturnCode::SUCCESS) {
                 return bindRes;
@@ -85,12 +122,16 @@ namespace elastic {
             if (state == nullptr) {
                 return raiseExceptionAndReturn(jniEnv, ReturnCode::ERROR, "Profiler socket has not been opened yet!");
             }
+            state->wakeup();
             state = nullptr;
             return ReturnCode::SUCCESS;
         }
 
         void ProfilerSocket::destroy() {
             std::lock_guard<std::mutex> guard(mutex);
+            if (state != nullptr) {
+                state->wakeup();
+            }
             state = nullptr;
         }
 
@@ -120,6 +161,141 @@ namespace elastic {
             return n;
         }
 
+        jint ProfilerSocket::readMessageBatch(JNIEnv* jniEnv, jobject outputBuffer, jint maxMessages, jint maxMessageSize) {
+            std::lock_guard<std::mutex> guard(mutex);
+            if (state == nullptr) {
+                return raiseExceptionAndReturn(jniEnv, -1, "Profiler socket has not been opened yet!");
+            }
+            if (outputBuffer == nullptr) {
+                return raiseExceptionAndReturn(jniEnv, -1, "No output buffer provided!");
+            }
+            if (maxMessages <= 0 || maxMessages > MAX_BATCH_SIZE || maxMessageSize <= 0) {
+                return raiseExceptionAndReturn(jniEnv, -1, "Invalid batch dimensions, at most ", MAX_BATCH_SIZE, " messages are supported per batch");
+            }
+            if (state->pendingReadError != 0) {
+                // the error occurred after some messages had already been read by the previous call
+                int error = state->pendingReadError;
+                state->pendingReadError = 0;
+                return raiseExceptionAndReturn(jniEnv, -1, "Failed to read from socket, error code is ", error);
+            }
+
+            jlong capacity = jniEnv->GetDirectBufferCapacity(outputBuffer);
+            uint8_t* output = static_cast<uint8_t*>(jniEnv->GetDirectBufferAddress(outputBuffer));
+            if (output == nullptr || capacity == -1) {
+                return raiseExceptionAndReturn(jniEnv, -1, "Provided bytebuffer is not a direct buffer");
+            }
+
+            // The buffer starts with a table of (offset, length) jint pairs, one per message slot.
+            // The message slots of maxMessageSize bytes each follow the table.
+            jlong tableSize = static_cast<jlong>(maxMessages) * 2 * sizeof(jint);
+            jlong requiredCapacity = tableSize + static_cast<jlong>(maxMessages) * maxMessageSize;
+            if (capacity < requiredCapacity) {
+                return raiseExceptionAndReturn(jniEnv, -1, "Provided bytebuffer is too small, required capacity is ", requiredCapacity);
+            }
+            jint* table = reinterpret_cast<jint*>(output);
+            uint8_t* slots = output + tableSize;
+            // Messages which did not fit into their slot are reported with a negative length, so that
+            // they are skipped and reported as undecodable instead of decoding the truncated content
+
+#ifdef __linux__
+            mmsghdr messages[MAX_BATCH_SIZE];
+            iovec iovecs[MAX_BATCH_SIZE];
+            for (jint i = 0; i < maxMessages; i++) {
+                iovecs[i].iov_base = slots + static_cast<size_t>(i) * maxMessageSize;
+                iovecs[i].iov_len = maxMessageSize;
+                messages[i] = {};
+                messages[i].msg_hdr.msg_iov = &iovecs[i];
+                messages[i].msg_hdr.msg_iovlen = 1;
+            }
+
+            int n = recvmmsg(state->socketFd, messages, maxMessages, MSG_DONTWAIT, nullptr);
+            if (n == -1) {
+                if(errno == EAGAIN || errno == EWOULDBLOCK) {
+                    return 0; //no data to read available
+                } else {
+                    return raiseExceptionAndReturn(jniEnv, -1, "Failed to read from socket, error code is ", errno);
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                bool truncated = (messages[i].msg_hdr.msg_flags & MSG_TRUNC) != 0;
+                table[i * 2] = static_cast<jint>(tableSize + static_cast<jlong>(i) * maxMessageSize);
+                table[i * 2 + 1] = truncated ? -1 : static_cast<jint>(messages[i].msg_len);
+            }
+            return n;
+#else
+            // recvmmsg is not available, so we fallback to reading the messages one by one
+            jint n = 0;
+            while (n < maxMessages) {
+                iovec iov = {};
+                iov.iov_base = slots + static_cast<size_t>(n) * maxMessageSize;
+                iov.iov_len = maxMessageSize;
+                msghdr message = {};
+                message.msg_iov = &iov;
+                message.msg_iovlen = 1;
+                auto received = recvmsg(state->socketFd, &message, 0);
+                if (received == -1) {
+                    if(errno == EAGAIN || errno == EWOULDBLOCK) {
+                        break; //no more data to read available
+                    } else if (n > 0) {
+                        // like recvmmsg, return the messages read so far and report the error next time
+                        state->pendingReadError = errno;
+                        break;
+                    } else {
+                        return raiseExceptionAndReturn(jniEnv, -1, "Failed to read from socket, error code is ", errno);
+                    }
+                }
+                bool truncated = (message.msg_flags & MSG_TRUNC) != 0;
+                table[n * 2] = static_cast<jint>(tableSize + static_cast<jlong>(n) * maxMessageSize);
+                table[n * 2 + 1] = truncated ? -1 : static_cast<jint>(received);
+                n++;
+            }
+            return n;
+#endif
+        }
+
+        jint ProfilerSocket::awaitMessages(JNIEnv* jniEnv, jlong timeoutMillis) {
+            std::shared_ptr<State> currentState;
+            {
+                std::lock_guard<std::mutex> guard(mutex);
+                currentState = state;
+            }
+            if (currentState == nullptr) {
+                return raiseExceptionAndReturn(jniEnv, -1, "Profiler socket has not been opened yet!");
+            }
+
+            // We intentionally do not hold the mutex while blocking, so that messages can be read
+            // and the socket can be closed concurrently
+            pollfd fds[2] = {};
+            fds[0].fd = currentState->socketFd;
+            fds[0].events = POLLIN;
+            fds[1].fd = currentState->wakeupReadFd;
+            fds[1].events = POLLIN;
+
+            int timeout = timeoutMillis < 0 ? -1 : static_cast<int>(std::min<jlong>(timeoutMillis, INT_MAX));
+            int n = poll(fds, 2, timeout);
+            if (n == -1) {
+                if (errno == EINTR) {
+                    return 0;
+                }
+                return raiseExceptionAndReturn(jniEnv, -1, "Failed to poll socket, error code is ", errno);
+            }
+            if ((fds[1].revents & POLLIN) != 0) {
+                uint8_t drain[64];
+                while (read(currentState->wakeupReadFd, drain, sizeof(drain)) > 0) {
+                }
+            }
+            return (fds[0].revents & POLLIN) != 0 ? 1 : 0;
+        }
+
+        ReturnCode ProfilerSocket::wakeup(JNIEnv* jniEnv) {
+            std::lock_guard<std::mutex> guard(mutex);
+            if (state == nullptr) {
+                return raiseExceptionAndReturn(jniEnv, ReturnCode::ERROR, "Profiler socket has not been opened yet!");
+            }
+            state->wakeup();
+            return ReturnCode::SUCCESS;
+        }
+
         ReturnCode ProfilerSocket::writeMessage(JNIEnv* jniEnv, jbyteArray message) {
             std::lock_guard<std::mutex> guard(mutex);
             if (state == nullptr) {
@@ -17,16 +17,27 @@ namespace elastic {
                     public:
                     int socketFd;
                     std::string socketFilePath;
+                    // self-pipe used to interrupt threads blocked in awaitMessages
+                    int wakeupReadFd;
+                    int wakeupWriteFd;
+                    // error of a batch read which already returned messages, reported by the next read
+                    int pendingReadError;
 
-                    State(int fileDescriptor) : socketFd(fileDescriptor), socketFilePath("") {};
+                    State(int fileDescriptor) : socketFd(fileDescriptor), socketFilePath(""), wakeupReadFd(-1), wakeupWriteFd(-1), pendingReadError(0) {};
                     State(State&) = delete;
                     ~State();
 
                     [[nodiscard]] ReturnCode bindToPath(JNIEnv* jniEnv, jstring filepath);
+                    [[nodiscard]] ReturnCode createWakeupPipe(JNIEnv* jniEnv);
+                    void wakeup();
                 };
 
                 std::mutex mutex;
-                std::unique_ptr<State> state;
+                // shared, so that threads blocked in awaitMessages keep the file descriptors alive
+                // even if the socket is closed concurrently
+                std::shared_ptr<State> state;
+
+                static constexpr jint MAX_BATCH_SIZE = 256;
 
             public:
 
@@ -35,6 +46,9 @@ namespace elastic {
                 void destroy();
 
                 [[nodiscard]] jint readMessage(JNIEnv* jniEnv, jobject outputBuffer);
+                [[nodiscard]] jint readMessageBatch(JNIEnv* jniEnv, jobject outputBuffer, jint maxMessages, jint maxMessageSize);
+                [[nodiscard]] jint awaitMessages(JNIEnv* jniEnv, jlong timeoutMillis);
+                [[nodiscard]] ReturnCode wakeup(JNIEnv* jniEnv);
                 [[nodiscard]] ReturnCode writeMessage(JNIEnv* jniEnv, jbyteArray message);
             };
     }
@@ -463,6 +463,89 @@ public class UniversalProfilingCorrelationTest {
       assertThat(UniversalProfilingCorrelation.readProfilerReturnChannelMessage()).isNull();
     }
 
+    @Test
+    public void receiveMessageBatch(@TempDir Path tempDir) throws Exception {
+      String socketFile = tempDir.resolve("socketfile").toAbsolutePath().toString();
+      UniversalProfilingCorrelation.startProfilerReturnChannel(socketFile);
+
+      ProfilerMessageBatch batch = new ProfilerMessageBatch(2, 16);
+      assertThat(UniversalProfilingCorrelation.readProfilerReturnChannelMessages(batch)).isFalse();
+      assertThat(batch.hasNext()).isFalse();
+
+      for (int i = 1; i <= 3; i++) {
+        ByteBuffer dummyMessage = ByteBuffer.allocate(4);
+        dummyMessage.order(ByteOrder.nativeOrder());
+        dummyMessage.putShort((short) (100 + i)); // message-type
+        dummyMessage.putShort((short) 1); // message-version
+        JvmtiAccessImpl.sendToProfilerReturnChannelSocket0(dummyMessage.array());
+      }
+
+      assertThat(UniversalProfilingCorrelation.readProfilerReturnChannelMessages(batch)).isTrue();
+      assertThat(batch.size()).isEqualTo(2);
+      assertThat(((UnknownMessage) batch.next()).getMessageType()).isEqualTo(101);
+      assertThat(((UnknownMessage) batch.next()).getMessageType()).isEqualTo(102);
+      assertThat(batch.hasNext()).isFalse();
+
+      assertThat(UniversalProfilingCorrelation.readProfilerReturnChannelMessages(batch)).isTrue();
+      assertThat(batch.size()).isEqualTo(1);
+      assertThat(((UnknownMessage) batch.next()).getMessageType()).isEqualTo(103);
+      assertThat(batch.hasNext()).isFalse();
+
+      assertThat(UniversalProfilingCorrelation.readProfilerReturnChannelMessages(batch)).isFalse();
+    }
+
+    @Test
+    public void decodeTruncatedMessageInBatch(@TempDir Path tempDir) throws Exception {
+      String socketFile = tempDir.resolve("socketfile").toAbsolutePath().toString();
+      UniversalProfilingCorrelation.startProfilerReturnChannel(socketFile);
+
+      ByteBuffer truncated = ByteBuffer.allocate(8);
+      truncated.order(ByteOrder.nativeOrder());
+      truncated.putShort((short) 1); // message-type
+      truncated.putShort((short) 1); // message-version
+      truncated.put(new byte[] {1, 2, 3, 4});
+      JvmtiAccessImpl.sendToProfilerReturnChannelSocket0(truncated.array());
+
+      ByteBuffer unknown = ByteBuffer.allocate(4);
+      unknown.order(ByteOrder.nativeOrder());
+      unknown.putShort((short) 42); // message-type
+      unknown.putShort((short) 1); // message-version
+      JvmtiAccessImpl.sendToProfilerReturnChannelSocket0(unknown.array());
+
+      ProfilerMessageBatch batch = new ProfilerMessageBatch(16, 64);
+      assertThat(UniversalProfilingCorrelation.readProfilerReturnChannelMessages(batch)).isTrue();
+      assertThatThrownBy(batch::next).isInstanceOf(DecodeException.class);
+      assertThat(((UnknownMessage) batch.next()).getMessageType()).isEqualTo(42);
+      assertThat(batch.hasNext()).isFalse();
+    }
+
+    @Test
+    public void skipOversizedMessageInBatch(@TempDir Path tempDir) throws Exception {
+      String socketFile = tempDir.resolve("socketfile").toAbsolutePath().toString();
+      UniversalProfilingCorrelation.startProfilerReturnChannel(socketFile);
+
+      ByteBuffer oversized = ByteBuffer.allocate(32);
+      oversized.order(ByteOrder.nativeOrder());
+      oversized.putShort((short) 41); // message-type
+      oversized.putShort((short) 1); // message-version
+      JvmtiAccessImpl.sendToProfilerReturnChannelSocket0(oversized.array());
+
+      ByteBuffer unknown = ByteBuffer.allocate(4);
+      unknown.order(ByteOrder.nativeOrder());
+      unknown.putShort((short) 42); // message-type
+      unknown.putShort((short) 1); // message-version
+      JvmtiAccessImpl.sendToProfilerReturnChannelSocket0(unknown.array());
+
+      ProfilerMessageBatch batch = new ProfilerMessageBatch(16, 16);
+      assertThat(UniversalProfilingCorrelation.readProfilerReturnChannelMessages(batch)).isTrue();
+      assertThat(batch.size()).isEqualTo(2);
+      assertThatThrownBy(batch::next)
+          .isInstanceOf(DecodeException.class)
+          .hasMessageContaining("maximum size of 16 bytes");
+      assertThat(((UnknownMessage) batch.next()).getMessageType()).isEqualTo(42);
+      assertThat(batch.hasNext()).isFalse();
+    }
+
     private ByteBuffer createDirectBuffer(int size) {
       ByteBuffer result = ByteBuffer.allocateDirect(size);
       result.order(ByteOrder.nativeOrder());
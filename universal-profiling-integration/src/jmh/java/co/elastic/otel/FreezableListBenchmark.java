@@ -0,0 +1,138 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel;
+
+import co.elastic.otel.disruptor.FreezableList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the lock-free {@link FreezableList} against the previous, fully synchronized
+ * implementation: Several threads attach samples to the list of a span while another thread
+ * concurrently freezes the list, just like it happens when a span is exported.
+ */
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+public class FreezableListBenchmark {
+
+  private static final String SAMPLE = "stacktrace";
+
+  @Benchmark
+  @Group("correlateAndFreeze")
+  @GroupThreads(3)
+  public boolean correlate(ListState state) {
+    return state.current.addIfNotFrozen(SAMPLE);
+  }
+
+  @Benchmark
+  @Group("correlateAndFreeze")
+  @GroupThreads(1)
+  public void freeze(ListState state, Blackhole bh) {
+    Freezable list = state.current;
+    state.current = state.newList();
+    bh.consume(list.freezeAndGet());
+  }
+
+  @Benchmark
+  public boolean uncontendedCorrelate(ListState state) {
+    Freezable list = state.current;
+    boolean added = list.addIfNotFrozen(SAMPLE);
+    if (state.addedSinceFreeze++ == 1024) {
+      state.addedSinceFreeze = 0;
+      list.freezeAndGet();
+      state.current = state.newList();
+    }
+    return added;
+  }
+
+  @State(Scope.Group)
+  public static class ListState {
+
+    @Param({"lockFree", "synchronized"})
+    String implementation;
+
+    volatile Freezable current;
+
+    int addedSinceFreeze;
+
+    @Setup
+    public void init() {
+      current = newList();
+    }
+
+    Freezable newList() {
+      if (implementation.equals("lockFree")) {
+        FreezableList<String> list = new FreezableList<>();
+        return new Freezable() {
+          @Override
+          public boolean addIfNotFrozen(String value) {
+            return list.addIfNotFrozen(value);
+          }
+
+          @Override
+          public List<String> freezeAndGet() {
+            return list.freezeAndGet();
+          }
+        };
+      } else {
+        return new SynchronizedFreezableList();
+      }
+    }
+  }
+
+  interface Freezable {
+    boolean addIfNotFrozen(String value);
+
+    List<String> freezeAndGet();
+  }
+
+  /** The implementation of {@link FreezableList} prior to it becoming lock-free. */
+  private static class SynchronizedFreezableList implements Freezable {
+
+    private final List<String> list = new ArrayList<>();
+    private boolean isFrozen = false;
+
+    @Override
+    public synchronized boolean addIfNotFrozen(String value) {
+      if (isFrozen) {
+        return false;
+      }
+      list.add(value);
+      return true;
+    }
+
+    @Override
+    public synchronized List<String> freezeAndGet() {
+      isFrozen = true;
+      return list;
+    }
+  }
+}
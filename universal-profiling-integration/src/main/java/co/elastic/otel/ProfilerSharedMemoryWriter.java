@@ -19,6 +19,7 @@
 package co.elastic.otel;
 
 import co.elastic.otel.common.LocalRootSpan;
+import co.elastic.otel.common.SpanValue;
 import co.elastic.otel.common.util.HexUtils;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.SpanContext;
@@ -46,6 +47,12 @@ public class ProfilerSharedMemoryWriter {
 
   private static volatile int writeForMemoryBarrier = 0;
 
+  /**
+   * The binary representation of the ids of a span, in the exact layout used for the thread
+   * storage. Computed once per span, so that the hex decoding doesn't happen on every activation.
+   */
+  private static final SpanValue<BinaryIds> binaryIds = SpanValue.createDense();
+
   static ByteBuffer generateProcessCorrelationStorage(
       Resource serviceResource, String socketFilePath) {
     String serviceName = serviceResource.getAttribute(ResourceAttributes.SERVICE_NAME);
@@ -93,25 +100,29 @@ public class ProfilerSharedMemoryWriter {
     ByteBuffer tls = UniversalProfilingCorrelation.getCurrentThreadStorage(true, TLS_STORAGE_SIZE);
     // tls might be null if unsupported or something went wrong on initialization
     if (tls != null) {
-      // the valid flag is used to signal the host-agent that it is reading incomplete data
-      tls.put(TLS_VALID_OFFSET, (byte) 0);
-      memoryStoreStoreBarrier();
-      tls.putChar(TLS_MINOR_VERSION_OFFSET, (char) 1);
-
+      BinaryIds ids = null;
       SpanContext spanCtx = newSpan.getSpanContext();
       if (spanCtx.isValid() && !spanCtx.isRemote()) {
-        ReadableSpan localRoot = LocalRootSpan.getFor(newSpan);
-        if (localRoot != null) {
-          String localRootSpanId = localRoot.getSpanContext().getSpanId();
-          tls.put(TLS_TRACE_PRESENT_OFFSET, (byte) 1);
-          tls.put(TLS_TRACE_FLAGS_OFFSET, spanCtx.getTraceFlags().asByte());
-          HexUtils.writeHexAsBinary(spanCtx.getTraceId(), 0, tls, TLS_TRACE_ID_OFFSET, 16);
-          HexUtils.writeHexAsBinary(spanCtx.getSpanId(), 0, tls, TLS_SPAN_ID_OFFSET, 8);
-          HexUtils.writeHexAsBinary(localRootSpanId, 0, tls, TLS_LOCAL_ROOT_SPAN_ID_OFFSET, 8);
-        } else {
-          tls.put(TLS_TRACE_PRESENT_OFFSET, (byte) 0);
+        ids = binaryIds.computeIfNull(newSpan, () -> BinaryIds.create(newSpan));
+        if (ids == BinaryIds.UNKNOWN_LOCAL_ROOT) {
           log.log(Level.WARNING, "Cannot propagate trace with unknown local root: {0}", newSpan);
+          ids = null;
         }
+      }
+      // The storage is only ever written by its owning thread, so it serves as cache of the last
+      // written values: Activations of spans often only differ in some fields (e.g. the span-id),
+      // so we skip writing the fields which are already up-to-date
+      if (ids == null ? isUpToDateWithoutTrace(tls) : ids.isUpToDate(tls)) {
+        return;
+      }
+
+      // the valid flag is used to signal the host-agent that it is reading incomplete data
+      tls.put(TLS_VALID_OFFSET, (byte) 0);
+      memoryStoreStoreBarrier();
+      tls.putChar(TLS_MINOR_VERSION_OFFSET, (char) 1);
+      if (ids != null) {
+        tls.put(TLS_TRACE_PRESENT_OFFSET, (byte) 1);
+        ids.writeChangedFields(tls);
       } else {
         tls.put(TLS_TRACE_PRESENT_OFFSET, (byte) 0);
       }
@@ -119,4 +130,80 @@ public class ProfilerSharedMemoryWriter {
       tls.put(TLS_VALID_OFFSET, (byte) 1);
     }
   }
+
+  private static boolean isUpToDateWithoutTrace(ByteBuffer tls) {
+    return tls.get(TLS_VALID_OFFSET) == 1 && tls.get(TLS_TRACE_PRESENT_OFFSET) == 0;
+  }
+
+  private static final class BinaryIds {
+
+    /** Marker for spans for which the local root is not known. */
+    static final BinaryIds UNKNOWN_LOCAL_ROOT = new BinaryIds(0, 0, 0, 0, (byte) 0);
+
+    // all ids are stored as they would be read from the thread storage with its native byte order
+    private final long traceIdFirstHalf;
+    private final long traceIdSecondHalf;
+    private final long spanId;
+    private final long localRootSpanId;
+    private final byte traceFlags;
+
+    private BinaryIds(
+        long traceIdFirstHalf,
+        long traceIdSecondHalf,
+        long spanId,
+        long localRootSpanId,
+        byte traceFlags) {
+      this.traceIdFirstHalf = traceIdFirstHalf;
+      this.traceIdSecondHalf = traceIdSecondHalf;
+      this.spanId = spanId;
+      this.localRootSpanId = localRootSpanId;
+      this.traceFlags = traceFlags;
+    }
+
+    static BinaryIds create(Span span) {
+      ReadableSpan localRoot = LocalRootSpan.getFor(span);
+      if (localRoot == null) {
+        return UNKNOWN_LOCAL_ROOT;
+      }
+      SpanContext spanCtx = span.getSpanContext();
+      ByteBuffer buffer = ByteBuffer.allocate(32).order(ByteOrder.nativeOrder());
+      HexUtils.writeHexAsBinary(spanCtx.getTraceId(), 0, buffer, 0, 16);
+      HexUtils.writeHexAsBinary(spanCtx.getSpanId(), 0, buffer, 16, 8);
+      HexUtils.writeHexAsBinary(localRoot.getSpanContext().getSpanId(), 0, buffer, 24, 8);
+      return new BinaryIds(
+          buffer.getLong(0),
+          buffer.getLong(8),
+          buffer.getLong(16),
+          buffer.getLong(24),
+          spanCtx.getTraceFlags().asByte());
+    }
+
+    boolean isUpToDate(ByteBuffer tls) {
+      return tls.get(TLS_VALID_OFFSET) == 1
+          && tls.get(TLS_TRACE_PRESENT_OFFSET) == 1
+          && tls.getLong(TLS_SPAN_ID_OFFSET) == spanId
+          && tls.getLong(TLS_LOCAL_ROOT_SPAN_ID_OFFSET) == localRootSpanId
+          && tls.getLong(TLS_TRACE_ID_OFFSET) == traceIdFirstHalf
+          && tls.getLong(TLS_TRACE_ID_OFFSET + 8) == traceIdSecondHalf
+          && tls.get(TLS_TRACE_FLAGS_OFFSET) == traceFlags;
+    }
+
+    void writeChangedFields(ByteBuffer tls) {
+      if (tls.get(TLS_TRACE_FLAGS_OFFSET) != traceFlags) {
+        tls.put(TLS_TRACE_FLAGS_OFFSET, traceFlags);
+      }
+      if (tls.getLong(TLS_TRACE_ID_OFFSET) != traceIdFirstHalf) {
+        tls.putLong(TLS_TRACE_ID_OFFSET, traceIdFirstHalf);
+      }
+      if (tls.getLong(TLS_TRACE_ID_OFFSET + 8) != traceIdSecondHalf) {
+        tls.putLong(TLS_TRACE_ID_OFFSET + 8, traceIdSecondHalf);
+      }
+      if (tls.getLong(TLS_SPAN_ID_OFFSET) != spanId) {
+        tls.putLong(TLS_SPAN_ID_OFFSET, spanId);
+      }
+      if (tls.getLong(TLS_LOCAL_ROOT_SPAN_ID_OFFSET) != localRootSpanId) {
+        tls.putLong(TLS_LOCAL_ROOT_SPAN_ID_OFFSET, localRootSpanId);
+      }
+    }
+  }
 }
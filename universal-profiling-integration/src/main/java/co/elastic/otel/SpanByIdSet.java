@@ -18,6 +18,7 @@
  */
 package co.elastic.otel;
 
+import co.elastic.otel.common.util.HexUtils;
 import io.opentelemetry.api.trace.SpanContext;
 import io.opentelemetry.sdk.trace.ReadableSpan;
 import java.lang.ref.Reference;
@@ -27,25 +28,36 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.Nullable;
 
+/**
+ * Set of weakly referenced spans, which can be looked up by their binary trace-id and span-id. The
+ * ids are stored as three longs instead of hex strings, so that lookups based on the raw bytes
+ * received from the profiler do not need to allocate.
+ */
 public class SpanByIdSet {
 
   /**
    * The value of an entry is always the same as the key in this map (=it is a set). We just use a
    * map to allow a lookup of the original {@link WeakSpanWithId} via a {@link LookupKey}. While the
-   * key type of this map is {@link TraceIdKeyed}, it only stores {@link WeakSpanWithId}s.
+   * key type of this map is {@link BinaryIdKeyed}, it only stores {@link WeakSpanWithId}s.
    */
-  private final Map<TraceIdKeyed, WeakSpanWithId> spansById = new ConcurrentHashMap<>();
+  private final Map<BinaryIdKeyed, WeakSpanWithId> spansById = new ConcurrentHashMap<>();
 
   private final ReferenceQueue<ReadableSpan> collectedSpansQueue = new ReferenceQueue<>();
 
+  /**
+   * Reused for all lookups performed via {@link #get(byte[], byte[])} to avoid allocations, guarded
+   * by synchronizing on itself.
+   */
+  private final LookupKey reusableLookupKey = new LookupKey();
+
   public void add(ReadableSpan span) {
     WeakSpanWithId wrapper = new WeakSpanWithId(span, collectedSpansQueue);
     spansById.putIfAbsent(wrapper, wrapper);
   }
 
   public void remove(ReadableSpan span) {
-    SpanContext ctx = span.getSpanContext();
-    LookupKey key = new LookupKey(ctx.getTraceId(), ctx.getSpanId());
+    LookupKey key = new LookupKey();
+    key.set(span.getSpanContext());
     spansById.remove(key);
   }
 
@@ -57,9 +69,27 @@ public class SpanByIdSet {
     }
   }
 
+  /**
+   * Looks up a span by its binary ids without performing any allocations.
+   *
+   * @param traceId the 16 byte binary trace id
+   * @param spanId the 8 byte binary span id
+   * @return the span if it is contained in this set and has not been garbage collected yet
+   */
+  @Nullable
+  public ReadableSpan get(byte[] traceId, byte[] spanId) {
+    WeakSpanWithId result;
+    synchronized (reusableLookupKey) {
+      reusableLookupKey.set(traceId, spanId);
+      result = spansById.get(reusableLookupKey);
+    }
+    return result != null ? result.get() : null;
+  }
+
   @Nullable
   public ReadableSpan get(String traceId, String spanId) {
-    LookupKey key = new LookupKey(traceId, spanId);
+    LookupKey key = new LookupKey();
+    key.set(traceId, spanId);
     WeakSpanWithId result = spansById.get(key);
     return result != null ? result.get() : null;
   }
@@ -69,104 +99,121 @@ public class SpanByIdSet {
     return spansById.size();
   }
 
-  private interface TraceIdKeyed {
+  private interface BinaryIdKeyed {
 
-    String getTraceId();
+    long getTraceIdHigh();
 
-    String getSpanId();
-
-    static boolean equals(TraceIdKeyed self, Object o) {
-      if (!(o instanceof TraceIdKeyed)) {
-        return false;
-      }
+    long getTraceIdLow();
 
-      TraceIdKeyed that = (TraceIdKeyed) o;
+    long getSpanId();
 
-      if (!self.getTraceId().equals(that.getTraceId())) {
+    static boolean equals(BinaryIdKeyed self, Object o) {
+      if (!(o instanceof BinaryIdKeyed)) {
         return false;
       }
-      return self.getSpanId().equals(that.getSpanId());
+      BinaryIdKeyed that = (BinaryIdKeyed) o;
+      return self.getSpanId() == that.getSpanId()
+          && self.getTraceIdLow() == that.getTraceIdLow()
+          && self.getTraceIdHigh() == that.getTraceIdHigh();
     }
 
-    static int hashCode(TraceIdKeyed self) {
-      int result = self.getTraceId().hashCode();
-      result = 31 * result + self.getSpanId().hashCode();
-      return result;
+    static int hashCode(BinaryIdKeyed self) {
+      // the ids are random, so mixing the bits of the lower trace-id half and the span-id is enough
+      long hash = self.getTraceIdLow() * 31 + self.getSpanId();
+      return (int) (hash ^ (hash >>> 32));
     }
   }
 
-  private static class WeakSpanWithId extends WeakReference<ReadableSpan> implements TraceIdKeyed {
-    private final String traceId;
-    private final String spanId;
+  private static class WeakSpanWithId extends WeakReference<ReadableSpan> implements BinaryIdKeyed {
+    private final long traceIdHigh;
+    private final long traceIdLow;
+    private final long spanId;
 
     WeakSpanWithId(ReadableSpan span, ReferenceQueue<ReadableSpan> refQueue) {
       super(span, refQueue);
       SpanContext ctx = span.getSpanContext();
-      traceId = ctx.getTraceId();
-      spanId = ctx.getSpanId();
-      assertLowerCase(traceId);
-      assertLowerCase(spanId);
+      String traceId = ctx.getTraceId();
+      traceIdHigh = HexUtils.hexToLong(traceId, 0);
+      traceIdLow = HexUtils.hexToLong(traceId, 16);
+      spanId = HexUtils.hexToLong(ctx.getSpanId(), 0);
     }
 
     @Override
     public boolean equals(Object o) {
-      return TraceIdKeyed.equals(this, o);
+      return BinaryIdKeyed.equals(this, o);
     }
 
     @Override
     public int hashCode() {
-      return TraceIdKeyed.hashCode(this);
+      return BinaryIdKeyed.hashCode(this);
     }
 
     @Override
-    public String getTraceId() {
-      return traceId;
+    public long getTraceIdHigh() {
+      return traceIdHigh;
     }
 
     @Override
-    public String getSpanId() {
+    public long getTraceIdLow() {
+      return traceIdLow;
+    }
+
+    @Override
+    public long getSpanId() {
       return spanId;
     }
   }
 
-  private static class LookupKey implements TraceIdKeyed {
-    private final String traceId;
-    private final String spanId;
+  private static class LookupKey implements BinaryIdKeyed {
+    private long traceIdHigh;
+    private long traceIdLow;
+    private long spanId;
+
+    void set(SpanContext ctx) {
+      set(ctx.getTraceId(), ctx.getSpanId());
+    }
+
+    void set(String traceId, String spanId) {
+      traceIdHigh = HexUtils.hexToLong(traceId, 0);
+      traceIdLow = HexUtils.hexToLong(traceId, 16);
+      this.spanId = HexUtils.hexToLong(spanId, 0);
+    }
 
-    public LookupKey(String traceId, String spanId) {
-      this.traceId = traceId;
-      this.spanId = spanId;
-      assertLowerCase(traceId);
-      assertLowerCase(spanId);
+    void set(byte[] traceId, byte[] spanId) {
+      if (traceId.length != 16) {
+        throw new IllegalArgumentException("Expected trace-id to be 16 bytes long");
+      }
+      if (spanId.length != 8) {
+        throw new IllegalArgumentException("Expected span-id to be 8 bytes long");
+      }
+      traceIdHigh = HexUtils.bytesToLong(traceId, 0);
+      traceIdLow = HexUtils.bytesToLong(traceId, 8);
+      this.spanId = HexUtils.bytesToLong(spanId, 0);
     }
 
     @Override
     public boolean equals(Object o) {
-      return TraceIdKeyed.equals(this, o);
+      return BinaryIdKeyed.equals(this, o);
     }
 
     @Override
     public int hashCode() {
-      return TraceIdKeyed.hashCode(this);
+      return BinaryIdKeyed.hashCode(this);
     }
 
     @Override
-    public String getTraceId() {
-      return traceId;
+    public long getTraceIdHigh() {
+      return traceIdHigh;
     }
 
     @Override
-    public String getSpanId() {
-      return spanId;
+    public long getTraceIdLow() {
+      return traceIdLow;
     }
-  }
 
-  private static void assertLowerCase(String str) {
-    for (int i = 0; i < str.length(); i++) {
-      char c = str.charAt(i);
-      if (Character.isAlphabetic(c) && !Character.isLowerCase(c)) {
-        throw new IllegalArgumentException("Expected string to be lower case: " + str);
-      }
+    @Override
+    public long getSpanId() {
+      return spanId;
     }
   }
 }
@@ -22,7 +22,6 @@ import co.elastic.otel.common.ElasticAttributes;
 import co.elastic.otel.common.LocalRootSpan;
 import co.elastic.otel.common.MutableSpan;
 import co.elastic.otel.common.SpanValue;
-import co.elastic.otel.disruptor.FreezableList;
 import co.elastic.otel.disruptor.MoveableEvent;
 import co.elastic.otel.disruptor.PeekingPoller;
 import com.lmax.disruptor.EventPoller;
@@ -30,7 +29,18 @@ import com.lmax.disruptor.RingBuffer;
 import com.lmax.disruptor.YieldingWaitStrategy;
 import io.opentelemetry.context.Context;
 import io.opentelemetry.sdk.trace.ReadableSpan;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.LongSupplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -41,9 +51,17 @@ public class SpanProfilingSamplesCorrelator {
   private static final Logger logger =
       Logger.getLogger(SpanProfilingSamplesCorrelator.class.getName());
 
-  private static final SpanValue<FreezableList<String>> profilerStackTraceIds =
+  private static final SpanValue<StackTraceIdMultiset> profilerStackTraceIds =
       SpanValue.createSparse();
 
+  /** The maximum number of encoded stack trace ids to cache before the cache is cleared. */
+  private static final int MAX_ENCODED_STACK_TRACE_IDS = 4096;
+
+  private final Map<StackTraceIdMultiset.StackTraceId, String> encodedStackTraceIds =
+      new ConcurrentHashMap<>();
+  private final Function<StackTraceIdMultiset.StackTraceId, String> stackTraceIdEncoder =
+      this::encodeStackTraceId;
+
   private final SpanByIdSet spansById = new SpanByIdSet();
 
   private final Consumer<ReadableSpan> sendSpan;
@@ -54,13 +72,59 @@ public class SpanProfilingSamplesCorrelator {
   final RingBuffer<DelayedSpan> delayedSpans;
   private final PeekingPoller<DelayedSpan> delayedSpansPoller;
 
+  /**
+   * Spans are moved from the ring buffer into this wheel by the flushing thread, so that every span
+   * is sent exactly when its own deadline has passed. Only accessed while holding the monitor of
+   * this correlator.
+   */
+  private final TimerWheel<ReadableSpan> pendingSpans;
+
+  /**
+   * The number of spans currently held in the ring buffer, the timer wheel and the overflow buffer
+   * together. A span reserves its slot before it is published and releases it when it is sent, so
+   * that all three never hold more than the configured buffer and overflow buffer sizes combined.
+   */
+  private final AtomicInteger bufferedSpans = new AtomicInteger();
+
+  private final int maxBufferedSpans;
+
+  /**
+   * Optional secondary buffer for spans which do not fit into the ring buffer anymore, e.g. during
+   * traffic spikes. In contrast to the ring buffer, memory is only used while spans are actually
+   * stored in it.
+   */
+  private final Queue<DelayedSpan> overflowSpans = new ConcurrentLinkedQueue<>();
+
+  private final int overflowCapacity;
+  private final AtomicInteger overflowSize = new AtomicInteger();
+  private final TimerWheel.ExpirationHandler<ReadableSpan> sendDelayedSpan = this::sendDelayedSpan;
+
+  private final LongAdder delayedSpanCount = new LongAdder();
+  private final LongAdder totalActualDelayNanos = new LongAdder();
+  private final LongAdder totalTargetDelayNanos = new LongAdder();
+  private final AtomicLong maxDelayOvershootNanos = new AtomicLong();
+  private final LongAdder overflowedSpanCount = new LongAdder();
+  private final LongAdder bufferFullSpanCount = new LongAdder();
+  private final LongAdder correlatedSpanCount = new LongAdder();
+  private final LongAdder attachedStackTraceIdCount = new LongAdder();
+
+  private static final long BUFFER_FULL_WARNING_INTERVAL_NANOS = Duration.ofMinutes(1).toNanos();
+  private static final long NO_WARNING_LOGGED = Long.MIN_VALUE;
+  private final AtomicLong lastBufferFullWarningNanos = new AtomicLong(NO_WARNING_LOGGED);
+
+  /** Returned by {@link #flushPendingBufferedSpans()} if no spans are buffered anymore. */
+  public static final long NO_PENDING_SPANS = -1L;
+
   private volatile long spanBufferDurationNanos;
   private volatile boolean shuttingDown = false;
 
+  private volatile Runnable bufferedSpanListener = null;
+
   private final WriterReaderPhaser shutdownPhaser = new WriterReaderPhaser();
 
   public SpanProfilingSamplesCorrelator(
       int bufferCapacity,
+      int overflowCapacity,
       LongSupplier nanoClock,
       long initialSpanDelayNanos,
       Consumer<ReadableSpan> sendSpan) {
@@ -78,6 +142,10 @@ public class SpanProfilingSamplesCorrelator {
     delayedSpans.addGatingSequences(nonPeekingPoller.getSequence());
 
     delayedSpansPoller = new PeekingPoller<>(nonPeekingPoller, DelayedSpan::new);
+
+    this.overflowCapacity = overflowCapacity;
+    maxBufferedSpans = bufferCapacity + overflowCapacity;
+    pendingSpans = new TimerWheel<>(nanoClock.getAsLong());
   }
 
   public void setSpanBufferDurationNanos(long nanos) {
@@ -109,55 +177,287 @@ public class SpanProfilingSamplesCorrelator {
         return;
       }
 
-      boolean couldPublish =
-          delayedSpans.tryPublishEvent(
-              (event, idx, sp, timestamp) -> {
-                event.span = sp;
-                event.endNanoTimestamp = timestamp;
-              },
-              span,
-              nanoClock.getAsLong());
+      long endTimestamp = nanoClock.getAsLong();
+      long deadline = endTimestamp + spanBufferDurationNanos;
+      boolean couldPublish = tryReserveBufferSlot();
+      if (couldPublish) {
+        couldPublish =
+            delayedSpans.tryPublishEvent(
+                (event, idx, sp, timestamp, deadlineTimestamp) -> {
+                  event.span = sp;
+                  event.endNanoTimestamp = timestamp;
+                  event.deadlineNanoTimestamp = deadlineTimestamp;
+                },
+                span,
+                endTimestamp,
+                deadline);
+        if (!couldPublish) {
+          couldPublish = tryAddToOverflow(span, endTimestamp, deadline);
+        }
+        if (!couldPublish) {
+          bufferedSpans.decrementAndGet();
+        }
+      }
 
       if (!couldPublish) {
-        logger.log(
-            Level.WARNING,
-            "The following span could not be delayed for correlation due to a full buffer, it will be sent immediately, {0}",
-            span);
+        onBufferFull(endTimestamp);
         correlateAndSendSpan(span);
+      } else {
+        Runnable listener = bufferedSpanListener;
+        if (listener != null) {
+          bufferedSpanListener = null;
+          listener.run();
+        }
       }
     } finally {
       shutdownPhaser.writerCriticalSectionExit(criticalPhaseVal);
     }
   }
 
-  public void correlate(
-      String traceId, String localRootSpanId, CharSequence stackTraceId, int count) {
+  private boolean tryReserveBufferSlot() {
+    int count;
+    do {
+      count = bufferedSpans.get();
+      if (count >= maxBufferedSpans) {
+        return false;
+      }
+    } while (!bufferedSpans.compareAndSet(count, count + 1));
+    return true;
+  }
+
+  private boolean tryAddToOverflow(ReadableSpan span, long endTimestamp, long deadline) {
+    if (overflowCapacity == 0) {
+      return false;
+    }
+    int size;
+    do {
+      size = overflowSize.get();
+      if (size >= overflowCapacity) {
+        return false;
+      }
+    } while (!overflowSize.compareAndSet(size, size + 1));
+
+    DelayedSpan overflowed = new DelayedSpan();
+    overflowed.span = span;
+    overflowed.endNanoTimestamp = endTimestamp;
+    overflowed.deadlineNanoTimestamp = deadline;
+    overflowSpans.add(overflowed);
+    overflowedSpanCount.increment();
+    return true;
+  }
+
+  private void onBufferFull(long nowNanos) {
+    bufferFullSpanCount.increment();
+    long lastWarning = lastBufferFullWarningNanos.get();
+    boolean warningDue =
+        lastWarning == NO_WARNING_LOGGED
+            || nowNanos - lastWarning >= BUFFER_FULL_WARNING_INTERVAL_NANOS;
+    if (warningDue && lastBufferFullWarningNanos.compareAndSet(lastWarning, nowNanos)) {
+      logger.log(
+          Level.WARNING,
+          "Spans could not be delayed for correlation due to a full buffer and were sent"
+              + " immediately with possibly incomplete profiling data, consider increasing the"
+              + " buffer size. Total number of affected spans so far: {0}",
+          bufferFullSpanCount.sum());
+    }
+  }
+
+  public void correlate(byte[] traceId, byte[] localRootSpanId, byte[] stackTraceId, int count) {
     ReadableSpan span = spansById.get(traceId, localRootSpanId);
     if (span != null) {
-      FreezableList<String> list = profilerStackTraceIds.computeIfNull(span, FreezableList::new);
-      String stId = stackTraceId.toString();
-      for (int i = 0; i < count; i++) {
-        list.addIfNotFrozen(stId);
+      profilerStackTraceIds
+          .computeIfNull(span, StackTraceIdMultiset::new)
+          .addIfNotFrozen(stackTraceId, count);
+    }
+  }
+
+  private String encodeStackTraceId(StackTraceIdMultiset.StackTraceId id) {
+    String encoded = encodedStackTraceIds.get(id);
+    if (encoded == null) {
+      encoded = Base64.getUrlEncoder().withoutPadding().encodeToString(id.toBytes());
+      if (encodedStackTraceIds.size() >= MAX_ENCODED_STACK_TRACE_IDS) {
+        encodedStackTraceIds.clear();
       }
+      encodedStackTraceIds.put(id, encoded);
     }
+    return encoded;
+  }
+
+  /**
+   * Registers a callback to be invoked once the next time a span is added to the buffer. The
+   * callback is invoked on the thread ending the span and is automatically unregistered afterwards.
+   *
+   * <p>Callers should register the listener before calling {@link #flushPendingBufferedSpans()}:
+   * this way spans are either seen by the flush or cause the listener to be invoked.
+   */
+  public void setBufferedSpanListener(Runnable listener) {
+    bufferedSpanListener = listener;
+  }
+
+  public void clearBufferedSpanListener() {
+    bufferedSpanListener = null;
   }
 
-  public synchronized void flushPendingBufferedSpans() {
+  /**
+   * Sends all buffered spans whose delay has elapsed.
+   *
+   * @return the number of nanoseconds until the next buffered span is due, or {@link
+   *     #NO_PENDING_SPANS} if no spans are buffered anymore
+   */
+  public synchronized long flushPendingBufferedSpans() {
+    long now = nanoClock.getAsLong();
+    pendingSpans.advance(now, sendDelayedSpan);
+    // The wheel does not need its own limit: spans keep their reserved buffer slot until they
+    // are sent, so the ring buffer can always be drained completely.
     try {
       delayedSpansPoller.poll(
           bufferedSpan -> {
-            long elapsed = nanoClock.getAsLong() - bufferedSpan.endNanoTimestamp;
-            if (elapsed >= spanBufferDurationNanos || shuttingDown) {
-              correlateAndSendSpan(bufferedSpan.span);
-              bufferedSpan.clear();
-              return true;
+            if (shuttingDown || bufferedSpan.deadlineNanoTimestamp - now <= 0) {
+              sendDelayedSpan(
+                  bufferedSpan.span,
+                  bufferedSpan.endNanoTimestamp,
+                  bufferedSpan.deadlineNanoTimestamp);
+            } else {
+              pendingSpans.add(
+                  bufferedSpan.span,
+                  bufferedSpan.endNanoTimestamp,
+                  bufferedSpan.deadlineNanoTimestamp);
             }
-            return false; // span is not yet ready to be sent
+            bufferedSpan.clear();
+            return true;
           });
     } catch (Exception e) {
       throw new IllegalStateException(e);
     }
+    DelayedSpan overflowed;
+    while ((overflowed = overflowSpans.poll()) != null) {
+      overflowSize.decrementAndGet();
+      if (shuttingDown || overflowed.deadlineNanoTimestamp - now <= 0) {
+        sendDelayedSpan(
+            overflowed.span, overflowed.endNanoTimestamp, overflowed.deadlineNanoTimestamp);
+      } else {
+        pendingSpans.add(
+            overflowed.span, overflowed.endNanoTimestamp, overflowed.deadlineNanoTimestamp);
+      }
+    }
+    if (shuttingDown) {
+      pendingSpans.expireAll(sendDelayedSpan);
+    }
     spansById.expungeStaleEntries();
+
+    if (pendingSpans.isEmpty()) {
+      boolean buffersEmpty =
+          delayedSpans.remainingCapacity() == delayedSpans.getBufferSize()
+              && overflowSpans.isEmpty();
+      // spans may have been added to the buffers after we have polled them
+      return buffersEmpty ? NO_PENDING_SPANS : 0;
+    }
+    return pendingSpans.nanosUntilNextAdvance(now);
+  }
+
+  private void sendDelayedSpan(ReadableSpan span, long endNanos, long deadlineNanos) {
+    long now = nanoClock.getAsLong();
+    long actualDelay = now - endNanos;
+    delayedSpanCount.increment();
+    totalActualDelayNanos.add(actualDelay);
+    totalTargetDelayNanos.add(deadlineNanos - endNanos);
+    long overshoot = now - deadlineNanos;
+    long currentMax;
+    while (overshoot > (currentMax = maxDelayOvershootNanos.get())) {
+      if (maxDelayOvershootNanos.compareAndSet(currentMax, overshoot)) {
+        break;
+      }
+    }
+    bufferedSpans.decrementAndGet();
+    try {
+      correlateAndSendSpan(span);
+    } catch (RuntimeException e) {
+      // don't let a single failing span prevent the other buffered spans from being sent
+      logger.log(Level.SEVERE, "Failed to send delayed span", e);
+    }
+  }
+
+  /**
+   * @return the total number of spans which have been delayed and sent afterwards
+   */
+  public long getDelayedSpanCount() {
+    return delayedSpanCount.sum();
+  }
+
+  /**
+   * @return the sum of the actual time spent in the buffer of all delayed and sent spans
+   */
+  public long getTotalActualDelayNanos() {
+    return totalActualDelayNanos.sum();
+  }
+
+  /**
+   * @return the sum of the desired time to spend in the buffer of all delayed and sent spans
+   */
+  public long getTotalTargetDelayNanos() {
+    return totalTargetDelayNanos.sum();
+  }
+
+  /**
+   * @return the total number of spans which did not fit into the ring buffer and have been stored
+   *     in the overflow buffer instead
+   */
+  public long getOverflowedSpanCount() {
+    return overflowedSpanCount.sum();
+  }
+
+  /**
+   * @return the total number of spans which could not be buffered and therefore have been sent
+   *     immediately with possibly incomplete correlation data
+   */
+  public long getBufferFullSpanCount() {
+    return bufferFullSpanCount.sum();
+  }
+
+  /**
+   * @return the total number of spans which have been sent with at least one stack trace id
+   *     attached
+   */
+  public long getCorrelatedSpanCount() {
+    return correlatedSpanCount.sum();
+  }
+
+  /**
+   * @return the total number of stack trace ids which have been attached to sent spans, including
+   *     duplicates
+   */
+  public long getAttachedStackTraceIdCount() {
+    return attachedStackTraceIdCount.sum();
+  }
+
+  /**
+   * @return the number of spans currently delayed for correlation, no matter whether they are
+   *     stored in the ring buffer, the timer wheel or the overflow buffer
+   */
+  public int getBufferedSpanCount() {
+    return bufferedSpans.get();
+  }
+
+  /**
+   * @return the maximum number of spans which can be delayed at the same time, which is the
+   *     configured buffer size rounded up to the next power of two plus the overflow buffer size
+   */
+  public int getBufferCapacity() {
+    return maxBufferedSpans;
+  }
+
+  /**
+   * @return the number of spans currently stored in the overflow buffer
+   */
+  public int getOverflowBufferUsage() {
+    return overflowSize.get();
+  }
+
+  /**
+   * @return the maximum observed time a span has been sent later than its deadline
+   */
+  public long getMaxDelayOvershootNanos() {
+    return maxDelayOvershootNanos.get();
   }
 
   public synchronized void shutdownAndFlushAll() {
@@ -177,10 +477,13 @@ public class SpanProfilingSamplesCorrelator {
 
   private void correlateAndSendSpan(ReadableSpan span) {
     spansById.remove(span);
-    FreezableList<String> list = profilerStackTraceIds.get(span);
-    if (list != null) {
+    StackTraceIdMultiset samples = profilerStackTraceIds.get(span);
+    if (samples != null) {
+      List<String> stackTraceIds = samples.freezeAndExpand(stackTraceIdEncoder);
+      correlatedSpanCount.increment();
+      attachedStackTraceIdCount.add(stackTraceIds.size());
       MutableSpan mutableSpan = MutableSpan.makeMutable(span);
-      mutableSpan.setAttribute(ElasticAttributes.PROFILER_STACK_TRACE_IDS, list.freezeAndGet());
+      mutableSpan.setAttribute(ElasticAttributes.PROFILER_STACK_TRACE_IDS, stackTraceIds);
       sendSpan.accept(mutableSpan);
     } else {
       sendSpan.accept(span);
@@ -191,11 +494,13 @@ public class SpanProfilingSamplesCorrelator {
 
     ReadableSpan span;
     long endNanoTimestamp;
+    long deadlineNanoTimestamp;
 
     @Override
     public void moveInto(DelayedSpan other) {
       other.span = span;
       other.endNanoTimestamp = endNanoTimestamp;
+      other.deadlineNanoTimestamp = deadlineNanoTimestamp;
       clear();
     }
 
@@ -203,6 +508,7 @@ public class SpanProfilingSamplesCorrelator {
     public void clear() {
       span = null;
       endNanoTimestamp = -1;
+      deadlineNanoTimestamp = -1;
     }
   }
 
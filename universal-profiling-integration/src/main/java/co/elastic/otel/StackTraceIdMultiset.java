@@ -0,0 +1,130 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel;
+
+import co.elastic.otel.common.util.HexUtils;
+import co.elastic.otel.disruptor.FreezableList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Counts the profiler samples of a single span per distinct stack trace. The memory usage is
+ * proportional to the number of distinct stack traces instead of the number of samples.
+ *
+ * <p>Samples can be added concurrently without locking until the multiset is frozen, samples added
+ * afterward are ignored.
+ */
+final class StackTraceIdMultiset {
+
+  private final Map<StackTraceId, AtomicInteger> counts = new ConcurrentHashMap<>(4);
+
+  /** The distinct stack trace ids in the order of their first occurrence. */
+  private final FreezableList<StackTraceId> distinctIds = new FreezableList<>();
+
+  void addIfNotFrozen(byte[] stackTraceId, int count) {
+    if (count <= 0 || distinctIds.isFrozen()) {
+      return;
+    }
+    StackTraceId id = new StackTraceId(stackTraceId);
+    AtomicInteger counter = counts.get(id);
+    if (counter == null) {
+      AtomicInteger newCounter = new AtomicInteger();
+      counter = counts.putIfAbsent(id, newCounter);
+      if (counter == null) {
+        if (!distinctIds.addIfNotFrozen(id)) {
+          return;
+        }
+        counter = newCounter;
+      }
+    }
+    counter.addAndGet(count);
+  }
+
+  /**
+   * Freezes this multiset and expands it into a list containing every stack trace id as often as
+   * it has been sampled.
+   *
+   * @param encoder used to convert the binary stack trace ids to their string representation. The
+   *     encoder is invoked once per distinct stack trace id, so every duplicate in the result
+   *     shares the same instance.
+   */
+  List<String> freezeAndExpand(Function<StackTraceId, String> encoder) {
+    List<StackTraceId> ids = distinctIds.freezeAndGet();
+    int[] idCounts = new int[ids.size()];
+    int total = 0;
+    for (int i = 0; i < idCounts.length; i++) {
+      idCounts[i] = counts.get(ids.get(i)).get();
+      total += idCounts[i];
+    }
+    List<String> result = new ArrayList<>(total);
+    for (int i = 0; i < idCounts.length; i++) {
+      result.addAll(Collections.nCopies(idCounts[i], encoder.apply(ids.get(i))));
+    }
+    return result;
+  }
+
+  static final class StackTraceId {
+
+    static final int LENGTH = 16;
+
+    private final long high;
+    private final long low;
+
+    StackTraceId(byte[] id) {
+      if (id.length != LENGTH) {
+        throw new IllegalArgumentException(
+            "Stack trace id must be " + LENGTH + " bytes long but was " + id.length);
+      }
+      high = HexUtils.bytesToLong(id, 0);
+      low = HexUtils.bytesToLong(id, 8);
+    }
+
+    byte[] toBytes() {
+      byte[] result = new byte[LENGTH];
+      for (int i = 0; i < 8; i++) {
+        result[i] = (byte) (high >>> (56 - 8 * i));
+        result[i + 8] = (byte) (low >>> (56 - 8 * i));
+      }
+      return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof StackTraceId)) {
+        return false;
+      }
+      StackTraceId other = (StackTraceId) o;
+      return high == other.high && low == other.low;
+    }
+
+    @Override
+    public int hashCode() {
+      // stack trace ids are hashes, so their bits are already well distributed
+      return (int) (high ^ (high >>> 32));
+    }
+  }
+}
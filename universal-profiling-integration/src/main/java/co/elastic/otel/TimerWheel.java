@@ -0,0 +1,290 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel;
+
+/**
+ * A hierarchical timer wheel, used as delay queue where every element has its own deadline.
+ * Inspired by the timer wheel of caffeine, see <a
+ * href="https://github.com/ben-manes/caffeine/blob/master/caffeine/src/main/java/com/github/benmanes/caffeine/cache/TimerWheel.java">TimerWheel.java</a>.
+ *
+ * <p>Elements are expired at the earliest with the first call to {@link #advance(long,
+ * ExpirationHandler)} after their deadline has passed and at the latest one tick (~1ms) after
+ * that. Adding and expiring elements are O(1) operations.
+ *
+ * <p>If the {@link ExpirationHandler} throws, the wheel still processes all other elements and
+ * rethrows the first failure afterwards, so that no elements are lost.
+ *
+ * <p>This class is not thread safe, it is expected to be only accessed by a single thread.
+ */
+public class TimerWheel<T> {
+
+  /** Number of buckets for each level of the wheel, must be powers of two. */
+  private static final int[] BUCKETS = {64, 64, 64, 64, 1};
+
+  /**
+   * The time span covered by a single bucket of each level, in nanoseconds. The first level has a
+   * resolution of about one millisecond, the second of about 67ms, the third of about 4.3 seconds
+   * and the fourth of about 4.6 minutes. The last level is used for everything further away.
+   */
+  private static final long[] SPANS = {
+    1L << 20, // 1.05 ms
+    1L << 26, // 67.11 ms
+    1L << 32, // 4.29 s
+    1L << 38, // 4.58 min
+    1L << 44, // 4.89 h
+  };
+
+  private static final int[] SHIFT = {20, 26, 32, 38, 44};
+
+  public interface ExpirationHandler<T> {
+    void onExpired(T element, long scheduledAtNanos, long deadlineNanos);
+  }
+
+  private static final class Node<T> {
+    T element;
+    long scheduledAtNanos;
+    long deadlineNanos;
+    Node<T> prev;
+    Node<T> next;
+
+    void unlink() {
+      prev.next = next;
+      next.prev = prev;
+      prev = null;
+      next = null;
+    }
+  }
+
+  private final Node<T>[][] wheel;
+
+  /**
+   * All timestamps are stored relative to this origin, so that the wheel works with clocks like
+   * {@link System#nanoTime()}, which may return negative values.
+   */
+  private final long originNanos;
+
+  /** The time of the last {@link #advance(long, ExpirationHandler)}, relative to the origin. */
+  private long nanos;
+
+  private int size;
+
+  /** Nodes are pooled to avoid allocations per element. */
+  private Node<T> freeNodes;
+
+  /** The first exception thrown by the handler during the current expiration run. */
+  private Throwable handlerFailure;
+
+  @SuppressWarnings("unchecked")
+  public TimerWheel(long currentNanos) {
+    originNanos = currentNanos;
+    nanos = 0;
+    wheel = new Node[BUCKETS.length][];
+    for (int i = 0; i < wheel.length; i++) {
+      wheel[i] = new Node[BUCKETS[i]];
+      for (int j = 0; j < wheel[i].length; j++) {
+        Node<T> sentinel = new Node<>();
+        sentinel.prev = sentinel;
+        sentinel.next = sentinel;
+        wheel[i][j] = sentinel;
+      }
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Adds the given element to the wheel.
+   *
+   * @param element the element to add
+   * @param scheduledAtNanos the time the element was scheduled, passed on to the {@link
+   *     ExpirationHandler}
+   * @param deadlineNanos the time at which the element shall be expired
+   */
+  public void add(T element, long scheduledAtNanos, long deadlineNanos) {
+    Node<T> node = freeNodes;
+    if (node != null) {
+      freeNodes = node.next;
+      node.next = null;
+    } else {
+      node = new Node<>();
+    }
+    node.element = element;
+    node.scheduledAtNanos = scheduledAtNanos;
+    node.deadlineNanos = deadlineNanos;
+    schedule(node);
+    size++;
+  }
+
+  /**
+   * Advances the wheel to the given time and invokes the handler for all elements whose deadline
+   * has passed.
+   */
+  public void advance(long currentNanos, ExpirationHandler<? super T> handler) {
+    long previousTimeNanos = nanos;
+    long currentTimeNanos = currentNanos - originNanos;
+    if (currentTimeNanos <= previousTimeNanos) {
+      return;
+    }
+    nanos = currentTimeNanos;
+    for (int i = 0; i < SHIFT.length; i++) {
+      long previousTicks = previousTimeNanos >>> SHIFT[i];
+      long currentTicks = currentTimeNanos >>> SHIFT[i];
+      long delta = currentTicks - previousTicks;
+      if (delta <= 0L) {
+        break;
+      }
+      expire(i, previousTicks, delta, handler);
+    }
+    rethrowHandlerFailure();
+  }
+
+  /** Removes all elements from the wheel, invoking the handler for each of them. */
+  public void expireAll(ExpirationHandler<? super T> handler) {
+    for (Node<T>[] level : wheel) {
+      for (Node<T> sentinel : level) {
+        while (sentinel.next != sentinel) {
+          Node<T> node = sentinel.next;
+          node.unlink();
+          expireNode(node, handler);
+        }
+      }
+    }
+    rethrowHandlerFailure();
+  }
+
+  /**
+   * Returns a lower bound for the time until the next call to {@link #advance(long,
+   * ExpirationHandler)} can expire elements or needs to move elements between the levels of the
+   * wheel.
+   *
+   * @return the number of nanoseconds until then, -1 if the wheel is empty
+   */
+  public long nanosUntilNextAdvance(long currentNanos) {
+    if (size == 0) {
+      return -1;
+    }
+    long currentTimeNanos = Math.max(nanos, currentNanos - originNanos);
+    long result = Long.MAX_VALUE;
+    for (int i = 0; i < wheel.length; i++) {
+      Node<T>[] level = wheel[i];
+      int mask = level.length - 1;
+      long ticks = nanos >>> SHIFT[i];
+      for (int k = 0; k < level.length; k++) {
+        Node<T> sentinel = level[(int) ((ticks + k) & mask)];
+        if (sentinel.next != sentinel) {
+          // Buckets are processed once the clock has entered them. For level zero we wait for the
+          // end of the tick instead, because elements might have their deadline at its very end.
+          // Buckets of the higher levels only need to be cascaded into the lower levels.
+          long bucketTick = i == 0 ? ticks + k + 1 : ticks + Math.max(k, 1);
+          result = Math.min(result, (bucketTick << SHIFT[i]) - currentTimeNanos);
+          break;
+        }
+      }
+    }
+    return Math.max(0, result);
+  }
+
+  private void expire(int level, long previousTicks, long delta, ExpirationHandler<? super T> h) {
+    Node<T>[] timerWheel = wheel[level];
+    int mask = timerWheel.length - 1;
+    int steps = (int) Math.min(1 + delta, timerWheel.length);
+    int start = (int) (previousTicks & mask);
+    int end = start + steps;
+
+    for (int i = start; i < end; i++) {
+      Node<T> sentinel = timerWheel[i & mask];
+      Node<T> node = sentinel.next;
+      // detach the whole bucket, not yet expired nodes are rescheduled into other buckets
+      sentinel.prev.next = null;
+      sentinel.prev = sentinel;
+      sentinel.next = sentinel;
+
+      while (node != null && node != sentinel) {
+        Node<T> next = node.next;
+        node.prev = null;
+        node.next = null;
+        if (node.deadlineNanos - originNanos - nanos <= 0) {
+          expireNode(node, h);
+        } else {
+          schedule(node);
+        }
+        node = next;
+      }
+    }
+  }
+
+  private void expireNode(Node<T> node, ExpirationHandler<? super T> handler) {
+    T element = node.element;
+    long scheduledAt = node.scheduledAtNanos;
+    long deadline = node.deadlineNanos;
+    node.element = null;
+    node.next = freeNodes;
+    freeNodes = node;
+    size--;
+    try {
+      handler.onExpired(element, scheduledAt, deadline);
+    } catch (RuntimeException | Error e) {
+      if (handlerFailure == null) {
+        handlerFailure = e;
+      } else {
+        handlerFailure.addSuppressed(e);
+      }
+    }
+  }
+
+  private void rethrowHandlerFailure() {
+    Throwable failure = handlerFailure;
+    if (failure != null) {
+      handlerFailure = null;
+      if (failure instanceof Error) {
+        throw (Error) failure;
+      }
+      throw (RuntimeException) failure;
+    }
+  }
+
+  private void schedule(Node<T> node) {
+    Node<T> sentinel = findBucket(node.deadlineNanos - originNanos);
+    node.prev = sentinel.prev;
+    node.next = sentinel;
+    sentinel.prev.next = node;
+    sentinel.prev = node;
+  }
+
+  private Node<T> findBucket(long time) {
+    // elements which are already due are placed into the current bucket
+    time = Math.max(time, nanos);
+    long duration = time - nanos;
+    int length = wheel.length - 1;
+    for (int i = 0; i < length; i++) {
+      if (duration < SPANS[i + 1]) {
+        long ticks = time >>> SHIFT[i];
+        int index = (int) (ticks & (wheel[i].length - 1));
+        return wheel[i][index];
+      }
+    }
+    return wheel[length][0];
+  }
+}
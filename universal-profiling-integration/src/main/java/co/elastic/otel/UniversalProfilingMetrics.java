@@ -0,0 +1,208 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel;
+
+import io.opentelemetry.api.metrics.BatchCallback;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.ObservableDoubleMeasurement;
+import io.opentelemetry.api.metrics.ObservableLongMeasurement;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Self-telemetry of the universal profiling integration. All values are recorded as cheap {@link
+ * LongAdder} increments on the hot path and are only read when the metrics are collected.
+ */
+final class UniversalProfilingMetrics {
+
+  static final String INSTRUMENTATION_SCOPE = "co.elastic.otel.universal-profiling-integration";
+
+  private static final String PREFIX = "elastic.profiling.correlation.";
+
+  private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  final LongAdder receivedMessages = new LongAdder();
+  final LongAdder decodedMessages = new LongAdder();
+  final LongAdder failedMessages = new LongAdder();
+  final LongAdder unknownMessages = new LongAdder();
+  final LongAdder polls = new LongAdder();
+  final LongAdder pollDurationNanos = new LongAdder();
+
+  void recordPoll(long durationNanos) {
+    polls.increment();
+    pollDurationNanos.add(durationNanos);
+  }
+
+  /**
+   * Registers all instruments with the given meter.
+   *
+   * @return the registration, which needs to be closed to unregister the instruments again
+   */
+  BatchCallback register(Meter meter, SpanProfilingSamplesCorrelator correlator) {
+    ObservableLongMeasurement bufferUsage =
+        meter
+            .upDownCounterBuilder(PREFIX + "buffer.usage")
+            .setDescription("Number of ended local root spans currently delayed for correlation")
+            .setUnit("{span}")
+            .buildObserver();
+    ObservableLongMeasurement bufferCapacity =
+        meter
+            .upDownCounterBuilder(PREFIX + "buffer.capacity")
+            .setDescription(
+                "Maximum number of local root spans which can be delayed, including the overflow"
+                    + " buffer")
+            .setUnit("{span}")
+            .buildObserver();
+    ObservableLongMeasurement overflowBufferUsage =
+        meter
+            .upDownCounterBuilder(PREFIX + "overflow_buffer.usage")
+            .setDescription("Number of ended local root spans currently in the overflow buffer")
+            .setUnit("{span}")
+            .buildObserver();
+    ObservableLongMeasurement delayedSpans =
+        meter
+            .counterBuilder(PREFIX + "spans.delayed")
+            .setDescription("Number of local root spans which have been delayed for correlation")
+            .setUnit("{span}")
+            .buildObserver();
+    ObservableDoubleMeasurement spanDelay =
+        meter
+            .counterBuilder(PREFIX + "spans.delay")
+            .ofDoubles()
+            .setDescription("Total time local root spans have been delayed for correlation")
+            .setUnit("s")
+            .buildObserver();
+    ObservableDoubleMeasurement targetSpanDelay =
+        meter
+            .counterBuilder(PREFIX + "spans.target_delay")
+            .ofDoubles()
+            .setDescription(
+                "Total time local root spans should have been delayed for correlation, the"
+                    + " difference to spans.delay is the time they were sent late")
+            .setUnit("s")
+            .buildObserver();
+    ObservableDoubleMeasurement maxDelayOvershoot =
+        meter
+            .gaugeBuilder(PREFIX + "spans.delay.max_overshoot")
+            .setDescription("Maximum time a local root span has been sent after its deadline")
+            .setUnit("s")
+            .buildObserver();
+    ObservableLongMeasurement overflowedSpans =
+        meter
+            .counterBuilder(PREFIX + "spans.overflowed")
+            .setDescription("Number of local root spans which were stored in the overflow buffer")
+            .setUnit("{span}")
+            .buildObserver();
+    ObservableLongMeasurement uncorrelatedSpans =
+        meter
+            .counterBuilder(PREFIX + "spans.buffer_full")
+            .setDescription(
+                "Number of local root spans which were sent immediately due to full buffers")
+            .setUnit("{span}")
+            .buildObserver();
+    ObservableLongMeasurement correlatedSpans =
+        meter
+            .counterBuilder(PREFIX + "spans.correlated")
+            .setDescription("Number of local root spans sent with stack trace ids attached")
+            .setUnit("{span}")
+            .buildObserver();
+    ObservableLongMeasurement stackTraceIds =
+        meter
+            .counterBuilder(PREFIX + "stacktrace_ids")
+            .setDescription("Number of stack trace ids attached to local root spans")
+            .setUnit("{stacktrace}")
+            .buildObserver();
+    ObservableLongMeasurement messagesReceived =
+        meter
+            .counterBuilder(PREFIX + "messages.received")
+            .setDescription("Number of messages received from the profiler")
+            .setUnit("{message}")
+            .buildObserver();
+    ObservableLongMeasurement messagesDecoded =
+        meter
+            .counterBuilder(PREFIX + "messages.decoded")
+            .setDescription(
+                "Number of messages received from the profiler which were decoded successfully")
+            .setUnit("{message}")
+            .buildObserver();
+    ObservableLongMeasurement messagesFailed =
+        meter
+            .counterBuilder(PREFIX + "messages.failed")
+            .setDescription("Number of messages received from the profiler which failed to decode")
+            .setUnit("{message}")
+            .buildObserver();
+    ObservableLongMeasurement messagesUnknown =
+        meter
+            .counterBuilder(PREFIX + "messages.unknown")
+            .setDescription("Number of decoded messages of an unknown type")
+            .setUnit("{message}")
+            .buildObserver();
+    ObservableLongMeasurement pollCount =
+        meter
+            .counterBuilder(PREFIX + "polls")
+            .setDescription("Number of iterations of the message poll and span flush loop")
+            .setUnit("{poll}")
+            .buildObserver();
+    ObservableDoubleMeasurement pollDuration =
+        meter
+            .counterBuilder(PREFIX + "polls.duration")
+            .ofDoubles()
+            .setDescription("Total time spent in the message poll and span flush loop")
+            .setUnit("s")
+            .buildObserver();
+
+    return meter.batchCallback(
+        () -> {
+          bufferUsage.record(correlator.getBufferedSpanCount());
+          bufferCapacity.record(correlator.getBufferCapacity());
+          overflowBufferUsage.record(correlator.getOverflowBufferUsage());
+          delayedSpans.record(correlator.getDelayedSpanCount());
+          spanDelay.record(correlator.getTotalActualDelayNanos() / NANOS_PER_SECOND);
+          targetSpanDelay.record(correlator.getTotalTargetDelayNanos() / NANOS_PER_SECOND);
+          maxDelayOvershoot.record(correlator.getMaxDelayOvershootNanos() / NANOS_PER_SECOND);
+          overflowedSpans.record(correlator.getOverflowedSpanCount());
+          uncorrelatedSpans.record(correlator.getBufferFullSpanCount());
+          correlatedSpans.record(correlator.getCorrelatedSpanCount());
+          stackTraceIds.record(correlator.getAttachedStackTraceIdCount());
+          messagesReceived.record(receivedMessages.sum());
+          messagesDecoded.record(decodedMessages.sum());
+          messagesFailed.record(failedMessages.sum());
+          messagesUnknown.record(unknownMessages.sum());
+          pollCount.record(polls.sum());
+          pollDuration.record(pollDurationNanos.sum() / NANOS_PER_SECOND);
+        },
+        bufferUsage,
+        bufferCapacity,
+        overflowBufferUsage,
+        delayedSpans,
+        spanDelay,
+        targetSpanDelay,
+        maxDelayOvershoot,
+        overflowedSpans,
+        uncorrelatedSpans,
+        correlatedSpans,
+        stackTraceIds,
+        messagesReceived,
+        messagesDecoded,
+        messagesFailed,
+        messagesUnknown,
+        pollCount,
+        pollDuration);
+  }
+}
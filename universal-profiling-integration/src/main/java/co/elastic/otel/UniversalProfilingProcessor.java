@@ -21,12 +21,13 @@ package co.elastic.otel;
 import co.elastic.otel.common.AbstractChainingSpanProcessor;
 import co.elastic.otel.common.LocalRootSpan;
 import co.elastic.otel.common.util.ExecutorUtils;
-import co.elastic.otel.common.util.HexUtils;
 import co.elastic.otel.hostid.ProfilerProvidedHostId;
 import co.elastic.otel.profiler.DecodeException;
 import co.elastic.otel.profiler.ProfilerMessage;
 import co.elastic.otel.profiler.ProfilerRegistrationMessage;
 import co.elastic.otel.profiler.TraceCorrelationMessage;
+import io.opentelemetry.api.metrics.BatchCallback;
+import io.opentelemetry.api.metrics.MeterProvider;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.context.Context;
 import io.opentelemetry.context.ContextStorage;
@@ -41,7 +42,6 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
-import java.util.Base64;
 import java.util.Random;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -76,6 +76,12 @@ public class UniversalProfilingProcessor extends AbstractChainingSpanProcessor {
    */
   static final long POLL_FREQUENCY_MS = 20;
 
+  /** The maximum number of profiler messages to receive with a single native call. */
+  private static final int MESSAGE_BATCH_SIZE = 64;
+
+  /** The maximum size of a single message received from the profiler. */
+  private static final int MAX_MESSAGE_SIZE = 1024;
+
   private static boolean anyInstanceActive = false;
 
   final boolean tryEnableVirtualThreadSupport;
@@ -83,6 +89,15 @@ public class UniversalProfilingProcessor extends AbstractChainingSpanProcessor {
   // Visible for testing
   final SpanProfilingSamplesCorrelator correlator;
   private final ScheduledExecutorService messagePollAndSpanFlushExecutor;
+  private final ProfilerMessageBatch messageBatch =
+      new ProfilerMessageBatch(MESSAGE_BATCH_SIZE, MAX_MESSAGE_SIZE);
+
+  // Visible for testing
+  final UniversalProfilingMetrics metrics = new UniversalProfilingMetrics();
+  @Nullable private MeterProvider meterProvider;
+  @Nullable private BatchCallback metricsRegistration;
+  private boolean profilerRegistered = false;
+  private boolean metricsClosed = false;
 
   // Visible for testing
   String socketPath;
@@ -90,6 +105,8 @@ public class UniversalProfilingProcessor extends AbstractChainingSpanProcessor {
   // Visible for testing
   volatile boolean tlsPropagationActive = false;
 
+  private volatile boolean pollLoopRunning = false;
+
   public static UniversalProfilingProcessorBuilder builder(SpanProcessor next, Resource resource) {
     return new UniversalProfilingProcessorBuilder(next, resource);
   }
@@ -98,13 +115,17 @@ public class UniversalProfilingProcessor extends AbstractChainingSpanProcessor {
       SpanProcessor next,
       Resource serviceResource,
       int bufferSize,
+      int overflowBufferSize,
       boolean activeOnlyAfterProfilerRegistration,
       boolean virtualThreadSupportEnabled,
+      boolean eventDrivenPolling,
       String socketDir,
-      LongSupplier nanoClock) {
+      LongSupplier nanoClock,
+      @Nullable MeterProvider meterProvider) {
     super(next);
     synchronized (UniversalProfilingProcessor.class) {
       this.tryEnableVirtualThreadSupport = virtualThreadSupportEnabled;
+      this.meterProvider = meterProvider;
       if (anyInstanceActive) {
         throw new IllegalStateException(
             "Another instance has already been started and not stopped yet."
@@ -121,7 +142,7 @@ public class UniversalProfilingProcessor extends AbstractChainingSpanProcessor {
 
       correlator =
           new SpanProfilingSamplesCorrelator(
-              bufferSize, nanoClock, initialSpanDelay, this.next::onEnd);
+              bufferSize, overflowBufferSize, nanoClock, initialSpanDelay, this.next::onEnd);
 
       socketPath = openProfilerSocket(socketDir);
       try {
@@ -133,11 +154,16 @@ public class UniversalProfilingProcessor extends AbstractChainingSpanProcessor {
         ThreadFactory threadFac =
             ExecutorUtils.threadFactory("elastic-profiler-correlation-", true);
         messagePollAndSpanFlushExecutor = Executors.newSingleThreadScheduledExecutor(threadFac);
-        messagePollAndSpanFlushExecutor.scheduleWithFixedDelay(
-            this::pollMessagesAndFlushPendingSpans,
-            POLL_FREQUENCY_MS,
-            POLL_FREQUENCY_MS,
-            TimeUnit.MILLISECONDS);
+        if (eventDrivenPolling) {
+          pollLoopRunning = true;
+          messagePollAndSpanFlushExecutor.execute(this::runEventDrivenPollLoop);
+        } else {
+          messagePollAndSpanFlushExecutor.scheduleWithFixedDelay(
+              this::pollMessagesAndFlushPendingSpans,
+              POLL_FREQUENCY_MS,
+              POLL_FREQUENCY_MS,
+              TimeUnit.MILLISECONDS);
+        }
 
         ActivationListener.setProcessor(this);
       } catch (Exception e) {
@@ -212,6 +238,10 @@ public class UniversalProfilingProcessor extends AbstractChainingSpanProcessor {
       UniversalProfilingCorrelation.reset();
       anyInstanceActive = false;
       messagePollAndSpanFlushExecutor.shutdown();
+      if (pollLoopRunning) {
+        pollLoopRunning = false;
+        UniversalProfilingCorrelation.wakeupProfilerReturnChannel();
+      }
       try {
         messagePollAndSpanFlushExecutor.awaitTermination(10, TimeUnit.SECONDS);
       } catch (InterruptedException e) {
@@ -220,6 +250,7 @@ public class UniversalProfilingProcessor extends AbstractChainingSpanProcessor {
       // Consume remaining messages
       consumeProfilerMessages();
       correlator.shutdownAndFlushAll();
+      unregisterMetrics();
       return CompletableResultCode.ofSuccess();
     } finally {
       UniversalProfilingCorrelation.stopProfilerReturnChannel();
@@ -260,32 +291,83 @@ public class UniversalProfilingProcessor extends AbstractChainingSpanProcessor {
   }
 
   // visible for testing
-  synchronized void pollMessagesAndFlushPendingSpans() {
+  synchronized long pollMessagesAndFlushPendingSpans() {
+    long start = System.nanoTime();
     // Order is important: we only want to flush spans after we have consumed all pending messages
     // otherwise the data for the spans to be flushed might be incomplete
     consumeProfilerMessages();
-    correlator.flushPendingBufferedSpans();
+    long nanosUntilNextSpan = correlator.flushPendingBufferedSpans();
+    metrics.recordPoll(System.nanoTime() - start);
+    return nanosUntilNextSpan;
+  }
+
+  /**
+   * Alternative to polling with a fixed frequency: Blocks in native code until either a message
+   * from the profiler arrives or the next buffered span becomes due. If no spans are buffered, the
+   * correlator wakes up this thread as soon as a span gets buffered.
+   */
+  private void runEventDrivenPollLoop() {
+    Runnable wakeup = this::wakeupEventDrivenPollLoop;
+    while (pollLoopRunning) {
+      try {
+        // register the listener before flushing, so that we can't miss spans buffered concurrently
+        correlator.setBufferedSpanListener(wakeup);
+        long nanosUntilNextSpan = pollMessagesAndFlushPendingSpans();
+        long timeoutMillis = -1; // block until a message arrives or a span gets buffered
+        if (nanosUntilNextSpan != SpanProfilingSamplesCorrelator.NO_PENDING_SPANS) {
+          correlator.clearBufferedSpanListener();
+          // round up to not wake up too early
+          timeoutMillis = TimeUnit.NANOSECONDS.toMillis(nanosUntilNextSpan + 999_999);
+        }
+        if (pollLoopRunning) {
+          UniversalProfilingCorrelation.awaitProfilerReturnChannelMessages(timeoutMillis);
+        }
+      } catch (Exception e) {
+        log.log(Level.SEVERE, "Error in profiler message poll loop, falling back to polling", e);
+        correlator.clearBufferedSpanListener();
+        if (pollLoopRunning) {
+          pollLoopRunning = false;
+          messagePollAndSpanFlushExecutor.scheduleWithFixedDelay(
+              this::pollMessagesAndFlushPendingSpans,
+              POLL_FREQUENCY_MS,
+              POLL_FREQUENCY_MS,
+              TimeUnit.MILLISECONDS);
+        }
+        return;
+      }
+    }
+    correlator.clearBufferedSpanListener();
+  }
+
+  private void wakeupEventDrivenPollLoop() {
+    try {
+      UniversalProfilingCorrelation.wakeupProfilerReturnChannel();
+    } catch (Exception e) {
+      log.log(Level.FINE, "Could not wake up profiler message poll loop", e);
+    }
   }
 
-  private void consumeProfilerMessages() {
-    StringBuilder tempBuffer = new StringBuilder();
+  private synchronized void consumeProfilerMessages() {
     try {
-      while (true) {
-        try {
-          ProfilerMessage message =
-              UniversalProfilingCorrelation.readProfilerReturnChannelMessage();
-          if (message == null) {
-            break;
-          } else if (message instanceof TraceCorrelationMessage) {
-            handleMessage((TraceCorrelationMessage) message, tempBuffer);
-          } else if (message instanceof ProfilerRegistrationMessage) {
-            handleMessage((ProfilerRegistrationMessage) message);
-          } else {
-            log.log(Level.FINE, "Received unknown message type from profiler: {0}", message);
+      while (UniversalProfilingCorrelation.readProfilerReturnChannelMessages(messageBatch)) {
+        while (messageBatch.hasNext()) {
+          metrics.receivedMessages.increment();
+          try {
+            ProfilerMessage message = messageBatch.next();
+            metrics.decodedMessages.increment();
+            if (message instanceof TraceCorrelationMessage) {
+              handleMessage((TraceCorrelationMessage) message);
+            } else if (message instanceof ProfilerRegistrationMessage) {
+              handleMessage((ProfilerRegistrationMessage) message);
+            } else {
+              metrics.unknownMessages.increment();
+              log.log(Level.FINE, "Received unknown message type from profiler: {0}", message);
+            }
+          } catch (DecodeException e) {
+            metrics.failedMessages.increment();
+            log.log(Level.WARNING, "Failed to read profiler message", e);
+            // intentionally no break here, subsequent messages might be decodeable
           }
-        } catch (DecodeException e) {
-          log.log(Level.WARNING, "Failed to read profiler message", e);
-          // intentionally no break here, subsequent messages might be decodeable
         }
       }
     } catch (Exception e) {
@@ -300,6 +382,7 @@ public class UniversalProfilingProcessor extends AbstractChainingSpanProcessor {
         new Object[] {message.getHostId(), message.getSamplesDelayMillis()});
 
     enableTlsPropagation();
+    onProfilerRegistered();
     long spanDelayNanos =
         Duration.ofMillis(message.getSamplesDelayMillis() + POLL_FREQUENCY_MS).toNanos();
     correlator.setSpanBufferDurationNanos(spanDelayNanos);
@@ -307,18 +390,57 @@ public class UniversalProfilingProcessor extends AbstractChainingSpanProcessor {
     ProfilerProvidedHostId.set(message.getHostId());
   }
 
-  private void handleMessage(TraceCorrelationMessage message, StringBuilder tempBuffer) {
-    tempBuffer.setLength(0);
-    HexUtils.appendAsHex(message.getTraceId(), tempBuffer);
-    String traceId = tempBuffer.toString();
+  /**
+   * Sets the {@link MeterProvider} used for the self-telemetry metrics, if none has been configured
+   * when building this processor. The metrics are registered as soon as both the provider is
+   * available and a profiler has been detected.
+   */
+  synchronized void setMeterProviderIfAbsent(MeterProvider provider) {
+    if (meterProvider == null) {
+      meterProvider = provider;
+      registerMetrics();
+    }
+  }
+
+  private synchronized void onProfilerRegistered() {
+    profilerRegistered = true;
+    registerMetrics();
+  }
+
+  /**
+   * The metrics are registered only after a profiler has been detected: Without a profiler they
+   * carry no information.
+   */
+  private synchronized void registerMetrics() {
+    if (metricsRegistration != null
+        || metricsClosed
+        || meterProvider == null
+        || !profilerRegistered) {
+      return;
+    }
+    try {
+      metricsRegistration =
+          metrics.register(
+              meterProvider.get(UniversalProfilingMetrics.INSTRUMENTATION_SCOPE), correlator);
+    } catch (Exception e) {
+      log.log(Level.WARNING, "Failed to register universal profiling integration metrics", e);
+    }
+  }
 
-    tempBuffer.setLength(0);
-    HexUtils.appendAsHex(message.getLocalRootSpanId(), tempBuffer);
-    String localRootSpanId = tempBuffer.toString();
+  private synchronized void unregisterMetrics() {
+    metricsClosed = true;
+    if (metricsRegistration != null) {
+      metricsRegistration.close();
+      metricsRegistration = null;
+    }
+  }
 
-    String stackTraceId =
-        Base64.getUrlEncoder().withoutPadding().encodeToString(message.getStackTraceId());
-    correlator.correlate(traceId, localRootSpanId, stackTraceId, message.getSampleCount());
+  private void handleMessage(TraceCorrelationMessage message) {
+    correlator.correlate(
+        message.getTraceId(),
+        message.getLocalRootSpanId(),
+        message.getStackTraceId(),
+        message.getSampleCount());
   }
 
   private static class ActivationListener implements ContextStorage {
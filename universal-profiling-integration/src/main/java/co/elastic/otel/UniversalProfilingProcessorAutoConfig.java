@@ -20,6 +20,7 @@ package co.elastic.otel;
 
 import co.elastic.otel.common.ChainingSpanProcessorAutoConfiguration;
 import co.elastic.otel.common.ChainingSpanProcessorRegisterer;
+import co.elastic.otel.common.SelfTelemetry;
 import co.elastic.otel.common.config.PropertiesApplier;
 import com.google.auto.service.AutoService;
 import io.opentelemetry.sdk.autoconfigure.ResourceConfiguration;
@@ -39,9 +40,13 @@ public class UniversalProfilingProcessorAutoConfig
   static final String ENABLED_OPTION = "elastic.otel.universal.profiling.integration.enabled";
   static final String BUFFER_SIZE_OPTION =
       "elastic.otel.universal.profiling.integration.buffer.size";
+  static final String OVERFLOW_BUFFER_SIZE_OPTION =
+      "elastic.otel.universal.profiling.integration.overflow.buffer.size";
   static final String SOCKET_DIR_OPTION = "elastic.otel.universal.profiling.integration.socket.dir";
   static final String VIRTUAL_THREAD_SUPPORT_OPTION =
       "elastic.otel.universal.profiling.integration.virtual.threads.enabled";
+  static final String EVENT_DRIVEN_POLLING_OPTION =
+      "elastic.otel.universal.profiling.integration.event.driven.polling.enabled";
 
   private enum EnabledOptions {
     TRUE,
@@ -86,9 +91,13 @@ public class UniversalProfilingProcessorAutoConfig
                 UniversalProfilingProcessor.builder(next, resource);
             builder.delayActivationAfterProfilerRegistration(enabled == EnabledOptions.AUTO);
             props.applyInt(BUFFER_SIZE_OPTION, builder::bufferSize);
+            props.applyInt(OVERFLOW_BUFFER_SIZE_OPTION, builder::overflowBufferSize);
             props.applyString(SOCKET_DIR_OPTION, builder::socketDir);
             props.applyBool(VIRTUAL_THREAD_SUPPORT_OPTION, builder::virtualThreadSupportEnabled);
-            return builder.build();
+            props.applyBool(EVENT_DRIVEN_POLLING_OPTION, builder::eventDrivenPolling);
+            UniversalProfilingProcessor processor = builder.build();
+            SelfTelemetry.whenMeterProviderAvailable(processor::setMeterProviderIfAbsent);
+            return processor;
           } catch (Exception e) {
             logger.log(
                 Level.SEVERE,
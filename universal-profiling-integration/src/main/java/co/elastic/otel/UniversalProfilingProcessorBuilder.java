@@ -18,9 +18,11 @@
  */
 package co.elastic.otel;
 
+import io.opentelemetry.api.metrics.MeterProvider;
 import io.opentelemetry.sdk.resources.Resource;
 import io.opentelemetry.sdk.trace.SpanProcessor;
 import java.util.function.LongSupplier;
+import javax.annotation.Nullable;
 
 public class UniversalProfilingProcessorBuilder {
 
@@ -30,8 +32,11 @@ public class UniversalProfilingProcessorBuilder {
 
   private LongSupplier nanoClock = System::nanoTime;
   private int bufferSize = 8096;
+  private int overflowBufferSize = 0;
   private String socketDir = System.getProperty("java.io.tmpdir");
   private boolean virtualThreadSupportEnabled = true;
+  private boolean eventDrivenPolling = false;
+  @Nullable private MeterProvider meterProvider;
 
   UniversalProfilingProcessorBuilder(SpanProcessor next, Resource resource) {
     this.resource = resource;
@@ -43,10 +48,13 @@ public class UniversalProfilingProcessorBuilder {
         nextProcessor,
         resource,
         bufferSize,
+        overflowBufferSize,
         delayActivationAfterProfilerRegistration,
         virtualThreadSupportEnabled,
+        eventDrivenPolling,
         socketDir,
-        nanoClock);
+        nanoClock,
+        meterProvider);
   }
 
   UniversalProfilingProcessorBuilder clock(LongSupplier nanoClock) {
@@ -83,6 +91,22 @@ public class UniversalProfilingProcessorBuilder {
     return this;
   }
 
+  /**
+   * Optional secondary buffer for local root spans which do not fit into the buffer configured via
+   * {@link #bufferSize(int)}, e.g. during traffic spikes. In contrast to the primary buffer, this
+   * buffer does not preallocate any memory, memory is only used while spans are stored in it. By
+   * default, this buffer is disabled.
+   *
+   * <p>The sum of both buffer sizes is the maximum number of spans buffered at any point in time.
+   */
+  public UniversalProfilingProcessorBuilder overflowBufferSize(int overflowBufferSize) {
+    if (overflowBufferSize < 0) {
+      throw new IllegalArgumentException("overflowBufferSize must not be negative");
+    }
+    this.overflowBufferSize = overflowBufferSize;
+    return this;
+  }
+
   /**
    * The extension needs to bind a socket to a file for communicating with the universal profiling
    * host agent. By default, this socket will be placed in the java.io.tmpdir. This configuration
@@ -104,4 +128,24 @@ public class UniversalProfilingProcessorBuilder {
     this.virtualThreadSupportEnabled = enable;
     return this;
   }
-}
+
+  /**
+   * By default, the extension polls for messages from the profiler and flushes buffered spans at a
+   * fixed frequency of 20ms. When this option is enabled, the polling thread instead blocks until
+   * a message from the profiler arrives or the next buffered span becomes due. This avoids
+   * unnecessary wakeups on idle services and reduces the export delay of local root spans.
+   */
+  public UniversalProfilingProcessorBuilder eventDrivenPolling(boolean enable) {
+    this.eventDrivenPolling = enable;
+    return this;
+  }
+
+  /**
+   * The {@link MeterProvider} used for reporting self-telemetry metrics of the integration, such as
+   * the buffer usage or the number of spans which could not be delayed due to a full buffer. These
+   * metrics can be used to size the buffer. By default, no metrics are reported.
+   */
+  public UniversalProfilingProcessorBuilder meterProvider(MeterProvider meterProvider) {
+    this.meterProvider = meterProvider;
+    return this;
+  }
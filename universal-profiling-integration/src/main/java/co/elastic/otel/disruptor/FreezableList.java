@@ -19,22 +19,122 @@
 package co.elastic.otel.disruptor;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
+/**
+ * An append-only list which can be frozen, after which additions are ignored. Neither adding nor
+ * freezing acquires a lock: Appenders reserve a slot by incrementing a counter via CAS, freezing
+ * sets a marker bit on the same counter. Therefore, every element which has been successfully added
+ * is guaranteed to be contained in the frozen result.
+ *
+ * <p>The elements are stored in a linked list of chunks with doubling sizes, so that small lists
+ * stay small and large lists do not need to be copied on growth.
+ */
 public class FreezableList<T> {
 
-  private List<T> list = new ArrayList<>();
-  private boolean isFrozen = false;
+  private static final int FROZEN_BIT = Integer.MIN_VALUE;
+  private static final int FIRST_CHUNK_SIZE = 4;
+
+  /** The number of reserved slots, combined with the {@link #FROZEN_BIT}. */
+  private final AtomicInteger state = new AtomicInteger();
+
+  private final Chunk first = new Chunk(0, FIRST_CHUNK_SIZE);
+
+  /**
+   * @param value the value to add, must not be null
+   * @return true, if the value has been added, false if this list has already been frozen
+   */
+  public boolean addIfNotFrozen(T value) {
+    Objects.requireNonNull(value, "value must not be null");
+    int index;
+    do {
+      index = state.get();
+      if ((index & FROZEN_BIT) != 0) {
+        return false;
+      }
+      if (index == Integer.MAX_VALUE) {
+        throw new IllegalStateException("Maximum capacity exceeded");
+      }
+    } while (!state.compareAndSet(index, index + 1));
+
+    Chunk chunk = first;
+    while (index >= chunk.offset + chunk.slots.length()) {
+      chunk = chunk.nextOrCreate();
+    }
+    chunk.slots.set(index - chunk.offset, value);
+    return true;
+  }
+
+  public boolean isFrozen() {
+    return (state.get() & FROZEN_BIT) != 0;
+  }
+
+  /**
+   * Freezes this list, if not already done, and returns its content. Can be invoked multiple times,
+   * every invocation returns an equal, unmodifiable list.
+   */
+  public List<T> freezeAndGet() {
+    int size = state.getAndUpdate(current -> current | FROZEN_BIT) & ~FROZEN_BIT;
+    if (size == 0) {
+      return Collections.emptyList();
+    }
+    List<T> result = new ArrayList<>(size);
+    Chunk chunk = first;
+    for (int i = 0; i < size; i++) {
+      while (i >= chunk.offset + chunk.slots.length()) {
+        chunk = chunk.nextOrWait();
+      }
+      result.add(awaitValue(chunk, i - chunk.offset));
+    }
+    return Collections.unmodifiableList(result);
+  }
 
-  public synchronized void addIfNotFrozen(T value) {
-    if (isFrozen) {
-      return;
+  @SuppressWarnings("unchecked")
+  private T awaitValue(Chunk chunk, int slot) {
+    Object value;
+    // the slot has been reserved before freezing, but the appending thread might not have
+    // written the value yet. This is only a very short window, so we simply spin.
+    while ((value = chunk.slots.get(slot)) == null) {
+      Thread.yield();
     }
-    list.add(value);
+    return (T) value;
   }
 
-  public synchronized List<T> freezeAndGet() {
-    isFrozen = true;
-    return list;
+  private static final class Chunk {
+
+    private static final AtomicReferenceFieldUpdater<Chunk, Chunk> NEXT =
+        AtomicReferenceFieldUpdater.newUpdater(Chunk.class, Chunk.class, "next");
+
+    final int offset;
+    final AtomicReferenceArray<Object> slots;
+    volatile Chunk next;
+
+    Chunk(int offset, int size) {
+      this.offset = offset;
+      this.slots = new AtomicReferenceArray<>(size);
+    }
+
+    Chunk nextOrCreate() {
+      Chunk result = next;
+      if (result == null) {
+        int size = slots.length();
+        NEXT.compareAndSet(this, null, new Chunk(offset + size, size * 2));
+        result = next;
+      }
+      return result;
+    }
+
+    Chunk nextOrWait() {
+      Chunk result;
+      while ((result = next) == null) {
+        Thread.yield();
+      }
+      return result;
+    }
   }
 }
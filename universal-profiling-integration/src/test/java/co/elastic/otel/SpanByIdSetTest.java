@@ -63,6 +63,25 @@ public class SpanByIdSetTest {
     assertThat(set.get("dddddddddddddddddddddddddddddddd", "cccccccccccccccc")).isSameAs(dc);
   }
 
+  @Test
+  public void checkBinaryLookup() {
+    ReadableSpan span = mockSpan("0123456789abcdef0011223344556677", "8899aabbccddeeff");
+    ReadableSpan other = mockSpan("0123456789abcdef0011223344556677", "8899aabbccddeef0");
+    set.add(span);
+    set.add(other);
+
+    byte[] traceId = span.getSpanContext().getTraceIdBytes();
+    byte[] spanId = span.getSpanContext().getSpanIdBytes();
+    assertThat(set.get(traceId, spanId)).isSameAs(span);
+
+    spanId[7] = 0x00;
+    assertThat(set.get(traceId, spanId)).isNull();
+
+    set.remove(span);
+    assertThat(set.get(traceId, span.getSpanContext().getSpanIdBytes())).isNull();
+    assertThat(set.get(traceId, other.getSpanContext().getSpanIdBytes())).isSameAs(other);
+  }
+
   @Test
   public void duplicateAddAndRemove() {
     ReadableSpan span = mockSpan();
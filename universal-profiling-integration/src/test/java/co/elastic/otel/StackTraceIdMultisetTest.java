@@ -0,0 +1,86 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class StackTraceIdMultisetTest {
+
+  @Test
+  void countsDistinctStackTraces() {
+    byte[] st1 = randomStackTraceId(1);
+    byte[] st2 = randomStackTraceId(2);
+
+    StackTraceIdMultiset multiset = new StackTraceIdMultiset();
+    multiset.addIfNotFrozen(st1, 2);
+    multiset.addIfNotFrozen(st2, 1);
+    multiset.addIfNotFrozen(st1.clone(), 1);
+    multiset.addIfNotFrozen(st2, 0);
+
+    List<StackTraceIdMultiset.StackTraceId> encodedIds = new ArrayList<>();
+    List<String> result =
+        multiset.freezeAndExpand(
+            id -> {
+              encodedIds.add(id);
+              return base64(id.toBytes());
+            });
+
+    assertThat(result)
+        .containsExactlyInAnyOrder(base64(st1), base64(st1), base64(st1), base64(st2));
+    assertThat(encodedIds).hasSize(2);
+  }
+
+  @Test
+  void ignoresSamplesAfterFreeze() {
+    byte[] st1 = randomStackTraceId(1);
+
+    StackTraceIdMultiset multiset = new StackTraceIdMultiset();
+    multiset.addIfNotFrozen(st1, 1);
+    List<String> result = multiset.freezeAndExpand(id -> base64(id.toBytes()));
+    multiset.addIfNotFrozen(st1, 1);
+    multiset.addIfNotFrozen(randomStackTraceId(2), 1);
+
+    assertThat(result).containsExactly(base64(st1));
+    assertThat(multiset.freezeAndExpand(id -> base64(id.toBytes()))).containsExactly(base64(st1));
+  }
+
+  @Test
+  void rejectsInvalidStackTraceIds() {
+    StackTraceIdMultiset multiset = new StackTraceIdMultiset();
+    assertThatThrownBy(() -> multiset.addIfNotFrozen(new byte[8], 1))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static byte[] randomStackTraceId(int seed) {
+    byte[] id = new byte[16];
+    new Random(seed).nextBytes(id);
+    return id;
+  }
+
+  private static String base64(byte[] data) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(data);
+  }
+}
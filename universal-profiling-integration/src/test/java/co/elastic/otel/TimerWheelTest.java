@@ -0,0 +1,155 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class TimerWheelTest {
+
+  private static final long MILLIS = 1_000_000L;
+
+  private final List<String> expired = new ArrayList<>();
+
+  private final TimerWheel.ExpirationHandler<String> recorder =
+      (element, scheduledAt, deadline) -> expired.add(element);
+
+  @Test
+  public void elementsExpireAtOwnDeadline() {
+    TimerWheel<String> wheel = new TimerWheel<>(0);
+
+    wheel.add("late", 0, 500 * MILLIS);
+    wheel.add("early", 0, 10 * MILLIS);
+    wheel.add("middle", 0, 100 * MILLIS);
+    assertThat(wheel.size()).isEqualTo(3);
+
+    wheel.advance(9 * MILLIS, recorder);
+    assertThat(expired).isEmpty();
+
+    wheel.advance(12 * MILLIS, recorder);
+    assertThat(expired).containsExactly("early");
+
+    wheel.advance(99 * MILLIS, recorder);
+    assertThat(expired).containsExactly("early");
+
+    wheel.advance(102 * MILLIS, recorder);
+    assertThat(expired).containsExactly("early", "middle");
+
+    wheel.advance(502 * MILLIS, recorder);
+    assertThat(expired).containsExactly("early", "middle", "late");
+    assertThat(wheel.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void negativeClockValues() {
+    long start = Long.MIN_VALUE + 1000;
+    TimerWheel<String> wheel = new TimerWheel<>(start);
+
+    wheel.add("a", start, start + 10 * MILLIS);
+    wheel.advance(start + 5 * MILLIS, recorder);
+    assertThat(expired).isEmpty();
+    wheel.advance(start + 12 * MILLIS, recorder);
+    assertThat(expired).containsExactly("a");
+  }
+
+  @Test
+  public void alreadyDueElementsExpireWithNextTick() {
+    TimerWheel<String> wheel = new TimerWheel<>(0);
+    wheel.advance(50 * MILLIS, recorder);
+
+    wheel.add("overdue", 0, 10 * MILLIS);
+    wheel.advance(52 * MILLIS, recorder);
+    assertThat(expired).containsExactly("overdue");
+  }
+
+  @Test
+  public void expireAll() {
+    TimerWheel<String> wheel = new TimerWheel<>(0);
+    wheel.add("a", 0, 10 * MILLIS);
+    wheel.add("b", 0, 1000_000 * MILLIS);
+
+    wheel.expireAll(recorder);
+    assertThat(expired).containsExactlyInAnyOrder("a", "b");
+    assertThat(wheel.isEmpty()).isTrue();
+    assertThat(wheel.nanosUntilNextAdvance(0)).isEqualTo(-1);
+  }
+
+  @Test
+  public void throwingHandlerDoesNotLoseElements() {
+    TimerWheel<String> wheel = new TimerWheel<>(0);
+    wheel.add("a", 0, 10 * MILLIS);
+    wheel.add("fail", 0, 10 * MILLIS);
+    wheel.add("b", 0, 10 * MILLIS);
+    wheel.add("later", 0, 100 * MILLIS);
+
+    TimerWheel.ExpirationHandler<String> throwing =
+        (element, scheduledAt, deadline) -> {
+          if (element.equals("fail")) {
+            throw new IllegalStateException("expected");
+          }
+          expired.add(element);
+        };
+
+    assertThatThrownBy(() -> wheel.advance(12 * MILLIS, throwing))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessage("expected");
+    assertThat(expired).containsExactly("a", "b");
+    assertThat(wheel.size()).isEqualTo(1);
+
+    wheel.advance(102 * MILLIS, throwing);
+    assertThat(expired).containsExactly("a", "b", "later");
+    assertThat(wheel.isEmpty()).isTrue();
+    assertThat(wheel.nanosUntilNextAdvance(102 * MILLIS)).isEqualTo(-1);
+
+    wheel.add("fail", 0, 200 * MILLIS);
+    wheel.add("c", 0, 200 * MILLIS);
+    assertThatThrownBy(() -> wheel.expireAll(throwing)).isInstanceOf(IllegalStateException.class);
+    assertThat(expired).containsExactly("a", "b", "later", "c");
+    assertThat(wheel.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void neverExpiresEarlyAndAtMostOneTickLate() {
+    Random rnd = new Random(42);
+    TimerWheel<Long> wheel = new TimerWheel<>(0);
+    long[] now = {0};
+    long[] maxLateness = {0};
+
+    for (int i = 0; i < 100_000; i++) {
+      if (rnd.nextInt(5) == 0) {
+        long deadline = now[0] + rnd.nextInt(2_000_000_000);
+        wheel.add(deadline, now[0], deadline);
+      }
+      long untilNext = wheel.nanosUntilNextAdvance(now[0]);
+      now[0] += (untilNext < 0 || untilNext > 100_000) ? 100_000 : Math.max(untilNext, 1);
+      wheel.advance(
+          now[0],
+          (element, scheduledAt, deadline) -> {
+            assertThat(deadline).isLessThanOrEqualTo(now[0]);
+            maxLateness[0] = Math.max(maxLateness[0], now[0] - deadline);
+          });
+    }
+    assertThat(maxLateness[0]).isLessThanOrEqualTo(1L << 20);
+  }
+}
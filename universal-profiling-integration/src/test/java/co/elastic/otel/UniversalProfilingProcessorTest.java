@@ -24,6 +24,7 @@ import static io.opentelemetry.sdk.testing.assertj.OpenTelemetryAssertions.asser
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.awaitility.Awaitility.await;
 
+import co.elastic.otel.common.AbstractSimpleChainingSpanProcessor;
 import co.elastic.otel.common.ElasticAttributes;
 import co.elastic.otel.hostid.ProfilerHostIdApplyingSpanExporter;
 import co.elastic.otel.testing.MapGetter;
@@ -37,7 +38,10 @@ import io.opentelemetry.context.Context;
 import io.opentelemetry.context.Scope;
 import io.opentelemetry.sdk.OpenTelemetrySdk;
 import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.data.MetricData;
 import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.testing.exporter.InMemoryMetricReader;
 import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
 import io.opentelemetry.sdk.trace.SdkTracerProvider;
 import io.opentelemetry.sdk.trace.SpanProcessor;
@@ -66,6 +70,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -82,6 +87,8 @@ public class UniversalProfilingProcessorTest {
 
   InMemorySpanExporter spans;
   UniversalProfilingProcessor processor;
+  // allows tests to put other processors in front of the profiling processor
+  Function<SpanProcessor, SpanProcessor> processorWrapper;
 
   @TempDir private Path tempDir;
 
@@ -89,6 +96,7 @@ public class UniversalProfilingProcessorTest {
   public void reset() {
     spans = null;
     processor = null;
+    processorWrapper = Function.identity();
   }
 
   private OpenTelemetrySdk initSdk() {
@@ -145,7 +153,7 @@ public class UniversalProfilingProcessorTest {
         .setTracerProvider(
             SdkTracerProvider.builder()
                 .addResource(res)
-                .addSpanProcessor(processor)
+                .addSpanProcessor(processorWrapper.apply(processor))
                 .setSampler(sampler)
                 .build())
         .build();
@@ -215,6 +223,34 @@ public class UniversalProfilingProcessorTest {
       }
     }
 
+    @Test
+    public void testSwitchingBetweenSpansOfSameLocalRoot() {
+      try (OpenTelemetrySdk sdk = initSdk()) {
+
+        Tracer tracer = sdk.getTracer("test-tracer");
+
+        Span root = tracer.spanBuilder("root").startSpan();
+        Context rootCtx = Context.current().with(root);
+        Span child1 = tracer.spanBuilder("child1").setParent(rootCtx).startSpan();
+        Span child2 = tracer.spanBuilder("child2").setParent(rootCtx).startSpan();
+
+        for (int i = 0; i < 3; i++) {
+          try (Scope s1 = child1.makeCurrent()) {
+            checkTlsIs(child1, root);
+          }
+          checkTlsIs(Span.getInvalid(), null);
+          try (Scope s2 = child2.makeCurrent()) {
+            checkTlsIs(child2, root);
+            try (Scope s3 = root.makeCurrent()) {
+              checkTlsIs(root, root);
+            }
+            checkTlsIs(child2, root);
+          }
+        }
+        checkTlsIs(Span.getInvalid(), null);
+      }
+    }
+
     @ParameterizedTest
     @ValueSource(booleans = {true, false})
     @EnabledForJreRange(min = JRE.JAVA_21)
@@ -390,6 +426,169 @@ public class UniversalProfilingProcessorTest {
       }
     }
 
+    @Test
+    void correlationBehindSimpleChainingProcessor() {
+      processorWrapper =
+          next ->
+              new AbstractSimpleChainingSpanProcessor(next) {
+                @Override
+                protected boolean requiresStart() {
+                  return true;
+                }
+
+                @Override
+                protected boolean requiresEnd() {
+                  return true;
+                }
+              };
+      AtomicLong clock = new AtomicLong(0L);
+
+      try (OpenTelemetrySdk sdk =
+          initSdk(builder -> builder.clock(() -> clock.get() * 1_000_0000L))) {
+        sendProfilerRegistrationMsg(1, "hostid");
+
+        Tracer tracer = sdk.getTracer("test-tracer");
+        Span span = tracer.spanBuilder("span").startSpan();
+
+        byte[] st = randomStackTraceId(1);
+        sendSampleMsg(span, st, 1);
+        processor.pollMessagesAndFlushPendingSpans();
+
+        span.end();
+        // the local root is still delayed for correlation
+        assertThat(spans.getFinishedSpanItems()).isEmpty();
+
+        clock.set(1L + POLL_FREQUENCY_MS);
+        await()
+            .atMost(Duration.ofSeconds(10))
+            .untilAsserted(
+                () ->
+                    assertThat(spans.getFinishedSpanItems())
+                        .hasSize(1)
+                        .allSatisfy(
+                            sp ->
+                                assertThat(
+                                        sp.getAttributes()
+                                            .get(ElasticAttributes.PROFILER_STACK_TRACE_IDS))
+                                    .containsExactly(base64(st))));
+      }
+    }
+
+    @Test
+    void checkSelfTelemetryMetrics() {
+      AtomicLong clock = new AtomicLong(0L);
+      InMemoryMetricReader metricReader = InMemoryMetricReader.create();
+      try (SdkMeterProvider meterProvider =
+              SdkMeterProvider.builder().registerMetricReader(metricReader).build();
+          OpenTelemetrySdk sdk =
+              initSdk(
+                  builder ->
+                      builder
+                          .clock(() -> clock.get() * 1_000_000L)
+                          .meterProvider(meterProvider))) {
+        sendProfilerRegistrationMsg(1, "hostid");
+        processor.pollMessagesAndFlushPendingSpans();
+
+        Tracer tracer = sdk.getTracer("test-tracer");
+        Span span1 = tracer.spanBuilder("span1").startSpan();
+        sendSampleMsg(span1, randomStackTraceId(1), 2);
+        sendSampleMsg(span1, randomStackTraceId(2), 1);
+        processor.pollMessagesAndFlushPendingSpans();
+        span1.end();
+
+        assertThat(findMetric(metricReader, "buffer.capacity"))
+            .hasLongSumSatisfying(sum -> sum.hasPointsSatisfying(pt -> pt.hasValue(8192)));
+        assertThat(findMetric(metricReader, "buffer.usage"))
+            .hasLongSumSatisfying(sum -> sum.hasPointsSatisfying(pt -> pt.hasValue(1)));
+
+        // moving the span into the timer wheel does not change the buffer usage
+        processor.pollMessagesAndFlushPendingSpans();
+        assertThat(spans.getFinishedSpanItems()).isEmpty();
+        assertThat(findMetric(metricReader, "buffer.usage"))
+            .hasLongSumSatisfying(sum -> sum.hasPointsSatisfying(pt -> pt.hasValue(1)));
+
+        clock.set(1L + POLL_FREQUENCY_MS);
+        processor.pollMessagesAndFlushPendingSpans();
+        assertThat(spans.getFinishedSpanItems()).hasSize(1);
+
+        Collection<MetricData> metrics = metricReader.collectAllMetrics();
+        assertThat(findMetric(metrics, "messages.received"))
+            .hasLongSumSatisfying(sum -> sum.hasPointsSatisfying(pt -> pt.hasValue(3)));
+        assertThat(findMetric(metrics, "messages.decoded"))
+            .hasLongSumSatisfying(sum -> sum.hasPointsSatisfying(pt -> pt.hasValue(3)));
+        assertThat(findMetric(metrics, "messages.failed"))
+            .hasLongSumSatisfying(sum -> sum.hasPointsSatisfying(pt -> pt.hasValue(0)));
+        assertThat(findMetric(metrics, "spans.delayed"))
+            .hasLongSumSatisfying(sum -> sum.hasPointsSatisfying(pt -> pt.hasValue(1)));
+        assertThat(findMetric(metrics, "spans.correlated"))
+            .hasLongSumSatisfying(sum -> sum.hasPointsSatisfying(pt -> pt.hasValue(1)));
+        assertThat(findMetric(metrics, "stacktrace_ids"))
+            .hasLongSumSatisfying(sum -> sum.hasPointsSatisfying(pt -> pt.hasValue(3)));
+        assertThat(findMetric(metrics, "buffer.usage"))
+            .hasLongSumSatisfying(sum -> sum.hasPointsSatisfying(pt -> pt.hasValue(0)));
+        assertThat(findMetric(metrics, "spans.target_delay"))
+            .hasDoubleSumSatisfying(sum -> sum.hasPointsSatisfying(pt -> pt.hasValue(0.001)));
+        assertThat(findMetric(metrics, "spans.delay.max_overshoot"))
+            .hasDoubleGaugeSatisfying(
+                gauge -> gauge.hasPointsSatisfying(pt -> pt.hasValue(POLL_FREQUENCY_MS / 1000.0)));
+      }
+    }
+
+    @Test
+    void selfTelemetryMetricsRegisteredOnceMeterProviderAvailable() {
+      InMemoryMetricReader metricReader = InMemoryMetricReader.create();
+      try (SdkMeterProvider meterProvider =
+              SdkMeterProvider.builder().registerMetricReader(metricReader).build();
+          OpenTelemetrySdk sdk = initSdk()) {
+        sendProfilerRegistrationMsg(1, "hostid");
+        processor.pollMessagesAndFlushPendingSpans();
+        assertThat(metricReader.collectAllMetrics()).isEmpty();
+
+        processor.setMeterProviderIfAbsent(meterProvider);
+        assertThat(findMetric(metricReader, "buffer.capacity"))
+            .hasLongSumSatisfying(sum -> sum.hasPointsSatisfying(pt -> pt.hasValue(8192)));
+      }
+    }
+
+    private MetricData findMetric(InMemoryMetricReader reader, String name) {
+      return findMetric(reader.collectAllMetrics(), name);
+    }
+
+    private MetricData findMetric(Collection<MetricData> metrics, String name) {
+      return metrics.stream()
+          .filter(metric -> metric.getName().equals("elastic.profiling.correlation." + name))
+          .findFirst()
+          .orElseThrow(() -> new IllegalStateException("Metric not found: " + name));
+    }
+
+    @Test
+    void checkEventDrivenPolling() {
+      try (OpenTelemetrySdk sdk = initSdk(builder -> builder.eventDrivenPolling(true))) {
+        sendProfilerRegistrationMsg(50, "hostid");
+
+        Tracer tracer = sdk.getTracer("test-tracer");
+        Span span1 = tracer.spanBuilder("span1").startSpan();
+        byte[] st1 = randomStackTraceId(1);
+        sendSampleMsg(span1, st1, 2);
+        span1.end();
+
+        // the span is buffered while the poll thread is blocked, it must be woken up to flush it
+        await()
+            .atMost(Duration.ofSeconds(10))
+            .untilAsserted(
+                () ->
+                    assertThat(spans.getFinishedSpanItems())
+                        .hasSize(1)
+                        .first()
+                        .satisfies(
+                            sp ->
+                                assertThat(
+                                        sp.getAttributes()
+                                            .get(ElasticAttributes.PROFILER_STACK_TRACE_IDS))
+                                    .containsExactly(base64(st1), base64(st1))));
+      }
+    }
+
     @ParameterizedTest
     @ValueSource(booleans = {true, false})
     void checkAwaitProfilerRegistrationSetting(boolean activeOnlyAfterRegistration) {
@@ -472,6 +671,43 @@ public class UniversalProfilingProcessorTest {
       }
     }
 
+    @Test
+    void spansReleasedAtOwnDeadline() {
+      AtomicLong clockMillis = new AtomicLong(0L);
+
+      try (OpenTelemetrySdk sdk =
+          initSdk(builder -> builder.clock(() -> clockMillis.get() * 1_000_000L))) {
+        Tracer tracer = sdk.getTracer("test-tracer");
+
+        sendProfilerRegistrationMsg(1000, "hostid");
+        processor.pollMessagesAndFlushPendingSpans();
+        tracer.spanBuilder("slow").startSpan().end();
+
+        // the profiler re-registers with a shorter delay
+        sendProfilerRegistrationMsg(10, "hostid");
+        processor.pollMessagesAndFlushPendingSpans();
+        tracer.spanBuilder("fast").startSpan().end();
+
+        clockMillis.set(50);
+        processor.pollMessagesAndFlushPendingSpans();
+        assertThat(spans.getFinishedSpanItems())
+            .hasSize(1)
+            .anySatisfy(sp -> assertThat(sp).hasName("fast"));
+
+        clockMillis.set(1030);
+        processor.pollMessagesAndFlushPendingSpans();
+        assertThat(spans.getFinishedSpanItems())
+            .hasSize(2)
+            .anySatisfy(sp -> assertThat(sp).hasName("slow"));
+
+        assertThat(processor.correlator.getDelayedSpanCount()).isEqualTo(2);
+        assertThat(processor.correlator.getTotalTargetDelayNanos())
+            .isEqualTo(Duration.ofMillis(1020 + 30).toNanos());
+        assertThat(processor.correlator.getTotalActualDelayNanos())
+            .isEqualTo(Duration.ofMillis(1030 + 50).toNanos());
+      }
+    }
+
     @Test
     void unsampledSpansNotCorrelated() {
       Sampler sampler =
@@ -584,21 +820,66 @@ public class UniversalProfilingProcessorTest {
         span1.end();
 
         // This call is required to avoid flakyness of the test
-        // span1 will be picked up by the PeekingPooler, therefore the queue is now empty again
+        // span1 will be moved to the timer wheel, but still counts against the buffer size
         processor.pollMessagesAndFlushPendingSpans();
 
         Span span2 = tracer.spanBuilder("span2").startSpan();
         span2.end();
+
+        // now the buffer should be full, span 3 should be sent immediately
         Span span3 = tracer.spanBuilder("span3").startSpan();
         span3.end();
 
-        // now the buffer should be full, span 4 should be sent immediately
-        Span span4 = tracer.spanBuilder("span4").startSpan();
-        span4.end();
+        assertThat(spans.getFinishedSpanItems())
+            .hasSize(1)
+            .anySatisfy(sp -> assertThat(sp).hasName("span3"));
+      }
+    }
+
+    @Test
+    void overflowBufferUsedWhenBufferFull() {
+      AtomicLong clockMillis = new AtomicLong(0L);
+      try (OpenTelemetrySdk sdk =
+          initSdk(
+              builder ->
+                  builder
+                      .clock(() -> clockMillis.get() * 1_000_000L)
+                      .bufferSize(2)
+                      .overflowBufferSize(1))) {
+
+        sendProfilerRegistrationMsg(1, "hostid");
+        processor.pollMessagesAndFlushPendingSpans();
+
+        Tracer tracer = sdk.getTracer("test-tracer");
+        tracer.spanBuilder("span1").startSpan().end();
+        tracer.spanBuilder("span2").startSpan().end();
+        // the ring buffer is full, span3 goes to the overflow buffer
+        tracer.spanBuilder("span3").startSpan().end();
+        // all buffers are full now, span4 should be sent immediately
+        tracer.spanBuilder("span4").startSpan().end();
 
         assertThat(spans.getFinishedSpanItems())
             .hasSize(1)
             .anySatisfy(sp -> assertThat(sp).hasName("span4"));
+        assertThat(processor.correlator.getOverflowedSpanCount()).isEqualTo(1);
+        assertThat(processor.correlator.getBufferFullSpanCount()).isEqualTo(1);
+
+        // moving spans into the timer wheel does not free up buffer capacity
+        processor.pollMessagesAndFlushPendingSpans();
+        tracer.spanBuilder("span5").startSpan().end();
+        assertThat(spans.getFinishedSpanItems())
+            .hasSize(2)
+            .anySatisfy(sp -> assertThat(sp).hasName("span5"));
+
+        clockMillis.set(1000);
+        processor.pollMessagesAndFlushPendingSpans();
+        assertThat(spans.getFinishedSpanItems())
+            .hasSize(5)
+            .anySatisfy(sp -> assertThat(sp).hasName("span3"));
+
+        // sending the buffered spans has released their buffer slots
+        tracer.spanBuilder("span6").startSpan().end();
+        assertThat(spans.getFinishedSpanItems()).hasSize(5);
       }
     }
 
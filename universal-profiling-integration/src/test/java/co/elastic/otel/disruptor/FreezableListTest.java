@@ -0,0 +1,93 @@
+/*
+ * Licensed to Elasticsearch B.V. under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch B.V. licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package co.elastic.otel.disruptor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class FreezableListTest {
+
+  @Test
+  void addAndFreeze() {
+    FreezableList<Integer> list = new FreezableList<>();
+    assertThat(list.freezeAndGet()).isEmpty();
+
+    list = new FreezableList<>();
+    for (int i = 0; i < 100; i++) {
+      assertThat(list.addIfNotFrozen(i)).isTrue();
+    }
+    assertThat(list.isFrozen()).isFalse();
+
+    List<Integer> result = list.freezeAndGet();
+    assertThat(list.isFrozen()).isTrue();
+    assertThat(list.addIfNotFrozen(100)).isFalse();
+    assertThat(result).hasSize(100);
+    for (int i = 0; i < 100; i++) {
+      assertThat(result.get(i)).isEqualTo(i);
+    }
+    assertThat(list.freezeAndGet()).isEqualTo(result);
+  }
+
+  @Test
+  void concurrentAddAndFreeze() throws Exception {
+    int threads = 4;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      for (int round = 0; round < 100; round++) {
+        FreezableList<Integer> list = new FreezableList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<Integer>>> added = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+          int threadId = t;
+          added.add(
+              executor.submit(
+                  () -> {
+                    start.await();
+                    List<Integer> successful = new ArrayList<>();
+                    for (int i = 0; i < 1000; i++) {
+                      int value = threadId * 1000 + i;
+                      if (list.addIfNotFrozen(value)) {
+                        successful.add(value);
+                      }
+                    }
+                    return successful;
+                  }));
+        }
+        start.countDown();
+        List<Integer> frozen = list.freezeAndGet();
+
+        List<Integer> expected = new ArrayList<>();
+        for (Future<List<Integer>> future : added) {
+          expected.addAll(future.get(10, TimeUnit.SECONDS));
+        }
+        assertThat(frozen).containsExactlyInAnyOrderElementsOf(expected);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}